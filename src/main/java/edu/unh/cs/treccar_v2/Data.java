@@ -20,6 +20,9 @@ public class Data {
      * @param sections list of sections, each represented by their heading #getHeadingId  -- not displayed text.
      */
     public static String sectionPathId(String pageId, List<Section> sections){
+        if (sections instanceof SectionPath && pageId != null && pageId.equals(((SectionPath) sections).getPageId())) {
+            return ((SectionPath) sections).getSectionPathId();
+        }
         List<String> result = new ArrayList<>();
         result.add(pageId);
         for(Section section:sections){
@@ -33,6 +36,9 @@ public class Data {
      * @param sections list of sections, each represented by their heading #getHeading  -- not id.
      */
     public static List<String> sectionPathHeadings(List<Section> sections){
+        if (sections instanceof SectionPath) {
+            return ((SectionPath) sections).getHeadings();
+        }
         List<String> result = new ArrayList<>();
         for(Section section:sections){
             result.add(section.heading);
@@ -246,6 +252,198 @@ public class Data {
      * Shared interface of page elements
      */
     public interface PageSkeleton {
+        /**
+         * Dispatch to the matching method of the visitor, and descend into children if it asks to.
+         * @param path section path enclosing this element
+         */
+        void accept(PageVisitor visitor, SectionPath path);
+    }
+
+
+    /**
+     * Typed callbacks for a depth-first traversal of a page, see {@link Page#accept(PageVisitor)}.
+     *
+     * Every callback receives the path of the enclosing sections (for a section, the path ending in that section).
+     * Paths share prefixes, so no lists are copied while descending. Container callbacks return whether to descend into
+     * the children: nested elements of a section, caption of an image, values of an infobox, or bodies of a paragraph.
+     *
+     * All methods default to descending without doing anything else, implement only those of interest.
+     */
+    public interface PageVisitor {
+        default boolean visitSection(Section section, SectionPath path) { return true; }
+        /** Called after all children of a section have been visited; not called if visitSection returned false. */
+        default void endSection(Section section, SectionPath path) { }
+        default boolean visitPara(Para para, SectionPath path) { return true; }
+        default boolean visitImage(Image image, SectionPath path) { return true; }
+        default boolean visitListItem(ListItem listItem, SectionPath path) { return true; }
+        default boolean visitInfoBox(InfoBox infoBox, SectionPath path) { return true; }
+        default void visitParaText(ParaText paraText, SectionPath path) { }
+        default void visitParaLink(ParaLink paraLink, SectionPath path) { }
+    }
+
+
+    /**
+     * Stable 64-bit content fingerprints (FNV-1a over UTF-16 code units, finalized with a MurmurHash3 mix).
+     *
+     * Fingerprints of pages, sections, and paragraphs are computed once on construction, and do not depend on the JVM,
+     * so they can be stored and compared across runs and releases.
+     */
+    public final static class Fingerprint {
+        private static final long OFFSET_BASIS = 0xcbf29ce484222325L;
+        private static final long PRIME = 0x100000001b3L;
+
+        private static final int PAGE = 1;
+        private static final int SECTION = 2;
+        private static final int PARA = 3;
+        private static final int IMAGE = 4;
+        private static final int LIST_ITEM = 5;
+        private static final int INFOBOX = 6;
+        private static final int PARAGRAPH = 7;
+        private static final int PARA_TEXT = 8;
+        private static final int PARA_LINK = 9;
+
+        private Fingerprint() {}
+
+        /**
+         * Fingerprint of a string, e.g. for hash partitioning by page id.
+         */
+        public static long ofString(String s) {
+            return finish(mix(OFFSET_BASIS, s));
+        }
+
+        private static long mix(long h, long value) {
+            for (int i = 0; i < 8; i++) {
+                h ^= value & 0xff;
+                h *= PRIME;
+                value >>>= 8;
+            }
+            return h;
+        }
+
+        private static long mix(long h, String s) {
+            if (s == null) {
+                return mix(h, -1L);
+            }
+            h = mix(h, s.length());
+            for (int i = 0; i < s.length(); i++) {
+                final char c = s.charAt(i);
+                h ^= c & 0xff;
+                h *= PRIME;
+                h ^= c >>> 8;
+                h *= PRIME;
+            }
+            return h;
+        }
+
+        private static long finish(long h) {
+            h ^= h >>> 33;
+            h *= 0xff51afd7ed558ccdL;
+            h ^= h >>> 33;
+            h *= 0xc4ceb9fe1a85ec53L;
+            h ^= h >>> 33;
+            return h;
+        }
+
+        private static long mixSkeletons(long h, List<PageSkeleton> skeletons) {
+            h = mix(h, skeletons.size());
+            for (PageSkeleton skel : skeletons) {
+                h = mix(h, of(skel));
+            }
+            return h;
+        }
+
+        static long of(PageSkeleton skel) {
+            if (skel instanceof Section) {
+                return ((Section) skel).getFingerprint();
+            } else if (skel instanceof Para) {
+                return finish(mix(mix(OFFSET_BASIS, PARA), ((Para) skel).getParagraph().getFingerprint()));
+            } else if (skel instanceof Image) {
+                final Image image = (Image) skel;
+                return finish(mixSkeletons(mix(mix(OFFSET_BASIS, IMAGE), image.getImageUrl()), image.getCaptionSkel()));
+            } else if (skel instanceof ListItem) {
+                final ListItem listItem = (ListItem) skel;
+                long h = mix(mix(OFFSET_BASIS, LIST_ITEM), listItem.getNestingLevel());
+                return finish(mix(h, listItem.getBodyParagraph().getFingerprint()));
+            } else if (skel instanceof InfoBox) {
+                final InfoBox infoBox = (InfoBox) skel;
+                long h = mix(mix(mix(OFFSET_BASIS, INFOBOX), infoBox.getInfoboxType()), infoBox.getEntries().size());
+                for (Entry<String, List<PageSkeleton>> entry : infoBox.getEntries()) {
+                    h = mixSkeletons(mix(h, entry.getKey()), entry.getValue());
+                }
+                return finish(h);
+            } else {
+                throw new UnsupportedOperationException("not known skel " + skel);
+            }
+        }
+
+        static long ofPage(String pageId, List<PageSkeleton> skeleton) {
+            return finish(mixSkeletons(mix(mix(OFFSET_BASIS, PAGE), pageId), skeleton));
+        }
+
+        static long ofSection(String headingId, List<PageSkeleton> children) {
+            return finish(mixSkeletons(mix(mix(OFFSET_BASIS, SECTION), headingId), children));
+        }
+
+        private static long mixStructures(long h, List<PageSkeleton> skeletons) {
+            h = mix(h, skeletons.size());
+            for (PageSkeleton skel : skeletons) {
+                h = mix(h, structureOf(skel));
+            }
+            return h;
+        }
+
+        /**
+         * Fingerprint of exactly the fields compared by the {@code equals} methods of the page elements: heading ids,
+         * child structure, paragraph ids (not their text), image urls, list nesting levels, infobox types and keys.
+         */
+        static long structureOf(PageSkeleton skel) {
+            if (skel instanceof Section) {
+                return ((Section) skel).structureFingerprint;
+            } else if (skel instanceof Para) {
+                return finish(mix(mix(OFFSET_BASIS, PARA), ((Para) skel).getParagraph().getParaId()));
+            } else if (skel instanceof Image) {
+                final Image image = (Image) skel;
+                return finish(mixStructures(mix(mix(OFFSET_BASIS, IMAGE), image.getImageUrl()), image.getCaptionSkel()));
+            } else if (skel instanceof ListItem) {
+                final ListItem listItem = (ListItem) skel;
+                long h = mix(mix(OFFSET_BASIS, LIST_ITEM), listItem.getNestingLevel());
+                return finish(mix(h, listItem.getBodyParagraph().getParaId()));
+            } else if (skel instanceof InfoBox) {
+                final InfoBox infoBox = (InfoBox) skel;
+                long h = mix(mix(mix(OFFSET_BASIS, INFOBOX), infoBox.getInfoboxType()), infoBox.getEntries().size());
+                for (Entry<String, List<PageSkeleton>> entry : infoBox.getEntries()) {
+                    h = mixStructures(mix(h, entry.getKey()), entry.getValue());
+                }
+                return finish(h);
+            } else {
+                throw new UnsupportedOperationException("not known skel " + skel);
+            }
+        }
+
+        static long structureOfPage(String pageId, List<PageSkeleton> skeleton) {
+            return finish(mixStructures(mix(mix(OFFSET_BASIS, PAGE), pageId), skeleton));
+        }
+
+        static long structureOfSection(String headingId, List<PageSkeleton> children) {
+            return finish(mixStructures(mix(mix(OFFSET_BASIS, SECTION), headingId), children));
+        }
+
+        static int hash(long fingerprint) {
+            return (int) (fingerprint ^ (fingerprint >>> 32));
+        }
+
+        static long ofParagraph(String paraId, List<ParaBody> bodies) {
+            long h = mix(mix(mix(OFFSET_BASIS, PARAGRAPH), paraId), bodies.size());
+            for (ParaBody body : bodies) {
+                if (body instanceof ParaText) {
+                    h = mix(mix(h, PARA_TEXT), ((ParaText) body).getText());
+                } else if (body instanceof ParaLink) {
+                    final ParaLink link = (ParaLink) body;
+                    h = mix(mix(mix(mix(mix(h, PARA_LINK), link.getLinkSection()), link.getPageId()), link.getAnchorText()), link.getPage());
+                }
+            }
+            return finish(h);
+        }
     }
 
 
@@ -259,6 +457,9 @@ public class Data {
         private final PageType pageType;
         private final ArrayList<Section> childSections;
         private final PageMetadata pageMetadata;
+        private final long fingerprint;
+        // covers the fields compared by equals(), for hashCode() and a cheap early mismatch in equals()
+        private final long structureFingerprint;
 
         public Page(String pageName, String pageId, List<PageSkeleton> skeleton, PageType pageType, PageMetadata pageMetadata) {
             this.pageName = pageName;
@@ -270,6 +471,8 @@ public class Data {
                 if (skel instanceof Section) childSections.add((Section) skel);
             }
             this.pageMetadata = pageMetadata;
+            this.fingerprint = Fingerprint.ofPage(pageId, skeleton);
+            this.structureFingerprint = Fingerprint.structureOfPage(pageId, skeleton);
         }
 
         /**
@@ -321,28 +524,69 @@ public class Data {
             return childSections;
         }
 
-        private static List<List<Section>> flatSectionPaths_(List<Section> prefix, List<Section> headings) {
-            List<List<Section>> result = new ArrayList<>();
+        /**
+         * Stable 64-bit fingerprint of page id and skeleton, including paragraph text and links, computed once on
+         * construction. Pages with different fingerprints differ in content.
+         *
+         * This covers more than {@link #equals(Object)}, which compares paragraphs by id only; {@link #hashCode()} is
+         * based on a second fingerprint over just the fields compared by {@link #equals(Object)}.
+         * @return content fingerprint
+         */
+        public long getFingerprint() {
+            return fingerprint;
+        }
 
-            for(Section heading : headings){
-                final List<Section> newPrefix = new ArrayList<>();
-                newPrefix.addAll(prefix);
-                newPrefix.add(heading);
+        /**
+         * Like {@link #equals(Object)}, but also requires the same paragraph contents (by {@link #getFingerprint()}).
+         * @return true if both pages are equal and have the same content
+         */
+        public boolean contentEquals(Page page) {
+            return page != null && fingerprint == page.fingerprint && equals(page);
+        }
 
-                if(heading.getChildSections().isEmpty()) {
-                    result.add(newPrefix);
-                } else {
-                    result.add(newPrefix);
-                    result.addAll(flatSectionPaths_(newPrefix,heading.getChildSections()));
-                }
+        /**
+         * Walk all elements of this page depth-first in document order, see {@link PageVisitor}.
+         */
+        public void accept(PageVisitor visitor) {
+            final SectionPath root = SectionPath.root(pageId);
+            for (PageSkeleton skel : skeleton) {
+                skel.accept(visitor, root);
+            }
+        }
 
+        private static void flatSectionPaths_(SectionPath prefix, List<Section> sections, List<List<Section>> result) {
+            for(Section section : sections){
+                final SectionPath path = prefix.child(section);
+                result.add(path);
+                flatSectionPaths_(path, section.getChildSections(), result);
             }
+        }
+
+        /**
+         * All section paths of this page in pre-order, each represented as {@link SectionPath}.
+         *
+         * Use {@link #iterSectionPaths()} to avoid materializing the list.
+         */
+        public List<List<Section>> flatSectionPaths() {
+            List<List<Section>> result = new ArrayList<>();
+            flatSectionPaths_(SectionPath.root(pageId), childSections, result);
             return result;
+        }
 
+        /**
+         * Iterator over the same section paths as {@link #flatSectionPaths()}, produced lazily.
+         */
+        public Iterator<SectionPath> iterSectionPaths() {
+            return new SectionPathIterator(pageId, skeleton);
         }
 
-        public List<List<Section>> flatSectionPaths() {
-            return flatSectionPaths_(Collections.<Section>emptyList(), childSections);
+        public Iterable<SectionPath> iterableSectionPaths() {
+            return new Iterable<SectionPath>() {
+                @Override
+                public Iterator<SectionPath> iterator() {
+                    return iterSectionPaths();
+                }
+            };
         }
 
 
@@ -390,21 +634,11 @@ public class Data {
                         '}';
             }
         }
-        private static List<SectionPathParagraphs> flatSectionPathsParagraphs_(List<Section> prefix, List<PageSkeleton> skeletonList) {
-            List<SectionPathParagraphs> result = new ArrayList<>();
-
+        private static void flatSectionPathsParagraphs_(SectionPath prefix, List<PageSkeleton> skeletonList, List<SectionPathParagraphs> result) {
             for(PageSkeleton skel : skeletonList){
                 if(skel instanceof Section) {
                     Section section = (Section) skel;
-
-                    final List<Section> newPrefix = new ArrayList<>();
-                    newPrefix.addAll(prefix);
-                    newPrefix.add(section);
-
-                    if (!section.getChildren().isEmpty()) {
-                        result.addAll(flatSectionPathsParagraphs_(newPrefix, section.getChildren()));
-                    }
-
+                    flatSectionPathsParagraphs_(prefix.child(section), section.getChildren(), result);
                 }
 
                 if(skel instanceof Para) {
@@ -412,15 +646,123 @@ public class Data {
                     result.add(new SectionPathParagraphs(prefix, paragraph));
                 }
             }
-            return result;
         }
 
 
+        /**
+         * All paragraphs of this page together with the section path they are located in (empty for the lead).
+         *
+         * Use {@link #iterSectionPathsParagraphs()} to avoid materializing the list.
+         */
         public List<SectionPathParagraphs> flatSectionPathsParagraphs() {
-            return flatSectionPathsParagraphs_(Collections.<Section>emptyList(), getSkeleton());
+            List<SectionPathParagraphs> result = new ArrayList<>();
+            flatSectionPathsParagraphs_(SectionPath.root(pageId), getSkeleton(), result);
+            return result;
+        }
+
+        /**
+         * Iterator over the same elements as {@link #flatSectionPathsParagraphs()}, produced lazily.
+         */
+        public Iterator<SectionPathParagraphs> iterSectionPathsParagraphs() {
+            return new SectionPathParagraphsIterator(pageId, skeleton);
         }
 
+        public Iterable<SectionPathParagraphs> iterableSectionPathsParagraphs() {
+            return new Iterable<SectionPathParagraphs>() {
+                @Override
+                public Iterator<SectionPathParagraphs> iterator() {
+                    return iterSectionPathsParagraphs();
+                }
+            };
+        }
+
+        /**
+         * Depth-first traversal over nested sections, keeping one child iterator per open section.
+         */
+        private static abstract class SkeletonTraversal<T> implements Iterator<T> {
+            private final ArrayDeque<Iterator<PageSkeleton>> children = new ArrayDeque<>();
+            private SectionPath path;
+            private T next;
+
+            SkeletonTraversal(String pageId, List<PageSkeleton> skeleton) {
+                this.path = SectionPath.root(pageId);
+                this.children.push(skeleton.iterator());
+            }
+
+            /**
+             * Called for every element in document order, with the path of the enclosing section (for a section, the path
+             * ending in this section).
+             * @return the next item to produce, or null to continue with the next element
+             */
+            protected abstract T visit(PageSkeleton skel, SectionPath path);
+
+            private T computeNext() {
+                while (!children.isEmpty()) {
+                    final Iterator<PageSkeleton> iter = children.peek();
+                    if (!iter.hasNext()) {
+                        children.pop();
+                        path = path.getParent();
+                        continue;
+                    }
+                    final PageSkeleton skel = iter.next();
+                    if (skel instanceof Section) {
+                        final Section section = (Section) skel;
+                        path = path.child(section);
+                        children.push(section.getChildren().iterator());
+                    }
+                    final T result = visit(skel, path);
+                    if (result != null) {
+                        return result;
+                    }
+                }
+                return null;
+            }
 
+            @Override
+            public boolean hasNext() {
+                if (next == null) {
+                    next = computeNext();
+                }
+                return next != null;
+            }
+
+            @Override
+            public T next() {
+                if (!hasNext()) {
+                    throw new NoSuchElementException();
+                }
+                final T result = next;
+                next = null;
+                return result;
+            }
+
+            @Override
+            public void remove() {
+                throw new UnsupportedOperationException("Read-only iterator.");
+            }
+        }
+
+        private static final class SectionPathIterator extends SkeletonTraversal<SectionPath> {
+            SectionPathIterator(String pageId, List<PageSkeleton> skeleton) {
+                super(pageId, skeleton);
+            }
+
+            @Override
+            protected SectionPath visit(PageSkeleton skel, SectionPath path) {
+                return (skel instanceof Section) ? path : null;
+            }
+        }
+
+        private static final class SectionPathParagraphsIterator extends SkeletonTraversal<SectionPathParagraphs> {
+            SectionPathParagraphsIterator(String pageId, List<PageSkeleton> skeleton) {
+                super(pageId, skeleton);
+            }
+
+            @Override
+            protected SectionPathParagraphs visit(PageSkeleton skel, SectionPath path) {
+                return (skel instanceof Para) ? new SectionPathParagraphs(path, ((Para) skel).getParagraph()) : null;
+            }
+        }
 
 
 
@@ -440,15 +782,14 @@ public class Data {
 
             Page page = (Page) o;
 
+            if (structureFingerprint != page.structureFingerprint) return false;
             if (getPageId() != null ? !getPageId().equals(page.getPageId()) : page.getPageId() != null) return false;
             return getSkeleton() != null ? getSkeleton().equals(page.getSkeleton()) : page.getSkeleton() == null;
         }
 
         @Override
         public int hashCode() {
-            int result = getPageId() != null ? getPageId().hashCode() : 0;
-            result = 31 * result + (getSkeleton() != null ? getSkeleton().hashCode() : 0);
-            return result;
+            return Fingerprint.hash(structureFingerprint);
         }
     }
 
@@ -457,6 +798,9 @@ public class Data {
         private final String headingId;
         private final List<PageSkeleton> children;
         private final List<Section> childSections;
+        private final long fingerprint;
+        // covers the fields compared by equals(), for hashCode() and a cheap early mismatch in equals()
+        private final long structureFingerprint;
 
         public Section(String heading, String headingId,  List<PageSkeleton> children) {
             this.heading = heading;
@@ -466,7 +810,8 @@ public class Data {
             for(PageSkeleton skel : children) {
                 if (skel instanceof Section) childSections.add((Section) skel);
             }
-
+            this.fingerprint = Fingerprint.ofSection(headingId, children);
+            this.structureFingerprint = Fingerprint.structureOfSection(headingId, children);
         }
 
         /**
@@ -497,6 +842,34 @@ public class Data {
          */
         public List<Section> getChildSections() { return childSections; }
 
+        @Override
+        public void accept(PageVisitor visitor, SectionPath path) {
+            final SectionPath sectionPath = path.child(this);
+            if (visitor.visitSection(this, sectionPath)) {
+                for (PageSkeleton child : children) {
+                    child.accept(visitor, sectionPath);
+                }
+                visitor.endSection(this, sectionPath);
+            }
+        }
+
+        /**
+         * Stable 64-bit fingerprint of heading id and children, including paragraph text and links, computed once on
+         * construction.
+         * @return content fingerprint
+         */
+        public long getFingerprint() {
+            return fingerprint;
+        }
+
+        /**
+         * Like {@link #equals(Object)}, but also requires the same paragraph contents (by {@link #getFingerprint()}).
+         * @return true if both sections are equal and have the same content
+         */
+        public boolean contentEquals(Section section) {
+            return section != null && fingerprint == section.fingerprint && equals(section);
+        }
+
 
         @Override
         public String toString() {
@@ -514,6 +887,7 @@ public class Data {
 
             Section section = (Section) o;
 
+            if (structureFingerprint != section.structureFingerprint) return false;
             if (getHeadingId() != null ? !getHeadingId().equals(section.getHeadingId()) : section.getHeadingId() != null)
                 return false;
             return getChildren() != null ? getChildren().equals(section.getChildren()) : section.getChildren() == null;
@@ -521,16 +895,140 @@ public class Data {
 
         @Override
         public int hashCode() {
-            int result = getHeadingId() != null ? getHeadingId().hashCode() : 0;
-            result = 31 * result + (getChildren() != null ? getChildren().hashCode() : 0);
+            return Fingerprint.hash(structureFingerprint);
+        }
+    }
+
+    /**
+     * Immutable path of nested sections, from the outermost section of a page down to {@link #getLastSection()}.
+     *
+     * Paths share their prefix with the parent path instead of copying it, so building the paths of a whole outline takes
+     * linear time and memory. The section path id and headings are computed once on first use.
+     */
+    public final static class SectionPath extends AbstractList<Section> {
+        private final String pageId;
+        private final SectionPath parent;
+        private final Section section;
+        private final int depth;
+        private volatile Section[] sections;
+        private volatile String sectionPathId;
+        private volatile List<String> headings;
+
+        private SectionPath(String pageId, SectionPath parent, Section section, int depth) {
+            this.pageId = pageId;
+            this.parent = parent;
+            this.section = section;
+            this.depth = depth;
+        }
+
+        /**
+         * Empty path at the top level of the given page.
+         */
+        public static SectionPath root(String pageId) {
+            return new SectionPath(pageId, null, null, 0);
+        }
+
+        /**
+         * Extend this path by one nested section (this path is not modified).
+         */
+        public SectionPath child(Section section) {
+            return new SectionPath(pageId, this, section, depth + 1);
+        }
+
+        /**
+         * @return path without the last section, or null for the empty path
+         */
+        public SectionPath getParent() {
+            return parent;
+        }
+
+        /**
+         * @return innermost section, or null for the empty path
+         */
+        public Section getLastSection() {
+            return section;
+        }
+
+        public String getPageId() {
+            return pageId;
+        }
+
+        /**
+         * Same as {@link Data#sectionPathId(String, List)}, computed once.
+         */
+        public String getSectionPathId() {
+            String result = sectionPathId;
+            if (result == null) {
+                if (parent == null) {
+                    result = pageId == null ? "" : pageId;
+                } else {
+                    final String headingId = section.getHeadingId();
+                    result = parent.getSectionPathId() + "/" + (headingId == null ? "" : headingId);
+                }
+                sectionPathId = result;
+            }
+            return result;
+        }
+
+        /**
+         * Same as {@link Data#sectionPathHeadings(List)}, computed once.
+         * @return read-only list of headings
+         */
+        public List<String> getHeadings() {
+            List<String> result = headings;
+            if (result == null) {
+                final String[] array = new String[depth];
+                SectionPath path = this;
+                for (int i = depth - 1; i >= 0; i--) {
+                    array[i] = path.section.getHeading();
+                    path = path.parent;
+                }
+                result = Collections.unmodifiableList(Arrays.asList(array));
+                headings = result;
+            }
+            return result;
+        }
+
+        private Section[] sections() {
+            Section[] result = sections;
+            if (result == null) {
+                result = new Section[depth];
+                SectionPath path = this;
+                for (int i = depth - 1; i >= 0; i--) {
+                    result[i] = path.section;
+                    path = path.parent;
+                }
+                sections = result;
+            }
             return result;
         }
+
+        @Override
+        public Section get(int index) {
+            if (index < 0 || index >= depth) {
+                throw new IndexOutOfBoundsException("Index " + index + " on section path of length " + depth);
+            }
+            if (index == depth - 1) {
+                return section;
+            }
+            return sections()[index];
+        }
+
+        @Override
+        public int size() {
+            return depth;
+        }
     }
 
     /**
      * Shared interface of elements inside a paragraph.
      */
     public interface ParaBody {
+        /**
+         * Dispatch to {@link PageVisitor#visitParaText} or {@link PageVisitor#visitParaLink}.
+         * @param path section path enclosing the paragraph
+         */
+        void accept(PageVisitor visitor, SectionPath path);
     }
 
     /**
@@ -547,6 +1045,13 @@ public class Data {
             return paragraph;
         }
 
+        @Override
+        public void accept(PageVisitor visitor, SectionPath path) {
+            if (visitor.visitPara(this, path)) {
+                paragraph.accept(visitor, path);
+            }
+        }
+
         @Override
         public String toString() {
             return "Para{" +
@@ -599,6 +1104,15 @@ public class Data {
             return captionSkel;
         }
 
+        @Override
+        public void accept(PageVisitor visitor, SectionPath path) {
+            if (visitor.visitImage(this, path)) {
+                for (PageSkeleton skel : captionSkel) {
+                    skel.accept(visitor, path);
+                }
+            }
+        }
+
         @Override
         public String toString() {
             return "Image{" +
@@ -657,6 +1171,13 @@ public class Data {
             return bodyParagraph;
         }
 
+        @Override
+        public void accept(PageVisitor visitor, SectionPath path) {
+            if (visitor.visitListItem(this, path)) {
+                bodyParagraph.accept(visitor, path);
+            }
+        }
+
         @Override
         public String toString() {
             return "* " + bodyParagraph.toString();
@@ -746,6 +1267,17 @@ public class Data {
             return entries;
         }
 
+        @Override
+        public void accept(PageVisitor visitor, SectionPath path) {
+            if (visitor.visitInfoBox(this, path)) {
+                for (Data.Entry<String, List<PageSkeleton>> entry : entries) {
+                    for (PageSkeleton skel : entry.getValue()) {
+                        skel.accept(visitor, path);
+                    }
+                }
+            }
+        }
+
         @Override
         public String toString() {
             return "InfoBox{" +
@@ -777,10 +1309,12 @@ public class Data {
     public final static class Paragraph  {
         private final String paraId;
         private final List<ParaBody> bodies;
+        private final long fingerprint;
 
         public Paragraph(String paraId, List<ParaBody> bodies) {
             this.paraId = paraId;
             this.bodies = bodies;
+            this.fingerprint = Fingerprint.ofParagraph(paraId, bodies);
         }
 
         /**
@@ -803,6 +1337,16 @@ public class Data {
             return bodies;
         }
 
+        /**
+         * Stable 64-bit fingerprint of paragraph id and content, computed once on construction.
+         *
+         * Unlike {@link #equals(Object)}, which only compares paragraph ids, this covers the full content.
+         * @return content fingerprint
+         */
+        public long getFingerprint() {
+            return fingerprint;
+        }
+
         @Override
         public String toString() {
             return "Paragraph{" +
@@ -844,6 +1388,16 @@ public class Data {
             return result;
         }
 
+        /**
+         * Visit all bodies of this paragraph in order.
+         * @param path section path enclosing this paragraph (may be null when used outside of a page)
+         */
+        public void accept(PageVisitor visitor, SectionPath path) {
+            for (ParaBody body : bodies) {
+                body.accept(visitor, path);
+            }
+        }
+
         @Override
         public boolean equals(Object o) {
             if (this == o) return true;
@@ -879,6 +1433,11 @@ public class Data {
             return text;
         }
 
+        @Override
+        public void accept(PageVisitor visitor, SectionPath path) {
+            visitor.visitParaText(this, path);
+        }
+
         @Override
         public String toString() {
             return "ParaText{" +
@@ -970,6 +1529,11 @@ public class Data {
             return page;
         }
 
+        @Override
+        public void accept(PageVisitor visitor, SectionPath path) {
+            visitor.visitParaLink(this, path);
+        }
+
         @Override
         public boolean equals(Object o) {
             if (this == o) return true;
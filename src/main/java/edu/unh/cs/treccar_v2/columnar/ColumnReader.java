@@ -0,0 +1,158 @@
+package edu.unh.cs.treccar_v2.columnar;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.zip.Inflater;
+import java.util.zip.InflaterInputStream;
+
+/**
+ * Sequential reader for a single column file written by {@link ColumnWriter}.
+ *
+ * Obtain instances via {@link ColumnarTable#openColumn(String)}, so that only the columns needed are decompressed.
+ */
+public final class ColumnReader implements Closeable {
+    private final String name;
+    private final ColumnType type;
+    private final long rowCount;
+    private final Inflater inflater;
+    private final InputStream in;
+    private final ArrayList<String> dictionary = new ArrayList<>();
+    private byte[] scratch = new byte[256];
+    private long row = 0;
+
+    ColumnReader(File file, String name, long rowCount) throws IOException {
+        this.name = name;
+        this.rowCount = rowCount;
+        this.inflater = new Inflater();
+        this.in = new BufferedInputStream(new InflaterInputStream(new FileInputStream(file), inflater, 1 << 16), 1 << 16);
+        final int magic = (readByte() << 24) | (readByte() << 16) | (readByte() << 8) | readByte();
+        if (magic != ColumnWriter.MAGIC) {
+            throw new IOException("Not a column file: " + file);
+        }
+        final int version = readByte();
+        if (version != ColumnWriter.VERSION) {
+            throw new IOException("Unsupported column file version " + version + " in " + file);
+        }
+        this.type = ColumnType.fromInt(readByte());
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public ColumnType getType() {
+        return type;
+    }
+
+    public boolean hasNext() {
+        return row < rowCount;
+    }
+
+    public long nextInt() throws IOException {
+        checkType(ColumnType.INT);
+        final long zigzag = readVarLong();
+        row++;
+        return (zigzag >>> 1) ^ -(zigzag & 1);
+    }
+
+    public String nextString() throws IOException {
+        checkType(ColumnType.STRING);
+        final String value = readUtf8();
+        row++;
+        return value;
+    }
+
+    public String nextDict() throws IOException {
+        checkType(ColumnType.DICT);
+        final String value = readDictEntry();
+        row++;
+        return value;
+    }
+
+    public List<String> nextDictList() throws IOException {
+        checkType(ColumnType.DICT_LIST);
+        final int size = (int) readVarLong();
+        final List<String> result = new ArrayList<>(size);
+        for (int i = 0; i < size; i++) {
+            result.add(readDictEntry());
+        }
+        row++;
+        return result;
+    }
+
+    /**
+     * Skip over the next value, whatever its type.
+     */
+    public void skip() throws IOException {
+        switch (type) {
+            case INT: nextInt(); break;
+            case STRING: nextString(); break;
+            case DICT: nextDict(); break;
+            case DICT_LIST: nextDictList(); break;
+        }
+    }
+
+    private void checkType(ColumnType expected) {
+        if (type != expected) {
+            throw new IllegalStateException("Column " + name + " is of type " + type + ", cannot read " + expected);
+        }
+        if (row >= rowCount) {
+            throw new IllegalStateException("Column " + name + " has only " + rowCount + " rows");
+        }
+    }
+
+    private String readDictEntry() throws IOException {
+        final int id = (int) readVarLong();
+        if (id < dictionary.size()) {
+            return dictionary.get(id);
+        } else if (id == dictionary.size()) {
+            final String value = readUtf8();
+            dictionary.add(value);
+            return value;
+        } else {
+            throw new IOException("Corrupt dictionary entry " + id + " in column " + name);
+        }
+    }
+
+    private String readUtf8() throws IOException {
+        final int length = (int) readVarLong();
+        if (scratch.length < length) {
+            scratch = new byte[Math.max(length, 2 * scratch.length)];
+        }
+        int read = 0;
+        while (read < length) {
+            final int n = in.read(scratch, read, length - read);
+            if (n < 0) throw new EOFException("Truncated column " + name);
+            read += n;
+        }
+        return new String(scratch, 0, length, StandardCharsets.UTF_8);
+    }
+
+    private long readVarLong() throws IOException {
+        long result = 0;
+        int shift = 0;
+        while (true) {
+            final int b = readByte();
+            result |= (long) (b & 0x7F) << shift;
+            if ((b & 0x80) == 0) return result;
+            shift += 7;
+        }
+    }
+
+    private int readByte() throws IOException {
+        final int b = in.read();
+        if (b < 0) throw new EOFException("Truncated column " + name);
+        return b;
+    }
+
+    @Override
+    public void close() throws IOException {
+        try {
+            in.close();
+        } finally {
+            inflater.end();
+        }
+    }
+}
@@ -0,0 +1,32 @@
+package edu.unh.cs.treccar_v2.columnar;
+
+/**
+ * Encoding of a single column file.
+ */
+public enum ColumnType {
+    /** Signed integers, zig-zag varint encoded. */
+    INT(0),
+    /** Arbitrary strings, length-prefixed UTF-8. */
+    STRING(1),
+    /** Low-cardinality strings, dictionary encoded (dictionary entries are inlined on first use). */
+    DICT(2),
+    /** Lists of low-cardinality strings, each entry dictionary encoded. */
+    DICT_LIST(3);
+
+    private final int value;
+    ColumnType(int value) {
+        this.value = value;
+    }
+
+    int getValue() {
+        return value;
+    }
+
+    private static ColumnType[] values = null;
+    public static ColumnType fromInt(int i) {
+        if (ColumnType.values == null) {
+            ColumnType.values = ColumnType.values();
+        }
+        return ColumnType.values[i];
+    }
+}
@@ -0,0 +1,123 @@
+package edu.unh.cs.treccar_v2.columnar;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+import java.util.List;
+import java.util.zip.Deflater;
+import java.util.zip.DeflaterOutputStream;
+
+/**
+ * Writes the values of one column into its own deflate-compressed file.
+ *
+ * Use {@link ColumnarTableWriter} to obtain instances; it keeps all columns of a table in step.
+ */
+public final class ColumnWriter implements Closeable {
+    static final int MAGIC = 0x43415243; // "CARC"
+    static final int VERSION = 1;
+
+    private final String name;
+    private final ColumnType type;
+    private final Deflater deflater;
+    private final OutputStream out;
+    private final HashMap<String, Integer> dictionary = new HashMap<>();
+    private long rowCount = 0;
+
+    ColumnWriter(File file, String name, ColumnType type) throws IOException {
+        this.name = name;
+        this.type = type;
+        this.deflater = new Deflater(Deflater.BEST_SPEED);
+        this.out = new BufferedOutputStream(new DeflaterOutputStream(new FileOutputStream(file), deflater, 1 << 16), 1 << 16);
+        writeFixedInt(MAGIC);
+        out.write(VERSION);
+        out.write(type.getValue());
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public ColumnType getType() {
+        return type;
+    }
+
+    public long getRowCount() {
+        return rowCount;
+    }
+
+    public void writeInt(long value) throws IOException {
+        checkType(ColumnType.INT);
+        writeVarLong((value << 1) ^ (value >> 63));
+        rowCount++;
+    }
+
+    public void writeString(String value) throws IOException {
+        checkType(ColumnType.STRING);
+        writeUtf8(value);
+        rowCount++;
+    }
+
+    public void writeDict(String value) throws IOException {
+        checkType(ColumnType.DICT);
+        writeDictEntry(value);
+        rowCount++;
+    }
+
+    public void writeDictList(List<String> values) throws IOException {
+        checkType(ColumnType.DICT_LIST);
+        writeVarLong(values.size());
+        for (String value : values) {
+            writeDictEntry(value);
+        }
+        rowCount++;
+    }
+
+    private void checkType(ColumnType expected) {
+        if (type != expected) {
+            throw new IllegalStateException("Column " + name + " is of type " + type + ", cannot write " + expected);
+        }
+    }
+
+    /** Known values are written as their id; a new value is written as the next free id, followed by its text. */
+    private void writeDictEntry(String value) throws IOException {
+        final Integer id = dictionary.get(value);
+        if (id != null) {
+            writeVarLong(id);
+        } else {
+            final int newId = dictionary.size();
+            dictionary.put(value, newId);
+            writeVarLong(newId);
+            writeUtf8(value);
+        }
+    }
+
+    private void writeUtf8(String value) throws IOException {
+        final byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        writeVarLong(bytes.length);
+        out.write(bytes);
+    }
+
+    private void writeVarLong(long value) throws IOException {
+        while ((value & ~0x7FL) != 0) {
+            out.write((int) ((value & 0x7F) | 0x80));
+            value >>>= 7;
+        }
+        out.write((int) value);
+    }
+
+    private void writeFixedInt(int value) throws IOException {
+        out.write(value >>> 24);
+        out.write(value >>> 16);
+        out.write(value >>> 8);
+        out.write(value);
+    }
+
+    @Override
+    public void close() throws IOException {
+        try {
+            out.close();
+        } finally {
+            deflater.end();
+        }
+    }
+}
@@ -0,0 +1,61 @@
+package edu.unh.cs.treccar_v2.columnar;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Read access to a table written by {@link ColumnarTableWriter}.
+ *
+ * Each column is stored in its own file, so a scan only pays for the columns it opens.
+ * All columns of a table have the same number of rows, row <i>i</i> of each column belongs to the same item.
+ */
+public final class ColumnarTable {
+    static final String MANIFEST = "columns.tsv";
+    private static final String COLUMN_SUFFIX = ".col";
+
+    private final File directory;
+    private final long rowCount;
+    private final LinkedHashMap<String, ColumnType> columns = new LinkedHashMap<>();
+
+    public ColumnarTable(File directory) throws IOException {
+        this.directory = directory;
+        try (BufferedReader reader = new BufferedReader(new InputStreamReader(new FileInputStream(new File(directory, MANIFEST)), StandardCharsets.UTF_8))) {
+            final String first = reader.readLine();
+            if (first == null || !first.startsWith("rows\t")) {
+                throw new IOException("Invalid manifest in " + directory);
+            }
+            this.rowCount = Long.parseLong(first.substring("rows\t".length()));
+            String line;
+            while ((line = reader.readLine()) != null) {
+                if (line.isEmpty()) continue;
+                final String[] fields = line.split("\t");
+                columns.put(fields[0], ColumnType.valueOf(fields[1]));
+            }
+        }
+    }
+
+    static File columnFile(File directory, String name) {
+        return new File(directory, name + COLUMN_SUFFIX);
+    }
+
+    public long getRowCount() {
+        return rowCount;
+    }
+
+    /**
+     * Column names and their types, in the order they were declared.
+     */
+    public Map<String, ColumnType> getColumns() {
+        return Collections.unmodifiableMap(columns);
+    }
+
+    public ColumnReader openColumn(String name) throws IOException {
+        if (!columns.containsKey(name)) {
+            throw new IllegalArgumentException("No column " + name + " in " + directory + ", available: " + columns.keySet());
+        }
+        return new ColumnReader(columnFile(directory, name), name, rowCount);
+    }
+}
@@ -0,0 +1,77 @@
+package edu.unh.cs.treccar_v2.columnar;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.LinkedHashMap;
+
+/**
+ * Writes a table as a directory with one compressed file per column plus a manifest.
+ *
+ * Declare all columns with {@link #addColumn(String, ColumnType)}, then write the same number of values to every column.
+ * The manifest is written by {@link #finish()}, where row counts are checked to agree; a table that was closed without
+ * finishing has no manifest and cannot be opened.
+ */
+public final class ColumnarTableWriter implements Closeable {
+    private final File directory;
+    private final LinkedHashMap<String, ColumnWriter> columns = new LinkedHashMap<>();
+    private boolean closed = false;
+
+    public ColumnarTableWriter(File directory) throws IOException {
+        this.directory = directory;
+        if (!directory.isDirectory() && !directory.mkdirs()) {
+            throw new IOException("Cannot create directory " + directory);
+        }
+        // a manifest left by an earlier export would describe the new, incomplete columns
+        Files.deleteIfExists(new File(directory, ColumnarTable.MANIFEST).toPath());
+    }
+
+    public ColumnWriter addColumn(String name, ColumnType type) throws IOException {
+        if (columns.containsKey(name)) {
+            throw new IllegalArgumentException("Duplicate column " + name);
+        }
+        final ColumnWriter writer = new ColumnWriter(ColumnarTable.columnFile(directory, name), name, type);
+        columns.put(name, writer);
+        return writer;
+    }
+
+    /**
+     * Close all columns and write the manifest; call once all values are written.
+     */
+    public void finish() throws IOException {
+        close();
+        long rowCount = -1;
+        for (ColumnWriter column : columns.values()) {
+            if (rowCount >= 0 && rowCount != column.getRowCount()) {
+                throw new IllegalStateException("Column " + column.getName() + " has " + column.getRowCount() + " rows, expected " + rowCount);
+            }
+            rowCount = column.getRowCount();
+        }
+
+        try (Writer manifest = new OutputStreamWriter(new FileOutputStream(new File(directory, ColumnarTable.MANIFEST)), StandardCharsets.UTF_8)) {
+            manifest.write("rows\t" + Math.max(rowCount, 0) + "\n");
+            for (ColumnWriter column : columns.values()) {
+                manifest.write(column.getName() + "\t" + column.getType() + "\n");
+            }
+        }
+    }
+
+    /**
+     * Close all columns, without writing the manifest unless {@link #finish()} was called.
+     */
+    @Override
+    public void close() throws IOException {
+        if (closed) return;
+        closed = true;
+        IOException failure = null;
+        for (ColumnWriter column : columns.values()) {
+            try {
+                column.close();
+            } catch (IOException e) {
+                if (failure == null) failure = e;
+                else failure.addSuppressed(e);
+            }
+        }
+        if (failure != null) throw failure;
+    }
+}
@@ -0,0 +1,302 @@
+package edu.unh.cs.treccar_v2.export;
+
+import edu.unh.cs.treccar_v2.Data;
+import edu.unh.cs.treccar_v2.read_data.DeserializeData;
+import org.apache.arrow.memory.BufferAllocator;
+import org.apache.arrow.memory.RootAllocator;
+import org.apache.arrow.vector.IntVector;
+import org.apache.arrow.vector.VarCharVector;
+import org.apache.arrow.vector.VectorSchemaRoot;
+import org.apache.arrow.vector.complex.ListVector;
+import org.apache.arrow.vector.ipc.ArrowFileWriter;
+import org.apache.arrow.vector.types.pojo.ArrowType;
+import org.apache.arrow.vector.types.pojo.Field;
+import org.apache.arrow.vector.types.pojo.FieldType;
+import org.apache.arrow.vector.types.pojo.Schema;
+
+import java.io.*;
+import java.nio.channels.Channels;
+import java.nio.charset.StandardCharsets;
+import java.util.*;
+import java.util.concurrent.*;
+
+/**
+ * Export pages into three Arrow IPC files (also readable as Feather v2), for zero-copy handoff to Python:
+ *
+ * - PREFIX.pages.arrow: one row per page
+ * - PREFIX.sections.arrow: one row per section path (see {@link Data.Page#flatSectionPaths()})
+ * - PREFIX.paragraphs.arrow: one row per paragraph with its section path, text, and entities
+ *
+ * Pages are read in batches; the three tables of a batch are filled and written concurrently while the
+ * next batch is being decoded. At most two batches are held in memory.
+ *
+ * On Java 9 or later, Arrow requires the JVM option `--add-opens=java.base/java.nio=ALL-UNNAMED`.
+ */
+public class ArrowFromPages {
+    public static final int DEFAULT_BATCH_SIZE = 10000;
+
+    public static void usage() {
+        System.out.println("Command line parameters: FILE OUTPUT_PREFIX [BATCH_SIZE]");
+        System.exit(-1);
+    }
+
+    public static void main(String[] args) throws IOException, InterruptedException {
+        System.setProperty("file.encoding", "UTF-8");
+        if (args.length < 2)
+            usage();
+
+        final int batchSize = args.length > 2 ? Integer.parseInt(args[2]) : DEFAULT_BATCH_SIZE;
+        final FileInputStream fileInputStream = new FileInputStream(new File(args[0]));
+        export(DeserializeData.iterableAnnotations(fileInputStream), args[1], batchSize);
+        fileInputStream.close();
+    }
+
+    public static void export(Iterable<Data.Page> pages, String outputPrefix, int batchSize) throws IOException, InterruptedException {
+        final ExecutorService executor = Executors.newFixedThreadPool(3);
+        try (BufferAllocator allocator = new RootAllocator();
+             TableWriter pagesWriter = new PagesTableWriter(allocator, new File(outputPrefix + ".pages.arrow"));
+             TableWriter sectionsWriter = new SectionsTableWriter(allocator, new File(outputPrefix + ".sections.arrow"));
+             TableWriter paragraphsWriter = new ParagraphsTableWriter(allocator, new File(outputPrefix + ".paragraphs.arrow"))) {
+            final List<TableWriter> writers = Arrays.asList(pagesWriter, sectionsWriter, paragraphsWriter);
+            try {
+                List<Future<Void>> pending = Collections.emptyList();
+                List<Data.Page> batch = new ArrayList<>(batchSize);
+                for (Data.Page page : pages) {
+                    batch.add(page);
+                    if (batch.size() == batchSize) {
+                        awaitAll(pending);
+                        pending = submitBatch(executor, writers, batch);
+                        batch = new ArrayList<>(batchSize);
+                    }
+                }
+                awaitAll(pending);
+                if (!batch.isEmpty()) {
+                    awaitAll(submitBatch(executor, writers, batch));
+                }
+            } finally {
+                // on failure, batches may still be writing; the tables and the allocator must outlive them
+                shutdownAndWait(executor);
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    /**
+     * Cancel tasks that have not started and wait for running ones, even if interrupted (the interrupt is kept).
+     */
+    private static void shutdownAndWait(ExecutorService executor) {
+        executor.shutdownNow();
+        boolean interrupted = false;
+        while (true) {
+            try {
+                if (executor.awaitTermination(1, TimeUnit.MINUTES)) break;
+            } catch (InterruptedException e) {
+                interrupted = true;
+            }
+        }
+        if (interrupted) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private static List<Future<Void>> submitBatch(ExecutorService executor, List<TableWriter> writers, final List<Data.Page> batch) {
+        final List<Future<Void>> futures = new ArrayList<>(writers.size());
+        for (final TableWriter writer : writers) {
+            futures.add(executor.submit(new Callable<Void>() {
+                @Override
+                public Void call() throws IOException {
+                    writer.writeBatch(batch);
+                    return null;
+                }
+            }));
+        }
+        return futures;
+    }
+
+    private static void awaitAll(List<Future<Void>> futures) throws IOException, InterruptedException {
+        for (Future<Void> future : futures) {
+            try {
+                future.get();
+            } catch (ExecutionException e) {
+                if (e.getCause() instanceof IOException) throw (IOException) e.getCause();
+                throw new RuntimeException(e.getCause());
+            }
+        }
+    }
+
+    private static Field utf8Field(String name) {
+        return Field.notNullable(name, new ArrowType.Utf8());
+    }
+
+    private static Field utf8ListField(String name) {
+        return new Field(name, FieldType.notNullable(new ArrowType.List()), Collections.singletonList(utf8Field("item")));
+    }
+
+    private static Field intField(String name) {
+        return Field.notNullable(name, new ArrowType.Int(32, true));
+    }
+
+    private static byte[] utf8(String s) {
+        return s.getBytes(StandardCharsets.UTF_8);
+    }
+
+    private static void setStringList(ListVector vector, int row, List<String> values) {
+        final int offset = vector.startNewValue(row);
+        final VarCharVector data = (VarCharVector) vector.getDataVector();
+        for (int i = 0; i < values.size(); i++) {
+            data.setSafe(offset + i, utf8(values.get(i)));
+        }
+        vector.endValue(row, values.size());
+    }
+
+    /**
+     * One output file; {@link #writeBatch(List)} is never called concurrently for the same table.
+     */
+    private static abstract class TableWriter implements Closeable {
+        protected final VectorSchemaRoot root;
+        private final OutputStream out;
+        private final ArrowFileWriter writer;
+
+        TableWriter(BufferAllocator allocator, Schema schema, File file) throws IOException {
+            this.root = VectorSchemaRoot.create(schema, allocator);
+            this.out = new BufferedOutputStream(new FileOutputStream(file), 1 << 20);
+            this.writer = new ArrowFileWriter(root, null, Channels.newChannel(out));
+            this.writer.start();
+        }
+
+        void writeBatch(List<Data.Page> pages) throws IOException {
+            root.allocateNew();
+            final int rowCount = fill(pages);
+            root.setRowCount(rowCount);
+            writer.writeBatch();
+        }
+
+        /**
+         * Fill vectors of {@link #root} with rows derived from the pages.
+         * @return number of rows
+         */
+        protected abstract int fill(List<Data.Page> pages);
+
+        @Override
+        public void close() throws IOException {
+            try {
+                writer.end();
+                writer.close();
+                out.close();
+            } finally {
+                root.close();
+            }
+        }
+    }
+
+    private static final class PagesTableWriter extends TableWriter {
+        PagesTableWriter(BufferAllocator allocator, File file) throws IOException {
+            super(allocator, new Schema(Arrays.asList(
+                    utf8Field("pageId"),
+                    utf8Field("pageName"),
+                    utf8Field("pageType"),
+                    utf8ListField("redirectNames"),
+                    utf8ListField("categoryIds"),
+                    intField("inlinkCount"))), file);
+        }
+
+        @Override
+        protected int fill(List<Data.Page> pages) {
+            final VarCharVector pageId = (VarCharVector) root.getVector("pageId");
+            final VarCharVector pageName = (VarCharVector) root.getVector("pageName");
+            final VarCharVector pageType = (VarCharVector) root.getVector("pageType");
+            final ListVector redirectNames = (ListVector) root.getVector("redirectNames");
+            final ListVector categoryIds = (ListVector) root.getVector("categoryIds");
+            final IntVector inlinkCount = (IntVector) root.getVector("inlinkCount");
+
+            int row = 0;
+            for (Data.Page page : pages) {
+                final Data.PageMetadata metadata = page.getPageMetadata() != null ? page.getPageMetadata() : new Data.PageMetadata();
+                pageId.setSafe(row, utf8(page.getPageId()));
+                pageName.setSafe(row, utf8(page.getPageName()));
+                pageType.setSafe(row, utf8(page.getPageType().name()));
+                setStringList(redirectNames, row, metadata.getRedirectNames());
+                setStringList(categoryIds, row, metadata.getCategoryIds());
+                inlinkCount.setSafe(row, metadata.getInlinkIds().size());
+                row++;
+            }
+            return row;
+        }
+    }
+
+    private static final class SectionsTableWriter extends TableWriter {
+        SectionsTableWriter(BufferAllocator allocator, File file) throws IOException {
+            super(allocator, new Schema(Arrays.asList(
+                    utf8Field("pageId"),
+                    utf8Field("sectionPathId"),
+                    utf8ListField("headings"),
+                    intField("depth"))), file);
+        }
+
+        @Override
+        protected int fill(List<Data.Page> pages) {
+            final VarCharVector pageId = (VarCharVector) root.getVector("pageId");
+            final VarCharVector sectionPathId = (VarCharVector) root.getVector("sectionPathId");
+            final ListVector headings = (ListVector) root.getVector("headings");
+            final IntVector depth = (IntVector) root.getVector("depth");
+
+            int row = 0;
+            for (Data.Page page : pages) {
+                final byte[] pageIdBytes = utf8(page.getPageId());
+                for (List<Data.Section> sectionPath : page.flatSectionPaths()) {
+                    pageId.setSafe(row, pageIdBytes);
+                    sectionPathId.setSafe(row, utf8(Data.sectionPathId(page.getPageId(), sectionPath)));
+                    setStringList(headings, row, Data.sectionPathHeadings(sectionPath));
+                    depth.setSafe(row, sectionPath.size());
+                    row++;
+                }
+            }
+            return row;
+        }
+    }
+
+    private static final class ParagraphsTableWriter extends TableWriter {
+        ParagraphsTableWriter(BufferAllocator allocator, File file) throws IOException {
+            super(allocator, new Schema(Arrays.asList(
+                    utf8Field("pageId"),
+                    utf8Field("sectionPathId"),
+                    utf8Field("paraId"),
+                    utf8Field("text"),
+                    utf8ListField("entities"),
+                    utf8ListField("entityIds"))), file);
+        }
+
+        @Override
+        protected int fill(List<Data.Page> pages) {
+            final VarCharVector pageId = (VarCharVector) root.getVector("pageId");
+            final VarCharVector sectionPathId = (VarCharVector) root.getVector("sectionPathId");
+            final VarCharVector paraId = (VarCharVector) root.getVector("paraId");
+            final VarCharVector text = (VarCharVector) root.getVector("text");
+            final ListVector entities = (ListVector) root.getVector("entities");
+            final ListVector entityIds = (ListVector) root.getVector("entityIds");
+
+            final List<String> linkTargetIds = new ArrayList<>();
+            int row = 0;
+            for (Data.Page page : pages) {
+                final byte[] pageIdBytes = utf8(page.getPageId());
+                for (Data.Page.SectionPathParagraphs sectionPathParagraph : page.flatSectionPathsParagraphs()) {
+                    final Data.Paragraph paragraph = sectionPathParagraph.getParagraph();
+                    linkTargetIds.clear();
+                    for (Data.ParaBody body : paragraph.getBodies()) {
+                        if (body instanceof Data.ParaLink) linkTargetIds.add(((Data.ParaLink) body).getPageId());
+                    }
+
+                    pageId.setSafe(row, pageIdBytes);
+                    sectionPathId.setSafe(row, utf8(Data.sectionPathId(page.getPageId(), sectionPathParagraph.getSectionPath())));
+                    paraId.setSafe(row, utf8(paragraph.getParaId()));
+                    text.setSafe(row, utf8(paragraph.getTextOnly()));
+                    setStringList(entities, row, paragraph.getEntitiesOnly());
+                    setStringList(entityIds, row, linkTargetIds);
+                    row++;
+                }
+            }
+            return row;
+        }
+    }
+}
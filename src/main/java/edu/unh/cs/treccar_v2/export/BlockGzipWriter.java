@@ -0,0 +1,152 @@
+package edu.unh.cs.treccar_v2.export;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.concurrent.*;
+import java.util.zip.Deflater;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Writer that collects text into large blocks, and encodes (UTF-8) and gzip-compresses the blocks on a thread pool.
+ *
+ * Every block becomes one gzip member, written in order; concatenated members form a valid gzip file that
+ * {@code zcat} and {@link java.util.zip.GZIPInputStream} read as one stream. Blocks end at a line break when possible.
+ * Not thread-safe.
+ */
+public final class BlockGzipWriter extends Writer {
+    public static final int DEFAULT_BLOCK_SIZE = 4 << 20;
+
+    private final OutputStream outputStream;
+    private final int blockSize;
+    private final int compressionLevel;
+    private final ExecutorService executor;
+    private final int maxPending;
+    private final Deque<Future<byte[]>> pending = new ArrayDeque<>();
+    private StringBuilder block;
+    private boolean closed = false;
+
+    public BlockGzipWriter(OutputStream outputStream, int numThreads) {
+        this(outputStream, DEFAULT_BLOCK_SIZE, Deflater.DEFAULT_COMPRESSION, numThreads);
+    }
+
+    /**
+     * @param blockSize block size in characters
+     */
+    public BlockGzipWriter(OutputStream outputStream, int blockSize, int compressionLevel, int numThreads) {
+        this.outputStream = outputStream;
+        this.blockSize = blockSize;
+        this.compressionLevel = compressionLevel;
+        this.executor = Executors.newFixedThreadPool(numThreads);
+        this.maxPending = 2 * numThreads;
+        this.block = new StringBuilder(blockSize + (blockSize >> 3));
+    }
+
+    @Override
+    public void write(char[] cbuf, int off, int len) throws IOException {
+        block.append(cbuf, off, len);
+        blockWritten();
+    }
+
+    @Override
+    public void write(int c) throws IOException {
+        block.append((char) c);
+        blockWritten();
+    }
+
+    @Override
+    public void write(String str, int off, int len) throws IOException {
+        block.append(str, off, off + len);
+        blockWritten();
+    }
+
+    @Override
+    public Writer append(CharSequence csq) throws IOException {
+        block.append(csq);
+        blockWritten();
+        return this;
+    }
+
+    private void blockWritten() throws IOException {
+        if (block.length() < blockSize) {
+            return;
+        }
+        int end = block.lastIndexOf("\n") + 1;
+        if (end == 0) {
+            // no line break: cut anywhere but inside a surrogate pair
+            end = Character.isHighSurrogate(block.charAt(block.length() - 1)) ? block.length() - 1 : block.length();
+        }
+        final StringBuilder rest = new StringBuilder(blockSize + (blockSize >> 3));
+        rest.append(block, end, block.length());
+        block.setLength(end);
+        submit(block);
+        block = rest;
+    }
+
+    private void submit(final StringBuilder text) throws IOException {
+        if (pending.size() >= maxPending) {
+            writeCompleted();
+        }
+        pending.addLast(executor.submit(new Callable<byte[]>() {
+            @Override
+            public byte[] call() throws IOException {
+                return compress(text.toString().getBytes(StandardCharsets.UTF_8), compressionLevel);
+            }
+        }));
+    }
+
+    private void writeCompleted() throws IOException {
+        try {
+            outputStream.write(pending.removeFirst().get());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException(e);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof IOException) throw (IOException) e.getCause();
+            throw new IOException(e.getCause());
+        }
+    }
+
+    private static byte[] compress(byte[] data, final int compressionLevel) throws IOException {
+        final ByteArrayOutputStream member = new ByteArrayOutputStream(data.length / 3 + 64);
+        try (GZIPOutputStream gzip = new GZIPOutputStream(member, 1 << 16) {
+            {
+                def.setLevel(compressionLevel);
+            }
+        }) {
+            gzip.write(data);
+        }
+        return member.toByteArray();
+    }
+
+    /**
+     * Compress and write everything written so far, ending the current block early.
+     */
+    @Override
+    public void flush() throws IOException {
+        if (block.length() > 0) {
+            submit(block);
+            block = new StringBuilder(blockSize + (blockSize >> 3));
+        }
+        while (!pending.isEmpty()) {
+            writeCompleted();
+        }
+        outputStream.flush();
+    }
+
+    @Override
+    public void close() throws IOException {
+        if (closed) return;
+        closed = true;
+        try {
+            flush();
+        } finally {
+            executor.shutdownNow();
+            outputStream.close();
+        }
+    }
+}
@@ -0,0 +1,133 @@
+package edu.unh.cs.treccar_v2.export;
+
+import edu.unh.cs.treccar_v2.Data;
+import edu.unh.cs.treccar_v2.columnar.ColumnType;
+import edu.unh.cs.treccar_v2.columnar.ColumnWriter;
+import edu.unh.cs.treccar_v2.columnar.ColumnarTableWriter;
+import edu.unh.cs.treccar_v2.read_data.DeserializeData;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Export per-page or per-paragraph attributes into a columnar table (see {@link edu.unh.cs.treccar_v2.columnar.ColumnarTable}),
+ * so that analytics jobs can scan only the attributes they need instead of decoding whole pages.
+ */
+public class ColumnsFromPages {
+    public static void usage() {
+        System.out.println("Command line parameters: (pages|paragraphs) FILE OUTPUT_DIRECTORY");
+        System.exit(-1);
+    }
+
+    public static void main(String[] args) throws IOException {
+        System.setProperty("file.encoding", "UTF-8");
+        if (args.length < 3)
+            usage();
+
+        final String mode = args[0];
+        final FileInputStream fileInputStream = new FileInputStream(new File(args[1]));
+        final File outputDirectory = new File(args[2]);
+
+        if (mode.equals("pages")) {
+            exportPages(DeserializeData.iterableAnnotations(fileInputStream), outputDirectory);
+        } else if (mode.equals("paragraphs")) {
+            exportParagraphs(DeserializeData.iterableParagraphs(fileInputStream), outputDirectory);
+        } else {
+            usage();
+        }
+        fileInputStream.close();
+    }
+
+    public static void exportPages(Iterable<Data.Page> pages, File outputDirectory) throws IOException {
+        try (ColumnarTableWriter table = new ColumnarTableWriter(outputDirectory)) {
+            final ColumnWriter pageId = table.addColumn("pageId", ColumnType.STRING);
+            final ColumnWriter pageName = table.addColumn("pageName", ColumnType.STRING);
+            final ColumnWriter pageType = table.addColumn("pageType", ColumnType.DICT);
+            final ColumnWriter categoryIds = table.addColumn("categoryIds", ColumnType.DICT_LIST);
+            final ColumnWriter inlinkCount = table.addColumn("inlinkCount", ColumnType.INT);
+            final ColumnWriter redirectCount = table.addColumn("redirectCount", ColumnType.INT);
+            final ColumnWriter sectionCount = table.addColumn("sectionCount", ColumnType.INT);
+            final ColumnWriter paragraphCount = table.addColumn("paragraphCount", ColumnType.INT);
+            final ColumnWriter linkCount = table.addColumn("linkCount", ColumnType.INT);
+
+            final int[] counts = new int[3];
+            for (Data.Page page : pages) {
+                final Data.PageMetadata metadata = page.getPageMetadata();
+                pageId.writeString(page.getPageId());
+                pageName.writeString(page.getPageName());
+                pageType.writeDict(page.getPageType().name());
+                categoryIds.writeDictList(metadata != null ? metadata.getCategoryIds() : Collections.<String>emptyList());
+                inlinkCount.writeInt(metadata != null ? metadata.getInlinkIds().size() : 0);
+                redirectCount.writeInt(metadata != null ? metadata.getRedirectNames().size() : 0);
+
+                counts[0] = 0; counts[1] = 0; counts[2] = 0;
+                countSkeletons(page.getSkeleton(), counts);
+                sectionCount.writeInt(counts[0]);
+                paragraphCount.writeInt(counts[1]);
+                linkCount.writeInt(counts[2]);
+            }
+            table.finish();
+        }
+    }
+
+    public static void exportParagraphs(Iterable<Data.Paragraph> paragraphs, File outputDirectory) throws IOException {
+        try (ColumnarTableWriter table = new ColumnarTableWriter(outputDirectory)) {
+            final ColumnWriter paraId = table.addColumn("paraId", ColumnType.STRING);
+            final ColumnWriter textLength = table.addColumn("textLength", ColumnType.INT);
+            final ColumnWriter linkCount = table.addColumn("linkCount", ColumnType.INT);
+
+            for (Data.Paragraph paragraph : paragraphs) {
+                int length = 0;
+                int links = 0;
+                for (Data.ParaBody body : paragraph.getBodies()) {
+                    if (body instanceof Data.ParaLink) {
+                        length += ((Data.ParaLink) body).getAnchorText().length();
+                        links++;
+                    } else if (body instanceof Data.ParaText) {
+                        length += ((Data.ParaText) body).getText().length();
+                    }
+                }
+                paraId.writeString(paragraph.getParaId());
+                textLength.writeInt(length);
+                linkCount.writeInt(links);
+            }
+            table.finish();
+        }
+    }
+
+    /**
+     * Accumulates number of sections, paragraphs, and links into counts[0], counts[1], counts[2], including those in
+     * image captions and infobox values.
+     */
+    private static void countSkeletons(List<Data.PageSkeleton> skeletons, int[] counts) {
+        for (Data.PageSkeleton skel : skeletons) {
+            if (skel instanceof Data.Section) {
+                counts[0]++;
+                countSkeletons(((Data.Section) skel).getChildren(), counts);
+            } else if (skel instanceof Data.Para) {
+                counts[1]++;
+                counts[2] += countLinks(((Data.Para) skel).getParagraph());
+            } else if (skel instanceof Data.ListItem) {
+                counts[2] += countLinks(((Data.ListItem) skel).getBodyParagraph());
+            } else if (skel instanceof Data.Image) {
+                final List<Data.PageSkeleton> caption = ((Data.Image) skel).getCaptionSkel();
+                if (caption != null) countSkeletons(caption, counts);
+            } else if (skel instanceof Data.InfoBox) {
+                for (Data.Entry<String, List<Data.PageSkeleton>> entry : ((Data.InfoBox) skel).getEntries()) {
+                    countSkeletons(entry.getValue(), counts);
+                }
+            }
+        }
+    }
+
+    private static int countLinks(Data.Paragraph paragraph) {
+        int links = 0;
+        for (Data.ParaBody body : paragraph.getBodies()) {
+            if (body instanceof Data.ParaLink) links++;
+        }
+        return links;
+    }
+}
@@ -0,0 +1,50 @@
+package edu.unh.cs.treccar_v2.export;
+
+import edu.unh.cs.treccar_v2.pipeline.StageStats;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+
+/**
+ * Output for the exporters: stdout or a file, buffered, and block-compressed in parallel when the file name ends
+ * in ".gz" (see {@link BlockGzipWriter}). Text is always written as UTF-8.
+ */
+public final class ExportOutput {
+    public static final String USAGE = "OUTPUT_FILE is optional (default: stdout); names ending in .gz are gzip compressed in parallel.";
+
+    private ExportOutput() {}
+
+    /**
+     * Number of threads from the optional command line argument at the position, by default one per core.
+     */
+    public static int numThreads(String[] args, int position) {
+        return args.length > position ? Integer.parseInt(args[position]) : Runtime.getRuntime().availableProcessors();
+    }
+
+    /**
+     * Print the throughput of the pipeline stages to stderr.
+     */
+    public static void report(List<StageStats> stats) {
+        for (StageStats stage : stats) {
+            System.err.println(stage);
+        }
+    }
+
+    /**
+     * @param path output file, or null or "-" for stdout
+     */
+    public static Writer open(String path) throws IOException {
+        return open(path, Runtime.getRuntime().availableProcessors());
+    }
+
+    public static Writer open(String path, int numThreads) throws IOException {
+        final OutputStream outputStream = (path == null || "-".equals(path))
+                ? new FileOutputStream(FileDescriptor.out)
+                : new FileOutputStream(new File(path));
+        if (path != null && path.endsWith(".gz")) {
+            return new BlockGzipWriter(new BufferedOutputStream(outputStream, 1 << 20), numThreads);
+        }
+        return new BufferedWriter(new OutputStreamWriter(outputStream, StandardCharsets.UTF_8), 1 << 20);
+    }
+}
@@ -1,14 +1,15 @@
 package edu.unh.cs.treccar_v2.export;
 
-import co.nstant.in.cbor.CborException;
 import edu.unh.cs.treccar_v2.Data;
-import edu.unh.cs.treccar_v2.read_data.DeserializeData;
+import edu.unh.cs.treccar_v2.pipeline.Pipeline;
+import edu.unh.cs.treccar_v2.pipeline.Sink;
+import edu.unh.cs.treccar_v2.pipeline.StageStats;
+import edu.unh.cs.treccar_v2.pipeline.Transform;
 
 import java.io.File;
 import java.io.FileInputStream;
-import java.io.FileNotFoundException;
-import java.util.ArrayList;
-import java.util.Collections;
+import java.io.IOException;
+import java.io.Writer;
 import java.util.List;
 
 /**
@@ -17,83 +18,126 @@ import java.util.List;
  * Time: 6:11 PM
  */
 public class FullTextFromPages {
-    private static List<String> recurseArticle(Data.PageSkeleton skel, String query){
-
-        if(skel instanceof Data.Section){
-            final Data.Section section = (Data.Section) skel;
-            String query2 = section.getHeading();
+    /**
+     * Emits one output string per paragraph, list item, image, or infobox, prefixed with the enclosing section headings.
+     * Each string is appended to the output followed by the terminator.
+     */
+    private static final class FullTextVisitor implements Data.PageVisitor {
+        private final String prefix;
+        private final StringBuilder out;
+        private final String terminator;
+        private final StringBuilder text = new StringBuilder();
+
+        FullTextVisitor(String prefix, StringBuilder out, String terminator) {
+            this.prefix = prefix;
+            this.out = out;
+            this.terminator = terminator;
+        }
 
-            List<String> result = new ArrayList<>();
-            for(Data.PageSkeleton child : section.getChildren()) {
-                result.addAll(recurseArticle(child, query+" " + query2));
+        private void appendQuery(Data.SectionPath path) {
+            out.append(prefix);
+            for (String heading : path.getHeadings()) {
+                out.append(' ').append(heading);
             }
-            return result;
+        }
 
-        } else if (skel instanceof Data.Para) {
-            Data.Para para = (Data.Para) skel;
-            Data.Paragraph paragraph = para.getParagraph();
+        @Override
+        public void visitParaText(Data.ParaText paraText, Data.SectionPath path) {
+            text.append(paraText.getText());
+        }
 
-            StringBuilder text = new StringBuilder();
-            for(Data.ParaBody body: paragraph.getBodies()){
-               if(body instanceof Data.ParaLink) text.append(((Data.ParaLink) body).getAnchorText());
-               if(body instanceof Data.ParaText) text.append(((Data.ParaText) body).getText());
-            }
-//            if(text.length()>10) {
-                return Collections.singletonList(query + " " + text);
-//            } else return Collections.emptyList();
-        } else if (skel instanceof Data.Image) {
-            return Collections.singletonList("");
-        } else if (skel instanceof Data.ListItem) {
-            final Data.Paragraph paragraph = ((Data.ListItem) skel).getBodyParagraph();
-
-            StringBuilder text = new StringBuilder();
-            for(Data.ParaBody body: paragraph.getBodies()){
-                if(body instanceof Data.ParaLink) text.append(((Data.ParaLink) body).getAnchorText());
-                if(body instanceof Data.ParaText) text.append(((Data.ParaText) body).getText());
+        @Override
+        public void visitParaLink(Data.ParaLink paraLink, Data.SectionPath path) {
+            text.append(paraLink.getAnchorText());
+        }
+
+        @Override
+        public boolean visitPara(Data.Para para, Data.SectionPath path) {
+            appendQuery(path);
+            out.append(' ');
+            text.setLength(0);
+            para.getParagraph().accept(this, path);
+            out.append(text).append(terminator);
+            return false;
+        }
+
+        @Override
+        public boolean visitImage(Data.Image image, Data.SectionPath path) {
+            out.append(terminator);
+            return false;
+        }
+
+        @Override
+        public boolean visitListItem(Data.ListItem listItem, Data.SectionPath path) {
+            text.setLength(0);
+            listItem.getBodyParagraph().accept(this, path);
+            if (text.length() > 10) {
+                appendQuery(path);
+                out.append(' ').append(text).append(terminator);
             }
-            if(text.length()>10) {
-                return Collections.singletonList(query + " " + text);
-            } else return Collections.emptyList();
-        } else if (skel instanceof Data.InfoBox) {
-            Data.InfoBox box = (Data.InfoBox) skel;
-            StringBuilder text = new StringBuilder();
-            text.append("Infobox ("+box.getInfoboxType()+") ");
-            for(Data.Entry<String, List<Data.PageSkeleton>> entry: box.getEntries()) {
-                if(entry.getValue().size()>0) {
-                    text.append(entry.getKey() + ": [");
+            return false;
+        }
+
+        @Override
+        public boolean visitInfoBox(Data.InfoBox box, Data.SectionPath path) {
+            appendQuery(path);
+            out.append(' ');
+            out.append("Infobox (").append(box.getInfoboxType()).append(") ");
+            for (Data.Entry<String, List<Data.PageSkeleton>> entry : box.getEntries()) {
+                if (entry.getValue().size() > 0) {
+                    out.append(entry.getKey()).append(": [");
+                    final FullTextVisitor valueVisitor = new FullTextVisitor("", out, " ");
+                    final Data.SectionPath valuePath = Data.SectionPath.root(null);
                     for (Data.PageSkeleton val : entry.getValue()) {
-                        List<String> result = recurseArticle(val, "");
-                        for(String str: result) {
-                            text.append(str+" ");
-                        }
+                        val.accept(valueVisitor, valuePath);
                     }
-                    text.append("] ");
+                    out.append("] ");
                 }
             }
-            return Collections.singletonList(query + " " +text.toString());
+            out.append(terminator);
+            return false;
         }
-        else throw new UnsupportedOperationException("not known skel "+skel);
     }
 
+    /**
+     * Append one line per paragraph (and list item, image, infobox) of the page, prefixed with page name and section headings.
+     */
+    public static void appendFullText(Data.Page page, StringBuilder out) {
+        page.accept(new FullTextVisitor(page.getPageName(), out, System.lineSeparator()));
+    }
 
-    public static void main(String[] args) throws FileNotFoundException {
-        System.setProperty("file.encoding", "UTF-8");
-        final FileInputStream fileInputStream = new FileInputStream(new File(args[0]));
-
-        for(Data.Page page: DeserializeData.iterableAnnotations(fileInputStream)) {
-            String query = page.getPageName();
 
-            List<String> result = new ArrayList<>();
-            for(Data.PageSkeleton skel: page.getSkeleton()){
-                result.addAll(recurseArticle(skel, page.getPageName()));
-            }
+    public static void usage() {
+        System.out.println("Command line parameters: PAGES_FILE [OUTPUT_FILE [NUM_THREADS]]");
+        System.out.println("  " + ExportOutput.USAGE);
+        System.exit(-1);
+    }
 
-            for(String line: result){
-                System.out.println(line);
-            }
+    public static void main(String[] args) throws IOException, InterruptedException {
+        System.setProperty("file.encoding", "UTF-8");
+        if (args.length < 1)
+            usage();
+        final FileInputStream fileInputStream = new FileInputStream(new File(args[0]));
+        final int numThreads = ExportOutput.numThreads(args, 2);
+
+        try (final Writer out = ExportOutput.open(args.length > 1 ? args[1] : null, numThreads)) {
+            final List<StageStats> stats = Pipeline.pages(fileInputStream, numThreads)
+                    .map("fulltext", numThreads, new Transform<Data.Page, String>() {
+                        @Override
+                        public String apply(Data.Page page) {
+                            final StringBuilder buffer = new StringBuilder();
+                            appendFullText(page, buffer);
+                            return buffer.toString();
+                        }
+                    })
+                    .run(new Sink<String>() {
+                        @Override
+                        public void accept(String text) throws IOException {
+                            out.write(text);
+                        }
+                    });
+            ExportOutput.report(stats);
         }
-
-
     }
 
 }
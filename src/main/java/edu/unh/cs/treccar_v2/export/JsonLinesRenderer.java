@@ -0,0 +1,243 @@
+package edu.unh.cs.treccar_v2.export;
+
+import edu.unh.cs.treccar_v2.Data;
+import edu.unh.cs.treccar_v2.Header;
+
+import java.io.IOException;
+import java.util.List;
+
+/**
+ * Renders each header, page, or paragraph as one JSON object on a line of its own.
+ *
+ * Page skeletons are arrays of objects with a "type" of "section", "para", "image", "list", or "infobox";
+ * paragraph bodies are arrays of objects with a "type" of "text" or "link". Absent values are omitted.
+ */
+public final class JsonLinesRenderer implements PageRenderer {
+    private static final char[] HEX = "0123456789abcdef".toCharArray();
+
+    @Override
+    public void renderHeader(Header.TrecCarHeader header, Appendable out) throws IOException {
+        out.append("{\"fileType\":");
+        writeString(header.getFileType().name(), out);
+        final Header.Provenance provenance = header.getProvenance();
+        if (provenance != null) {
+            out.append(",\"dataReleaseName\":");
+            writeString(provenance.getDataReleaseName(), out);
+            out.append(",\"siteProvenance\":[");
+            boolean first = true;
+            for (Header.SiteProvenance site : provenance.getSiteProvenance()) {
+                if (!first) out.append(',');
+                first = false;
+                out.append("{\"siteId\":");
+                writeString(site.getProvSiteId(), out);
+                out.append(",\"language\":");
+                writeString(site.getLanguage(), out);
+                out.append(",\"sourceName\":");
+                writeString(site.getSourceName(), out);
+                out.append(",\"comments\":");
+                strings(site.getSiteComments(), out);
+                out.append('}');
+            }
+            out.append("],\"comments\":");
+            strings(provenance.getComments(), out);
+            out.append(",\"transforms\":[");
+            first = true;
+            for (Header.Transform transform : provenance.getTransforms()) {
+                if (!first) out.append(',');
+                first = false;
+                out.append("{\"toolName\":");
+                writeString(transform.getToolName(), out);
+                out.append(",\"toolCommit\":");
+                writeString(transform.getToolCommit(), out);
+                out.append(",\"toolInfo\":");
+                writeString(transform.getToolInfo(), out);
+                out.append('}');
+            }
+            out.append(']');
+        }
+        out.append("}\n");
+    }
+
+    @Override
+    public void renderPage(Data.Page page, Appendable out) throws IOException {
+        out.append("{\"pageId\":");
+        writeString(page.getPageId(), out);
+        out.append(",\"pageName\":");
+        writeString(page.getPageName(), out);
+        if (page.getPageType() != null) {
+            out.append(",\"pageType\":");
+            writeString(page.getPageType().name(), out);
+        }
+        if (page.getPageMetadata() != null) {
+            out.append(",\"metadata\":");
+            metadata(page.getPageMetadata(), out);
+        }
+        out.append(",\"skeleton\":");
+        skeleton(page.getSkeleton(), out);
+        out.append("}\n");
+    }
+
+    @Override
+    public void renderParagraph(Data.Paragraph paragraph, Appendable out) throws IOException {
+        paragraph(paragraph, out);
+        out.append('\n');
+    }
+
+    private static void metadata(Data.PageMetadata metadata, Appendable out) throws IOException {
+        out.append("{\"redirectNames\":");
+        strings(metadata.getRedirectNames(), out);
+        out.append(",\"disambiguationNames\":");
+        strings(metadata.getDisambiguationNames(), out);
+        out.append(",\"disambiguationIds\":");
+        strings(metadata.getDisambiguationIds(), out);
+        out.append(",\"categoryNames\":");
+        strings(metadata.getCategoryNames(), out);
+        out.append(",\"categoryIds\":");
+        strings(metadata.getCategoryIds(), out);
+        out.append(",\"inlinkIds\":");
+        strings(metadata.getInlinkIds(), out);
+        out.append(",\"inlinkAnchors\":[");
+        boolean first = true;
+        for (Data.ItemWithFrequency<String> anchor : metadata.getInlinkAnchors()) {
+            if (!first) out.append(',');
+            first = false;
+            out.append("{\"anchor\":");
+            writeString(anchor.getItem(), out);
+            out.append(",\"frequency\":").append(Integer.toString(anchor.getFrequency())).append('}');
+        }
+        out.append("],\"wikiDataQid\":");
+        strings(metadata.getWikiDataQid(), out);
+        out.append(",\"siteId\":");
+        strings(metadata.getSiteId(), out);
+        out.append(",\"pageTags\":");
+        strings(metadata.getPageTags(), out);
+        out.append('}');
+    }
+
+    private static void skeleton(List<Data.PageSkeleton> skeleton, Appendable out) throws IOException {
+        out.append('[');
+        boolean first = true;
+        for (Data.PageSkeleton skel : skeleton) {
+            if (!first) out.append(',');
+            first = false;
+            if (skel instanceof Data.Section) {
+                final Data.Section section = (Data.Section) skel;
+                out.append("{\"type\":\"section\",\"heading\":");
+                writeString(section.getHeading(), out);
+                out.append(",\"headingId\":");
+                writeString(section.getHeadingId(), out);
+                out.append(",\"children\":");
+                skeleton(section.getChildren(), out);
+                out.append('}');
+            } else if (skel instanceof Data.Para) {
+                out.append("{\"type\":\"para\",\"paragraph\":");
+                paragraph(((Data.Para) skel).getParagraph(), out);
+                out.append('}');
+            } else if (skel instanceof Data.Image) {
+                final Data.Image image = (Data.Image) skel;
+                out.append("{\"type\":\"image\",\"imageUrl\":");
+                writeString(image.getImageUrl(), out);
+                out.append(",\"caption\":");
+                skeleton(image.getCaptionSkel(), out);
+                out.append('}');
+            } else if (skel instanceof Data.ListItem) {
+                final Data.ListItem listItem = (Data.ListItem) skel;
+                out.append("{\"type\":\"list\",\"nestingLevel\":").append(Integer.toString(listItem.getNestingLevel()));
+                out.append(",\"paragraph\":");
+                paragraph(listItem.getBodyParagraph(), out);
+                out.append('}');
+            } else if (skel instanceof Data.InfoBox) {
+                final Data.InfoBox infoBox = (Data.InfoBox) skel;
+                out.append("{\"type\":\"infobox\",\"infoboxType\":");
+                writeString(infoBox.getInfoboxType(), out);
+                out.append(",\"entries\":[");
+                boolean firstEntry = true;
+                for (Data.Entry<String, List<Data.PageSkeleton>> entry : infoBox.getEntries()) {
+                    if (!firstEntry) out.append(',');
+                    firstEntry = false;
+                    out.append("{\"key\":");
+                    writeString(entry.getKey(), out);
+                    out.append(",\"value\":");
+                    skeleton(entry.getValue(), out);
+                    out.append('}');
+                }
+                out.append("]}");
+            } else {
+                throw new IllegalArgumentException("Unknown PageSkeleton type " + skel.getClass());
+            }
+        }
+        out.append(']');
+    }
+
+    private static void paragraph(Data.Paragraph paragraph, Appendable out) throws IOException {
+        out.append("{\"paraId\":");
+        writeString(paragraph.getParaId(), out);
+        out.append(",\"bodies\":[");
+        boolean first = true;
+        for (Data.ParaBody body : paragraph.getBodies()) {
+            if (!first) out.append(',');
+            first = false;
+            if (body instanceof Data.ParaLink) {
+                final Data.ParaLink link = (Data.ParaLink) body;
+                out.append("{\"type\":\"link\",\"anchorText\":");
+                writeString(link.getAnchorText(), out);
+                out.append(",\"page\":");
+                writeString(link.getPage(), out);
+                out.append(",\"pageId\":");
+                writeString(link.getPageId(), out);
+                if (link.hasLinkSection()) {
+                    out.append(",\"linkSection\":");
+                    writeString(link.getLinkSection(), out);
+                }
+                out.append('}');
+            } else {
+                out.append("{\"type\":\"text\",\"text\":");
+                writeString(((Data.ParaText) body).getText(), out);
+                out.append('}');
+            }
+        }
+        out.append("]}");
+    }
+
+    private static void strings(List<String> values, Appendable out) throws IOException {
+        out.append('[');
+        for (int i = 0; i < values.size(); i++) {
+            if (i > 0) out.append(',');
+            writeString(values.get(i), out);
+        }
+        out.append(']');
+    }
+
+    /**
+     * Quoted and escaped JSON string, or null. Unescaped runs are appended as sub-sequences of the input.
+     */
+    public static void writeString(String s, Appendable out) throws IOException {
+        if (s == null) {
+            out.append("null");
+            return;
+        }
+        out.append('"');
+        int start = 0;
+        for (int i = 0; i < s.length(); i++) {
+            final char c = s.charAt(i);
+            if (c >= 0x20 && c != '"' && c != '\\' && c != '\u2028' && c != '\u2029') continue;
+
+            out.append(s, start, i);
+            start = i + 1;
+            switch (c) {
+                case '"': out.append("\\\""); break;
+                case '\\': out.append("\\\\"); break;
+                case '\n': out.append("\\n"); break;
+                case '\r': out.append("\\r"); break;
+                case '\t': out.append("\\t"); break;
+                case '\b': out.append("\\b"); break;
+                case '\f': out.append("\\f"); break;
+                default:
+                    out.append("\\u").append(HEX[c >>> 12]).append(HEX[(c >>> 8) & 0xf])
+                            .append(HEX[(c >>> 4) & 0xf]).append(HEX[c & 0xf]);
+            }
+        }
+        out.append(s, start, s.length());
+        out.append('"');
+    }
+}
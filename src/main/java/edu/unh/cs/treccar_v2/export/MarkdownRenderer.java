@@ -0,0 +1,264 @@
+package edu.unh.cs.treccar_v2.export;
+
+import edu.unh.cs.treccar_v2.Data;
+import edu.unh.cs.treccar_v2.Header;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.List;
+
+/**
+ * Renders pages as Markdown: the page name and section headings as ATX headings, paragraphs as text with links
+ * to the target page id, list items as (nested) bullet lists, images with their caption, and infoboxes as a
+ * bullet list of entries. Markdown punctuation in the text is backslash-escaped.
+ */
+public final class MarkdownRenderer implements PageRenderer {
+    private static final int MAX_HEADING_LEVEL = 6;
+
+    @Override
+    public void renderHeader(Header.TrecCarHeader header, Appendable out) throws IOException {
+        final Header.Provenance provenance = header.getProvenance();
+        out.append("# ");
+        text(provenance != null && provenance.getDataReleaseName() != null ? provenance.getDataReleaseName() : header.getFileType().name(), out);
+        out.append("\n\n- File type: ");
+        text(header.getFileType().name(), out);
+        out.append('\n');
+        if (provenance != null) {
+            for (Header.SiteProvenance site : provenance.getSiteProvenance()) {
+                out.append("- Site: ");
+                text(site.getProvSiteId(), out);
+                out.append(" (");
+                text(site.getLanguage(), out);
+                out.append(", ");
+                text(site.getSourceName(), out);
+                out.append(")\n");
+                for (String comment : site.getSiteComments()) {
+                    out.append("  - ");
+                    text(comment, out);
+                    out.append('\n');
+                }
+            }
+            for (String comment : provenance.getComments()) {
+                out.append("- Comment: ");
+                text(comment, out);
+                out.append('\n');
+            }
+            for (Header.Transform transform : provenance.getTransforms()) {
+                out.append("- Transform: ");
+                text(transform.getToolName(), out);
+                out.append(' ');
+                text(transform.getToolCommit(), out);
+                out.append(' ');
+                text(transform.getToolInfo(), out);
+                out.append('\n');
+            }
+        }
+        out.append('\n');
+    }
+
+    @Override
+    public void renderPage(Data.Page page, final Appendable out) throws IOException {
+        out.append("# ");
+        text(page.getPageName(), out);
+        out.append("\n\n");
+
+        final SkeletonVisitor visitor = new SkeletonVisitor(out);
+        try {
+            page.accept(visitor);
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+        visitor.endList();
+
+        final Data.PageMetadata metadata = page.getPageMetadata();
+        if (metadata != null && !metadata.getCategoryNames().isEmpty()) {
+            out.append("Categories: ");
+            final List<String> names = metadata.getCategoryNames();
+            for (int i = 0; i < names.size(); i++) {
+                if (i > 0) out.append(", ");
+                text(names.get(i), out);
+            }
+            out.append("\n\n");
+        }
+    }
+
+    @Override
+    public void renderParagraph(Data.Paragraph paragraph, Appendable out) throws IOException {
+        out.append('`').append(paragraph.getParaId()).append("`\n\n");
+        paragraph(paragraph, out);
+        out.append("\n\n");
+    }
+
+    /**
+     * Writes the skeleton in document order; list items are separated from following blocks by a blank line.
+     */
+    private static final class SkeletonVisitor implements Data.PageVisitor {
+        private final Appendable out;
+        private boolean inList = false;
+
+        SkeletonVisitor(Appendable out) {
+            this.out = out;
+        }
+
+        void endList() throws IOException {
+            if (inList) {
+                out.append('\n');
+                inList = false;
+            }
+        }
+
+        @Override
+        public boolean visitSection(Data.Section section, Data.SectionPath path) {
+            try {
+                endList();
+                final int level = Math.min(path.size() + 1, MAX_HEADING_LEVEL);
+                for (int i = 0; i < level; i++) out.append('#');
+                out.append(' ');
+                text(section.getHeading(), out);
+                out.append("\n\n");
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+            return true;
+        }
+
+        @Override
+        public boolean visitPara(Data.Para para, Data.SectionPath path) {
+            try {
+                endList();
+                paragraph(para.getParagraph(), out);
+                out.append("\n\n");
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+            return false;
+        }
+
+        @Override
+        public boolean visitListItem(Data.ListItem listItem, Data.SectionPath path) {
+            try {
+                for (int i = 1; i < listItem.getNestingLevel(); i++) out.append("  ");
+                out.append("- ");
+                paragraph(listItem.getBodyParagraph(), out);
+                out.append('\n');
+                inList = true;
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+            return false;
+        }
+
+        @Override
+        public boolean visitImage(Data.Image image, Data.SectionPath path) {
+            try {
+                endList();
+                out.append("![");
+                inline(image.getCaptionSkel(), out);
+                out.append("](");
+                destination(image.getImageUrl(), out);
+                out.append(")\n\n");
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+            return false;
+        }
+
+        @Override
+        public boolean visitInfoBox(Data.InfoBox infoBox, Data.SectionPath path) {
+            try {
+                endList();
+                out.append("**");
+                text(infoBox.getInfoboxType(), out);
+                out.append("**\n\n");
+                for (Data.Entry<String, List<Data.PageSkeleton>> entry : infoBox.getEntries()) {
+                    out.append("- ");
+                    text(entry.getKey(), out);
+                    out.append(": ");
+                    inline(entry.getValue(), out);
+                    out.append('\n');
+                }
+                out.append('\n');
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+            return false;
+        }
+    }
+
+    /**
+     * Text of nested skeletons on a single line, e.g. for captions and infobox values.
+     */
+    private static void inline(List<Data.PageSkeleton> skeleton, Appendable out) throws IOException {
+        boolean first = true;
+        for (Data.PageSkeleton skel : skeleton) {
+            Data.Paragraph paragraph = null;
+            if (skel instanceof Data.Para) paragraph = ((Data.Para) skel).getParagraph();
+            else if (skel instanceof Data.ListItem) paragraph = ((Data.ListItem) skel).getBodyParagraph();
+            if (paragraph == null) continue;
+            if (!first) out.append(' ');
+            first = false;
+            paragraph(paragraph, out);
+        }
+    }
+
+    private static void paragraph(Data.Paragraph paragraph, Appendable out) throws IOException {
+        for (Data.ParaBody body : paragraph.getBodies()) {
+            if (body instanceof Data.ParaLink) {
+                final Data.ParaLink link = (Data.ParaLink) body;
+                out.append('[');
+                text(link.getAnchorText(), out);
+                out.append("](");
+                destination(link.getPageId(), out);
+                out.append(')');
+            } else {
+                text(((Data.ParaText) body).getText(), out);
+            }
+        }
+    }
+
+    /**
+     * Text with Markdown punctuation backslash-escaped and line breaks folded into spaces.
+     */
+    private static void text(String s, Appendable out) throws IOException {
+        if (s == null) return;
+        int start = 0;
+        for (int i = 0; i < s.length(); i++) {
+            final char c = s.charAt(i);
+            switch (c) {
+                case '\\': case '`': case '*': case '_': case '[': case ']': case '<': case '>':
+                case '#': case '|': case '!': case '&':
+                    out.append(s, start, i).append('\\').append(c);
+                    start = i + 1;
+                    break;
+                case '\n': case '\r':
+                    out.append(s, start, i).append(' ');
+                    start = i + 1;
+                    break;
+                default:
+            }
+        }
+        out.append(s, start, s.length());
+    }
+
+    /**
+     * Link destination in angle brackets, which may contain spaces and parentheses.
+     */
+    private static void destination(String s, Appendable out) throws IOException {
+        out.append('<');
+        if (s != null) {
+            int start = 0;
+            for (int i = 0; i < s.length(); i++) {
+                final char c = s.charAt(i);
+                if (c == '<' || c == '>' || c == '\\') {
+                    out.append(s, start, i).append('\\').append(c);
+                    start = i + 1;
+                } else if (c == '\n' || c == '\r') {
+                    out.append(s, start, i).append("%0A");
+                    start = i + 1;
+                }
+            }
+            out.append(s, start, s.length());
+        }
+        out.append('>');
+    }
+}
@@ -0,0 +1,20 @@
+package edu.unh.cs.treccar_v2.export;
+
+import edu.unh.cs.treccar_v2.Data;
+import edu.unh.cs.treccar_v2.Header;
+
+import java.io.IOException;
+
+/**
+ * Renders headers, pages, and paragraphs directly to an {@link Appendable} (e.g. a buffered {@link java.io.Writer}),
+ * escaping text as it is written, without building intermediate strings.
+ *
+ * Renderers are stateless and may be shared between threads. See {@link RenderFormat} for the available formats.
+ */
+public interface PageRenderer {
+    void renderHeader(Header.TrecCarHeader header, Appendable out) throws IOException;
+
+    void renderPage(Data.Page page, Appendable out) throws IOException;
+
+    void renderParagraph(Data.Paragraph paragraph, Appendable out) throws IOException;
+}
@@ -0,0 +1,187 @@
+package edu.unh.cs.treccar_v2.export;
+
+import edu.unh.cs.treccar_v2.Data;
+import edu.unh.cs.treccar_v2.Header;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.List;
+
+/**
+ * Renders pages as indented plain text: one line per heading, paragraph, list item, image, and infobox entry,
+ * indented by section depth. Links are replaced by their anchor text and line breaks within text by spaces.
+ */
+public final class PlainTextRenderer implements PageRenderer {
+    private static final String INDENT = "  ";
+
+    @Override
+    public void renderHeader(Header.TrecCarHeader header, Appendable out) throws IOException {
+        out.append("fileType\t");
+        text(header.getFileType().name(), out);
+        out.append('\n');
+        final Header.Provenance provenance = header.getProvenance();
+        if (provenance != null) {
+            out.append("dataReleaseName\t");
+            text(provenance.getDataReleaseName(), out);
+            out.append('\n');
+            for (Header.SiteProvenance site : provenance.getSiteProvenance()) {
+                out.append("site\t");
+                text(site.getProvSiteId(), out);
+                out.append('\t');
+                text(site.getLanguage(), out);
+                out.append('\t');
+                text(site.getSourceName(), out);
+                out.append('\n');
+            }
+            for (String comment : provenance.getComments()) {
+                out.append("comment\t");
+                text(comment, out);
+                out.append('\n');
+            }
+            for (Header.Transform transform : provenance.getTransforms()) {
+                out.append("transform\t");
+                text(transform.getToolName(), out);
+                out.append('\t');
+                text(transform.getToolCommit(), out);
+                out.append('\t');
+                text(transform.getToolInfo(), out);
+                out.append('\n');
+            }
+        }
+        out.append('\n');
+    }
+
+    @Override
+    public void renderPage(Data.Page page, final Appendable out) throws IOException {
+        text(page.getPageName(), out);
+        out.append('\n');
+        try {
+            page.accept(new Data.PageVisitor() {
+                @Override
+                public boolean visitSection(Data.Section section, Data.SectionPath path) {
+                    try {
+                        indent(path.size() - 1, out);
+                        text(section.getHeading(), out);
+                        out.append('\n');
+                    } catch (IOException e) {
+                        throw new UncheckedIOException(e);
+                    }
+                    return true;
+                }
+
+                @Override
+                public boolean visitPara(Data.Para para, Data.SectionPath path) {
+                    try {
+                        indent(path.size(), out);
+                        paragraph(para.getParagraph(), out);
+                        out.append('\n');
+                    } catch (IOException e) {
+                        throw new UncheckedIOException(e);
+                    }
+                    return false;
+                }
+
+                @Override
+                public boolean visitListItem(Data.ListItem listItem, Data.SectionPath path) {
+                    try {
+                        indent(path.size() + listItem.getNestingLevel() - 1, out);
+                        out.append("* ");
+                        paragraph(listItem.getBodyParagraph(), out);
+                        out.append('\n');
+                    } catch (IOException e) {
+                        throw new UncheckedIOException(e);
+                    }
+                    return false;
+                }
+
+                @Override
+                public boolean visitImage(Data.Image image, Data.SectionPath path) {
+                    try {
+                        indent(path.size(), out);
+                        out.append("[image ");
+                        text(image.getImageUrl(), out);
+                        out.append("] ");
+                        inline(image.getCaptionSkel(), out);
+                        out.append('\n');
+                    } catch (IOException e) {
+                        throw new UncheckedIOException(e);
+                    }
+                    return false;
+                }
+
+                @Override
+                public boolean visitInfoBox(Data.InfoBox infoBox, Data.SectionPath path) {
+                    try {
+                        indent(path.size(), out);
+                        out.append("[infobox ");
+                        text(infoBox.getInfoboxType(), out);
+                        out.append("]\n");
+                        for (Data.Entry<String, List<Data.PageSkeleton>> entry : infoBox.getEntries()) {
+                            indent(path.size() + 1, out);
+                            text(entry.getKey(), out);
+                            out.append(": ");
+                            inline(entry.getValue(), out);
+                            out.append('\n');
+                        }
+                    } catch (IOException e) {
+                        throw new UncheckedIOException(e);
+                    }
+                    return false;
+                }
+            });
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+        out.append('\n');
+    }
+
+    @Override
+    public void renderParagraph(Data.Paragraph paragraph, Appendable out) throws IOException {
+        out.append(paragraph.getParaId()).append('\t');
+        paragraph(paragraph, out);
+        out.append('\n');
+    }
+
+    private static void indent(int depth, Appendable out) throws IOException {
+        for (int i = 0; i < depth; i++) out.append(INDENT);
+    }
+
+    private static void inline(List<Data.PageSkeleton> skeleton, Appendable out) throws IOException {
+        boolean first = true;
+        for (Data.PageSkeleton skel : skeleton) {
+            Data.Paragraph paragraph = null;
+            if (skel instanceof Data.Para) paragraph = ((Data.Para) skel).getParagraph();
+            else if (skel instanceof Data.ListItem) paragraph = ((Data.ListItem) skel).getBodyParagraph();
+            if (paragraph == null) continue;
+            if (!first) out.append(' ');
+            first = false;
+            paragraph(paragraph, out);
+        }
+    }
+
+    private static void paragraph(Data.Paragraph paragraph, Appendable out) throws IOException {
+        for (Data.ParaBody body : paragraph.getBodies()) {
+            if (body instanceof Data.ParaLink) {
+                text(((Data.ParaLink) body).getAnchorText(), out);
+            } else {
+                text(((Data.ParaText) body).getText(), out);
+            }
+        }
+    }
+
+    /**
+     * Text with line breaks (and tabs, which separate header fields) folded into spaces.
+     */
+    private static void text(String s, Appendable out) throws IOException {
+        if (s == null) return;
+        int start = 0;
+        for (int i = 0; i < s.length(); i++) {
+            final char c = s.charAt(i);
+            if (c == '\n' || c == '\r' || c == '\t') {
+                out.append(s, start, i).append(' ');
+                start = i + 1;
+            }
+        }
+        out.append(s, start, s.length());
+    }
+}
@@ -0,0 +1,43 @@
+package edu.unh.cs.treccar_v2.export;
+
+/**
+ * Output formats of {@link PageRenderer}.
+ */
+public enum RenderFormat {
+    /** One JSON object per line. */
+    JSONL(new JsonLinesRenderer()),
+    /** Markdown with sections as headings and links to page ids. */
+    MARKDOWN(new MarkdownRenderer()),
+    /** Indented plain text, links replaced by their anchor text. */
+    TEXT(new PlainTextRenderer());
+
+    private final PageRenderer renderer;
+
+    RenderFormat(PageRenderer renderer) {
+        this.renderer = renderer;
+    }
+
+    public PageRenderer getRenderer() {
+        return renderer;
+    }
+
+    /**
+     * Format by case-insensitive name; "json" and "md" are accepted as well.
+     * @throws IllegalArgumentException for unknown names
+     */
+    public static RenderFormat fromName(String name) {
+        switch (name.toLowerCase()) {
+            case "json":
+            case "jsonl":
+                return JSONL;
+            case "md":
+            case "markdown":
+                return MARKDOWN;
+            case "text":
+            case "txt":
+                return TEXT;
+            default:
+                throw new IllegalArgumentException("Unknown render format " + name + ", expected one of jsonl, markdown, text");
+        }
+    }
+}
@@ -1,11 +1,16 @@
 package edu.unh.cs.treccar_v2.export;
 
 import edu.unh.cs.treccar_v2.Data;
-import edu.unh.cs.treccar_v2.read_data.DeserializeData;
+import edu.unh.cs.treccar_v2.pipeline.Pipeline;
+import edu.unh.cs.treccar_v2.pipeline.Sink;
+import edu.unh.cs.treccar_v2.pipeline.StageStats;
+import edu.unh.cs.treccar_v2.pipeline.Transform;
 
 import java.io.File;
 import java.io.FileInputStream;
-import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.io.Writer;
+import java.util.List;
 
 /**
  * Get text from all paragraphs in paragraphCorpus.cbor
@@ -14,14 +19,37 @@ import java.io.FileNotFoundException;
  * Time: 4:06 PM
  */
 public class TextFromParagraphs {
-  public static void main(String[] args) throws FileNotFoundException {
+  public static void usage() {
+    System.out.println("Command line parameters: PARAGRAPHS_FILE [OUTPUT_FILE [NUM_THREADS]]");
+    System.out.println("  " + ExportOutput.USAGE);
+    System.exit(-1);
+  }
+
+  public static void main(String[] args) throws IOException, InterruptedException {
     System.setProperty("file.encoding", "UTF-8");
+    if (args.length < 1)
+      usage();
     final FileInputStream fileInputStream = new FileInputStream(new File(args[0]));
+    final int numThreads = ExportOutput.numThreads(args, 2);
+    final String newline = System.lineSeparator();
 
-    for (Data.Paragraph para : DeserializeData.iterableParagraphs(fileInputStream)) {
-      String paraId = para.getParaId();
-      String paraText = para.getTextOnly();
-      System.out.println(paraId + "\t" + paraText);
+    try (final Writer out = ExportOutput.open(args.length > 1 ? args[1] : null, numThreads)) {
+      final List<StageStats> stats = Pipeline.paragraphs(fileInputStream, numThreads)
+          .map("format", numThreads, new Transform<Data.Paragraph, String>() {
+            @Override
+            public String apply(Data.Paragraph para) {
+              String paraId = para.getParaId();
+              String paraText = para.getTextOnly();
+              return paraId + "\t" + paraText + newline;
+            }
+          })
+          .run(new Sink<String>() {
+            @Override
+            public void accept(String line) throws IOException {
+              out.write(line);
+            }
+          });
+      ExportOutput.report(stats);
     }
   }
 }
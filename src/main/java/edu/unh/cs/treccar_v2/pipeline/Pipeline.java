@@ -0,0 +1,344 @@
+package edu.unh.cs.treccar_v2.pipeline;
+
+import edu.unh.cs.treccar_v2.Data;
+import edu.unh.cs.treccar_v2.Header;
+import edu.unh.cs.treccar_v2.read_data.CborFileTypeException;
+import edu.unh.cs.treccar_v2.read_data.DeserializeData;
+import edu.unh.cs.treccar_v2.read_data.RawItemReader;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Staged processing: a reader, any number of transform stages with their own parallelism, and an ordered sink.
+ *
+ * <pre>
+ * Pipeline.pages(inputStream, 4)
+ *         .map("outlinks", 8, page -&gt; outlinkLine(page))
+ *         .run(line -&gt; writer.write(line));
+ * </pre>
+ *
+ * The reader only splits the input into raw items (see {@link RawItemReader}); decoding is a regular stage, so
+ * it runs in parallel. Stages hand items over through bounded queues, and the number of items between reader and
+ * sink is capped, so a slow stage throttles all stages before it. The sink receives the results in input order,
+ * after reordering. Counters of every stage are available via {@link #getStats()}.
+ *
+ * A pipeline is run once. If any stage fails, all threads are stopped and {@link #run(Sink)} rethrows the error.
+ */
+public final class Pipeline<T> {
+    public static final int DEFAULT_QUEUE_CAPACITY = 256;
+
+    private static final Object END = new Object();
+
+    private static final class StageSpec {
+        final Transform<Object, Object> transform;
+        final StageStats stats;
+
+        StageSpec(Transform<Object, Object> transform, StageStats stats) {
+            this.transform = transform;
+            this.stats = stats;
+        }
+    }
+
+    private static final class Envelope {
+        final long seq;
+        final Object value;
+
+        Envelope(long seq, Object value) {
+            this.seq = seq;
+            this.value = value;
+        }
+    }
+
+    private final Iterator<?> source;
+    private final StageStats sourceStats;
+    private final List<StageSpec> stages;
+    private final Header.TrecCarHeader header;
+    private int queueCapacity = DEFAULT_QUEUE_CAPACITY;
+    private StageStats sinkStats = null;
+
+    private Pipeline(Iterator<?> source, String sourceName, Header.TrecCarHeader header) {
+        this.source = source;
+        this.sourceStats = new StageStats(sourceName, 1);
+        this.stages = new ArrayList<>();
+        this.header = header;
+    }
+
+    private Pipeline(Pipeline<?> previous, StageSpec stage) {
+        this.source = previous.source;
+        this.sourceStats = previous.sourceStats;
+        this.stages = new ArrayList<>(previous.stages);
+        this.stages.add(stage);
+        this.header = previous.header;
+        this.queueCapacity = previous.queueCapacity;
+    }
+
+    /**
+     * Pipeline over the raw items of a CAR file.
+     */
+    public static Pipeline<byte[]> rawItems(InputStream inputStream) throws IOException {
+        final RawItemReader reader = new RawItemReader(inputStream);
+        return new Pipeline<>(new Iterator<byte[]>() {
+            private byte[] next = reader.next();
+
+            @Override
+            public boolean hasNext() {
+                return next != null;
+            }
+
+            @Override
+            public byte[] next() {
+                final byte[] result = next;
+                try {
+                    next = reader.next();
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+                return result;
+            }
+        }, "read", reader.getHeader());
+    }
+
+    /**
+     * Pipeline over the pages of a pages or outlines file, decoded by decodeThreads threads.
+     */
+    public static Pipeline<Data.Page> pages(InputStream inputStream, int decodeThreads) throws IOException {
+        final Pipeline<byte[]> raw = rawItems(inputStream);
+        if (raw.header != null && raw.header.getFileType() == Header.FileType.ParagraphsFile) {
+            throw new CborFileTypeException("This method only supports " + Header.FileType.PagesFile + " or " + Header.FileType.OutlinesFile + ", but input is of file type " + raw.header.getFileType() + ". Please use an appropriate reader.");
+        }
+        return raw.map("decode", decodeThreads, new Transform<byte[], Data.Page>() {
+            @Override
+            public Data.Page apply(byte[] item) {
+                return DeserializeData.pageFromBytes(item);
+            }
+        });
+    }
+
+    /**
+     * Pipeline over the paragraphs of a paragraphs file, decoded by decodeThreads threads.
+     */
+    public static Pipeline<Data.Paragraph> paragraphs(InputStream inputStream, int decodeThreads) throws IOException {
+        final Pipeline<byte[]> raw = rawItems(inputStream);
+        if (raw.header != null && raw.header.getFileType() != Header.FileType.ParagraphsFile) {
+            throw new CborFileTypeException("This method only supports " + Header.FileType.ParagraphsFile + ", but input is of file type " + raw.header.getFileType() + ". Please use an appropriate reader.");
+        }
+        return raw.map("decode", decodeThreads, new Transform<byte[], Data.Paragraph>() {
+            @Override
+            public Data.Paragraph apply(byte[] item) {
+                return DeserializeData.paragraphFromBytes(item);
+            }
+        });
+    }
+
+    /**
+     * Pipeline over any iterator, e.g. a {@link edu.unh.cs.treccar_v2.read_data.MultiFileSource}.
+     */
+    public static <T> Pipeline<T> from(String name, Iterator<T> source) {
+        return new Pipeline<>(source, name, null);
+    }
+
+    /**
+     * Header of the input file, or null.
+     */
+    public Header.TrecCarHeader getHeader() {
+        return header;
+    }
+
+    /**
+     * Pipeline with an additional stage that applies the transform to every item with the given number of threads.
+     */
+    @SuppressWarnings("unchecked")
+    public <O> Pipeline<O> map(String name, int parallelism, Transform<? super T, ? extends O> transform) {
+        if (parallelism < 1) {
+            throw new IllegalArgumentException("Parallelism of stage " + name + " must be positive.");
+        }
+        return new Pipeline<>(this, new StageSpec((Transform<Object, Object>) transform, new StageStats(name, parallelism)));
+    }
+
+    /**
+     * Capacity of each hand-off queue; the number of items in flight is capped at (stages + 2) times this.
+     */
+    public Pipeline<T> withQueueCapacity(int queueCapacity) {
+        this.queueCapacity = queueCapacity;
+        return this;
+    }
+
+    /**
+     * Counters of reader, stages and sink, in pipeline order.
+     */
+    public List<StageStats> getStats() {
+        final List<StageStats> result = new ArrayList<>();
+        result.add(sourceStats);
+        for (StageSpec stage : stages) result.add(stage.stats);
+        if (sinkStats != null) result.add(sinkStats);
+        return result;
+    }
+
+    /**
+     * Run the pipeline, passing the results in input order to the sink on the calling thread.
+     * @return counters of all stages, see {@link #getStats()}
+     */
+    @SuppressWarnings("unchecked")
+    public List<StageStats> run(Sink<? super T> sink) throws IOException, InterruptedException {
+        if (sinkStats != null) {
+            throw new IllegalStateException("A pipeline can only be run once.");
+        }
+        sinkStats = new StageStats("write", 1);
+
+        final AtomicReference<Throwable> failure = new AtomicReference<>();
+        final Semaphore inFlight = new Semaphore(queueCapacity * (stages.size() + 2));
+        final List<BlockingQueue<Object>> queues = new ArrayList<>();
+        for (int i = 0; i <= stages.size(); i++) {
+            queues.add(new ArrayBlockingQueue<>(queueCapacity));
+        }
+
+        int numThreads = 1;
+        for (StageSpec stage : stages) numThreads += stage.stats.getParallelism();
+        final ExecutorService executor = Executors.newFixedThreadPool(numThreads, new ThreadFactory() {
+            private final AtomicInteger count = new AtomicInteger();
+
+            @Override
+            public Thread newThread(Runnable r) {
+                final Thread thread = new Thread(r, "pipeline-" + count.incrementAndGet());
+                thread.setDaemon(true);
+                return thread;
+            }
+        });
+
+        try {
+            executor.submit(new SourceTask(queues.get(0), inFlight, failure));
+            for (int i = 0; i < stages.size(); i++) {
+                final StageSpec stage = stages.get(i);
+                final AtomicInteger running = new AtomicInteger(stage.stats.getParallelism());
+                stage.stats.start();
+                for (int w = 0; w < stage.stats.getParallelism(); w++) {
+                    executor.submit(new StageTask(stage, queues.get(i), queues.get(i + 1), running, failure));
+                }
+            }
+
+            sinkStats.start();
+            final BlockingQueue<Object> input = queues.get(stages.size());
+            final Map<Long, Envelope> reorder = new HashMap<>();
+            long nextSeq = 0;
+            while (true) {
+                final Object element = input.poll(100, TimeUnit.MILLISECONDS);
+                if (failure.get() != null) break;
+                if (element == null) continue;
+                if (element == END) break;
+
+                final Envelope envelope = (Envelope) element;
+                reorder.put(envelope.seq, envelope);
+                Envelope ready;
+                while ((ready = reorder.remove(nextSeq)) != null) {
+                    if (ready.value != null) {
+                        final long start = System.nanoTime();
+                        sink.accept((T) ready.value);
+                        sinkStats.processed(System.nanoTime() - start, false);
+                    }
+                    nextSeq++;
+                    inFlight.release();
+                }
+            }
+            sinkStats.finish();
+        } finally {
+            executor.shutdownNow();
+        }
+
+        final Throwable error = failure.get();
+        if (error != null) {
+            if (error instanceof IOException) throw (IOException) error;
+            if (error instanceof UncheckedIOException) throw ((UncheckedIOException) error).getCause();
+            if (error instanceof RuntimeException) throw (RuntimeException) error;
+            if (error instanceof Error) throw (Error) error;
+            throw new RuntimeException(error);
+        }
+        return getStats();
+    }
+
+    private final class SourceTask implements Runnable {
+        private final BlockingQueue<Object> output;
+        private final Semaphore inFlight;
+        private final AtomicReference<Throwable> failure;
+
+        SourceTask(BlockingQueue<Object> output, Semaphore inFlight, AtomicReference<Throwable> failure) {
+            this.output = output;
+            this.inFlight = inFlight;
+            this.failure = failure;
+        }
+
+        @Override
+        public void run() {
+            sourceStats.start();
+            try {
+                long seq = 0;
+                while (true) {
+                    inFlight.acquire();
+                    final long start = System.nanoTime();
+                    if (!source.hasNext()) break;
+                    final Object item = source.next();
+                    sourceStats.processed(System.nanoTime() - start, false);
+                    output.put(new Envelope(seq++, item));
+                }
+                output.put(END);
+            } catch (InterruptedException e) {
+                // pipeline was stopped
+            } catch (Throwable e) {
+                failure.compareAndSet(null, e);
+            } finally {
+                sourceStats.finish();
+            }
+        }
+    }
+
+    private static final class StageTask implements Runnable {
+        private final StageSpec stage;
+        private final BlockingQueue<Object> input;
+        private final BlockingQueue<Object> output;
+        private final AtomicInteger running;
+        private final AtomicReference<Throwable> failure;
+
+        StageTask(StageSpec stage, BlockingQueue<Object> input, BlockingQueue<Object> output, AtomicInteger running, AtomicReference<Throwable> failure) {
+            this.stage = stage;
+            this.input = input;
+            this.output = output;
+            this.running = running;
+            this.failure = failure;
+        }
+
+        @Override
+        public void run() {
+            try {
+                while (true) {
+                    final Object element = input.take();
+                    if (element == END) {
+                        // let sibling workers see the end too; the last one passes it downstream
+                        input.put(END);
+                        if (running.decrementAndGet() == 0) {
+                            stage.stats.finish();
+                            output.put(END);
+                        }
+                        return;
+                    }
+                    final Envelope envelope = (Envelope) element;
+                    Object result = null;
+                    if (envelope.value != null) {
+                        final long start = System.nanoTime();
+                        result = stage.transform.apply(envelope.value);
+                        stage.stats.processed(System.nanoTime() - start, result == null);
+                    }
+                    output.put(result == envelope.value ? envelope : new Envelope(envelope.seq, result));
+                }
+            } catch (InterruptedException e) {
+                // pipeline was stopped
+            } catch (Throwable e) {
+                failure.compareAndSet(null, e);
+            }
+        }
+    }
+}
@@ -0,0 +1,10 @@
+package edu.unh.cs.treccar_v2.pipeline;
+
+import java.io.IOException;
+
+/**
+ * Final consumer of a {@link Pipeline}; called from a single thread, with items in input order.
+ */
+public interface Sink<T> {
+    void accept(T item) throws IOException;
+}
@@ -0,0 +1,88 @@
+package edu.unh.cs.treccar_v2.pipeline;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Throughput counters of one pipeline stage, updated while the pipeline runs.
+ */
+public final class StageStats {
+    private final String name;
+    private final int parallelism;
+    private final AtomicLong items = new AtomicLong();
+    private final AtomicLong dropped = new AtomicLong();
+    private final AtomicLong busyNanos = new AtomicLong();
+    private volatile long startNanos = 0;
+    private volatile long endNanos = 0;
+
+    StageStats(String name, int parallelism) {
+        this.name = name;
+        this.parallelism = parallelism;
+    }
+
+    void start() {
+        startNanos = System.nanoTime();
+    }
+
+    void finish() {
+        endNanos = System.nanoTime();
+    }
+
+    void processed(long nanos, boolean drop) {
+        items.incrementAndGet();
+        if (drop) dropped.incrementAndGet();
+        busyNanos.addAndGet(nanos);
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public int getParallelism() {
+        return parallelism;
+    }
+
+    /**
+     * Number of items processed by this stage.
+     */
+    public long getItems() {
+        return items.get();
+    }
+
+    /**
+     * Number of items for which the transform returned null.
+     */
+    public long getDropped() {
+        return dropped.get();
+    }
+
+    /**
+     * Time spent inside the stage's work, summed over its threads (excluding waiting on queues).
+     */
+    public long getBusyNanos() {
+        return busyNanos.get();
+    }
+
+    public long getElapsedNanos() {
+        if (startNanos == 0) return 0;
+        return (endNanos != 0 ? endNanos : System.nanoTime()) - startNanos;
+    }
+
+    public double getItemsPerSecond() {
+        final long elapsed = getElapsedNanos();
+        return elapsed > 0 ? getItems() * 1e9 / elapsed : 0.0;
+    }
+
+    /**
+     * Fraction of the elapsed time the stage's threads were busy; a value near 1 marks the bottleneck.
+     */
+    public double getUtilization() {
+        final long elapsed = getElapsedNanos();
+        return elapsed > 0 ? (double) getBusyNanos() / elapsed / parallelism : 0.0;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("%s x%d: %d items (%d dropped), %.0f items/s, %.0f%% busy",
+                name, parallelism, getItems(), getDropped(), getItemsPerSecond(), 100 * getUtilization());
+    }
+}
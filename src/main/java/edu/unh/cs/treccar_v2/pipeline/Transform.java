@@ -0,0 +1,11 @@
+package edu.unh.cs.treccar_v2.pipeline;
+
+/**
+ * Processing step of a {@link Pipeline} stage. Called concurrently when the stage has parallelism above one.
+ */
+public interface Transform<I, O> {
+    /**
+     * @return result for the item, or null to drop the item
+     */
+    O apply(I item) throws Exception;
+}
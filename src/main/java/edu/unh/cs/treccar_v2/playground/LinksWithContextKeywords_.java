@@ -3,6 +3,7 @@ package edu.unh.cs.treccar_v2.playground;
 import co.nstant.in.cbor.CborException;
 import edu.unh.cs.treccar_v2.Data;
 import edu.unh.cs.treccar_v2.read_data.DeserializeData;
+import edu.unh.cs.treccar_v2.search.KeywordMatcher;
 import org.apache.commons.lang3.StringUtils;
 
 import java.io.*;
@@ -87,26 +88,47 @@ public class LinksWithContextKeywords_ {
 //
 //    }
 
-    private static boolean paragraphTextContainsKeyword(Data.Paragraph para, List<String> keywords){
-        final String normtext = para.getTextOnly().toLowerCase();
-        for(String keyword: keywords) {
-            if (normtext.contains(keyword)) return true;
-        }
-        return false;
-    }
-
-    private List<LinkInstance> getInstances(Data.Page page, List<String> keywords, boolean addParagraph, boolean filterByKeyword) {
-        List<LinkInstance> result = new ArrayList<>();
-        for(Data.Page.SectionPathParagraphs sectparas : page.flatSectionPathsParagraphs()){
-            if(!filterByKeyword || paragraphTextContainsKeyword(sectparas.getParagraph(), keywords)){
-                for(String toPage :sectparas.getParagraph().getEntitiesOnly()){
-                    String text = "";
-                    if(addParagraph) text = sectparas.getParagraph().getTextOnly();
-                    final String sectPath = StringUtils.join(Data.sectionPathHeadings(sectparas.getSectionPath()), " ");
-                    result.add(new LinkInstance(page.getPageName(), sectPath, toPage, text));
+    private List<LinkInstance> getInstances(final Data.Page page, final KeywordMatcher keywords, final boolean addParagraph, final boolean filterByKeyword) {
+        final List<LinkInstance> result = new ArrayList<>();
+        page.accept(new Data.PageVisitor() {
+            private Data.SectionPath lastPath = null;
+            private String lastSectPath = null;
+
+            @Override
+            public boolean visitPara(Data.Para para, Data.SectionPath path) {
+                final Data.Paragraph paragraph = para.getParagraph();
+                if(!filterByKeyword || keywords.matches(paragraph)){
+                    final List<String> toPages = paragraph.getEntitiesOnly();
+                    if (toPages.isEmpty()) return false;
+
+                    final String text = addParagraph ? paragraph.getTextOnly() : "";
+                    if (path != lastPath) {
+                        lastSectPath = StringUtils.join(path.getHeadings(), " ");
+                        lastPath = path;
+                    }
+                    for(String toPage : toPages){
+                        result.add(new LinkInstance(page.getPageName(), lastSectPath, toPage, text));
+                    }
                 }
+                return false;
             }
-        }
+
+            // only paragraphs directly nested in sections, as in Data.Page#flatSectionPathsParagraphs
+            @Override
+            public boolean visitImage(Data.Image image, Data.SectionPath path) {
+                return false;
+            }
+
+            @Override
+            public boolean visitListItem(Data.ListItem listItem, Data.SectionPath path) {
+                return false;
+            }
+
+            @Override
+            public boolean visitInfoBox(Data.InfoBox infoBox, Data.SectionPath path) {
+                return false;
+            }
+        });
         return result;
     }
 
@@ -117,7 +139,7 @@ public class LinksWithContextKeywords_ {
         List<String> keywords = new ArrayList<>();
         for (int i = 2, argsLength = args.length; i < argsLength; i++) {
             String arg = args[i];
-            keywords.add(arg.trim().toLowerCase());
+            keywords.add(arg.trim());
         }
 
 //        final String testOutputFile = args[2];
@@ -136,6 +158,8 @@ public class LinksWithContextKeywords_ {
 
         {
             LinksWithContextKeywords_ extract = new LinksWithContextKeywords_();
+            // built once; matching is case-insensitive and scans each paragraph once for all keywords
+            final KeywordMatcher matcher = new KeywordMatcher(keywords);
             final FileInputStream fileInputStream = new FileInputStream(new File(cborArticleInputFile));
 
 //            List<LinkInstance> trainData = extract.extractLinkData(fileInputStream, keywords, addParagraph, filterByKeyword);
@@ -144,7 +168,7 @@ public class LinksWithContextKeywords_ {
             BufferedWriter writer = new BufferedWriter(new FileWriter(new File(linkOutputFile)));
             for(Data.Page page: DeserializeData.iterableAnnotations(fileInputStream)) {
 
-                List<LinkInstance> result = extract.getInstances(page, keywords, addParagraph, filterByKeyword);
+                List<LinkInstance> result = extract.getInstances(page, matcher, addParagraph, filterByKeyword);
                 for(LinkInstance line: result){
 //                System.out.println(line.toTsvSeqments());
                     writer.write(line.toTsvLine());
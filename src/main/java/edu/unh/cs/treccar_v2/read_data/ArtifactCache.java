@@ -0,0 +1,199 @@
+package edu.unh.cs.treccar_v2.read_data;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+
+/**
+ * Cache of artifacts derived from a CAR file, such as offset indexes, counts, dictionaries, or statistics.
+ *
+ * An artifact NAME of FILE is stored next to it as FILE.NAME, and its key as FILE.NAME.key, which records the
+ * {@link FileFingerprint} of the input the artifact was computed from. Artifacts are reused as long as the
+ * fingerprint of the input is unchanged, and rebuilt otherwise. Both files are written to temporary files with
+ * unique names and renamed atomically, and the key is written after the artifact, so concurrent jobs and jobs that
+ * die while storing never see a torn artifact with a valid key.
+ *
+ * <pre>
+ * Map&lt;String, Long&gt; counts = ArtifactCache.getOrBuild(file, "category-counts",
+ *         ArtifactCache.&lt;HashMap&lt;String, Long&gt;&gt;javaSerialization(), builder);
+ * </pre>
+ */
+public final class ArtifactCache {
+    private static final String MAGIC = "# trec-car artifact key";
+    /** suffix of the key file FILE.NAME.key next to an artifact FILE.NAME */
+    public static final String KEY_SUFFIX = ".key";
+
+    /**
+     * Reads and writes an artifact.
+     */
+    public interface Codec<A> {
+        A read(InputStream in) throws IOException;
+
+        void write(A artifact, OutputStream out) throws IOException;
+    }
+
+    /**
+     * Computes an artifact from the CAR file.
+     */
+    public interface Builder<A> {
+        A build(File carFile) throws IOException;
+    }
+
+    private ArtifactCache() {}
+
+    /**
+     * Artifact file FILE.NAME
+     */
+    public static File artifactFileOf(File carFile, String name) {
+        return new File(carFile.getPath() + "." + name);
+    }
+
+    private static File keyFileOf(File carFile, String name) {
+        return new File(carFile.getPath() + "." + name + KEY_SUFFIX);
+    }
+
+    /**
+     * @return true if the artifact exists and was computed from the current contents of the file
+     */
+    public static boolean isValid(File carFile, String name) throws IOException {
+        return isValid(carFile, name, FileFingerprint.of(carFile));
+    }
+
+    private static boolean isValid(File carFile, String name, FileFingerprint fingerprint) throws IOException {
+        final File keyFile = keyFileOf(carFile, name);
+        if (!keyFile.exists() || !artifactFileOf(carFile, name).exists()) {
+            return false;
+        }
+        try (InputStream in = new FileInputStream(keyFile)) {
+            return matchesKey(in, fingerprint);
+        }
+    }
+
+    /**
+     * Check a key file read from elsewhere, e.g. a distributed file system (see {@link FileFingerprint.Input}).
+     * @return true if the key records the fingerprint
+     */
+    public static boolean matchesKey(InputStream keyStream, FileFingerprint fingerprint) throws IOException {
+        final BufferedReader reader = new BufferedReader(new InputStreamReader(keyStream, StandardCharsets.UTF_8));
+        if (!MAGIC.equals(reader.readLine())) {
+            return false;
+        }
+        final String line = reader.readLine();
+        return line != null && line.equals("fingerprint\t" + fingerprint);
+    }
+
+    /**
+     * @return the cached artifact, or null if it is missing or stale
+     */
+    public static <A> A load(File carFile, String name, Codec<A> codec) throws IOException {
+        if (!isValid(carFile, name)) {
+            return null;
+        }
+        try (InputStream in = new BufferedInputStream(new FileInputStream(artifactFileOf(carFile, name)), 1 << 16)) {
+            return codec.read(in);
+        }
+    }
+
+    /**
+     * Store the artifact, keyed by the current fingerprint of the file.
+     */
+    public static <A> void store(File carFile, String name, Codec<A> codec, A artifact) throws IOException {
+        store(carFile, name, codec, artifact, FileFingerprint.of(carFile));
+    }
+
+    private static <A> void store(File carFile, String name, Codec<A> codec, A artifact, FileFingerprint fingerprint) throws IOException {
+        final File artifactFile = artifactFileOf(carFile, name);
+        final File keyFile = keyFileOf(carFile, name);
+        // invalidate first, so that a crash between the two renames leaves no valid key for the old artifact
+        Files.deleteIfExists(keyFile.toPath());
+
+        final File tempArtifact = tempFileFor(artifactFile);
+        try {
+            try (OutputStream out = new BufferedOutputStream(new FileOutputStream(tempArtifact), 1 << 16)) {
+                codec.write(artifact, out);
+            }
+            replace(tempArtifact, artifactFile);
+        } finally {
+            Files.deleteIfExists(tempArtifact.toPath());
+        }
+
+        final File tempKey = tempFileFor(keyFile);
+        try {
+            try (Writer writer = new OutputStreamWriter(new FileOutputStream(tempKey), StandardCharsets.UTF_8)) {
+                writer.write(MAGIC + "\nfingerprint\t" + fingerprint + "\n");
+            }
+            replace(tempKey, keyFile);
+        } finally {
+            Files.deleteIfExists(tempKey.toPath());
+        }
+    }
+
+    /**
+     * New temporary file TARGET.*.tmp next to the target, unique so that concurrent jobs never write into the same file.
+     */
+    static File tempFileFor(File target) throws IOException {
+        final File directory = target.getAbsoluteFile().getParentFile();
+        return Files.createTempFile(directory.toPath(), target.getName() + ".", ".tmp").toFile();
+    }
+
+    /**
+     * Load the cached artifact, or build and store it if it is missing or stale.
+     */
+    public static <A> A getOrBuild(File carFile, String name, Codec<A> codec, Builder<A> builder) throws IOException {
+        final FileFingerprint fingerprint = FileFingerprint.of(carFile);
+        if (isValid(carFile, name, fingerprint)) {
+            try (InputStream in = new BufferedInputStream(new FileInputStream(artifactFileOf(carFile, name)), 1 << 16)) {
+                return codec.read(in);
+            }
+        }
+        final A artifact = builder.build(carFile);
+        if (!FileFingerprint.of(carFile).equals(fingerprint)) {
+            // the input changed while building; do not cache a result that matches neither version
+            return artifact;
+        }
+        store(carFile, name, codec, artifact, fingerprint);
+        return artifact;
+    }
+
+    /**
+     * Remove the artifact and its key.
+     */
+    public static void invalidate(File carFile, String name) throws IOException {
+        Files.deleteIfExists(keyFileOf(carFile, name).toPath());
+        Files.deleteIfExists(artifactFileOf(carFile, name).toPath());
+    }
+
+    private static void replace(File source, File target) throws IOException {
+        try {
+            Files.move(source.toPath(), target.toPath(), StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+        } catch (AtomicMoveNotSupportedException e) {
+            Files.move(source.toPath(), target.toPath(), StandardCopyOption.REPLACE_EXISTING);
+        }
+    }
+
+    /**
+     * Codec for artifacts that are {@link Serializable}, e.g. maps of counts or dictionaries.
+     */
+    public static <A extends Serializable> Codec<A> javaSerialization() {
+        return new Codec<A>() {
+            @Override
+            @SuppressWarnings("unchecked")
+            public A read(InputStream in) throws IOException {
+                try {
+                    return (A) new ObjectInputStream(in).readObject();
+                } catch (ClassNotFoundException e) {
+                    throw new IOException("Cannot read cached artifact", e);
+                }
+            }
+
+            @Override
+            public void write(A artifact, OutputStream out) throws IOException {
+                final ObjectOutputStream objectOut = new ObjectOutputStream(out);
+                objectOut.writeObject(artifact);
+                objectOut.flush();
+            }
+        };
+    }
+}
@@ -0,0 +1,327 @@
+package edu.unh.cs.treccar_v2.read_data;
+
+import edu.unh.cs.treccar_v2.Data;
+import edu.unh.cs.treccar_v2.Header;
+
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.zip.CRC32;
+import java.util.zip.DataFormatException;
+import java.util.zip.Inflater;
+
+/**
+ * Random access to a block-compressed CAR file.
+ *
+ * The container is a sequence of independently compressed gzip members, each holding whole items; the first holds
+ * the header. Every member carries an extra subfield 'C','R' with its compressed size and item count, so the
+ * {@link BlockIndex} can be rebuilt cheaply. Since the members form a valid multi-member gzip file, {@code zcat}
+ * or {@link java.util.zip.GZIPInputStream} restore the plain CAR file.
+ *
+ * Blocks are read with positional reads, so all methods may be called from several threads at once.
+ * Closing the container also stops the decompression threads of iterators that were not read to the end.
+ * Use {@link edu.unh.cs.treccar_v2.write_data.BlockCompressedWriter} to create containers.
+ */
+public final class BlockCompressedFile implements Closeable {
+    private final FileChannel channel;
+    private final BlockIndex index;
+    private final Header.TrecCarHeader header;
+    private final byte[] headerBytes;
+    private final boolean paragraphs;
+    private final Set<PrefetchingIterator> openIterators = Collections.newSetFromMap(new ConcurrentHashMap<PrefetchingIterator, Boolean>());
+
+    /**
+     * Open the container, using the index file next to it if present and scanning the block headers otherwise.
+     */
+    public BlockCompressedFile(File file) throws IOException {
+        this(file, BlockIndex.indexFileOf(file).exists() ? BlockIndex.load(BlockIndex.indexFileOf(file)) : BlockIndex.scan(file));
+    }
+
+    public BlockCompressedFile(File file, BlockIndex index) throws IOException {
+        this.channel = FileChannel.open(file.toPath(), StandardOpenOption.READ);
+        this.index = index;
+        try (RawItemReader reader = new RawItemReader(new ByteArrayInputStream(readBlock(0)))) {
+            this.header = reader.getHeader();
+            this.headerBytes = reader.getHeaderBytes();
+        }
+        this.paragraphs = header != null && header.getFileType() == Header.FileType.ParagraphsFile;
+    }
+
+    public Header.TrecCarHeader getHeader() {
+        return header;
+    }
+
+    /**
+     * Header as encoded in the container, see {@link RawItemReader#getHeaderBytes()}.
+     */
+    public byte[] getHeaderBytes() {
+        return headerBytes != null ? headerBytes.clone() : null;
+    }
+
+    public BlockIndex getIndex() {
+        return index;
+    }
+
+    public long getItemCount() {
+        return index.getItemCount();
+    }
+
+    /**
+     * Decompressed content of a block.
+     */
+    public byte[] readBlock(int block) throws IOException {
+        final int size = index.getCompressedSize(block);
+        final long offset = index.getCompressedOffset(block);
+        final ByteBuffer buffer = ByteBuffer.allocate(size);
+        while (buffer.hasRemaining()) {
+            if (channel.read(buffer, offset + buffer.position()) < 0) {
+                throw new EOFException("Truncated block " + block + " at offset " + offset);
+            }
+        }
+        final byte[] member = buffer.array();
+        if (BlockIndex.memberSize(member, 0, offset) != size) {
+            throw new IOException("Block " + block + " does not match the index");
+        }
+
+        final int dataStart = BlockIndex.MEMBER_HEADER_SIZE + BlockIndex.EXTRA_SIZE;
+        final ByteBuffer trailer = ByteBuffer.wrap(member, size - BlockIndex.TRAILER_SIZE, BlockIndex.TRAILER_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+        final int expectedCrc = trailer.getInt();
+        final byte[] result = new byte[trailer.getInt()];
+        final Inflater inflater = new Inflater(true);
+        try {
+            inflater.setInput(member, dataStart, size - dataStart - BlockIndex.TRAILER_SIZE);
+            int n = 0;
+            while (n < result.length) {
+                final int inflated = inflater.inflate(result, n, result.length - n);
+                if (inflated == 0 && (inflater.finished() || inflater.needsInput())) break;
+                n += inflated;
+            }
+            if (n != result.length) {
+                throw new IOException("Block " + block + " is truncated");
+            }
+        } catch (DataFormatException e) {
+            throw new IOException("Block " + block + " is corrupt", e);
+        } finally {
+            inflater.end();
+        }
+        final CRC32 crc = new CRC32();
+        crc.update(result, 0, result.length);
+        if ((int) crc.getValue() != expectedCrc) {
+            throw new IOException("Checksum mismatch in block " + block);
+        }
+        return result;
+    }
+
+    /**
+     * Raw items of a block, see {@link CborBytes} and {@link DeserializeData#pageFromBytes(byte[])}.
+     */
+    public List<byte[]> readItems(int block) throws IOException {
+        final int count = index.getItemCount(block);
+        if (count == 0) {
+            return Collections.emptyList();
+        }
+        final byte[] data = readBlock(block);
+        final List<byte[]> items = new ArrayList<>(count);
+        int pos = 0;
+        for (int i = 0; i < count; i++) {
+            final int end = CborBytes.skipItem(data, pos);
+            items.add(Arrays.copyOfRange(data, pos, end));
+            pos = end;
+        }
+        return items;
+    }
+
+    /**
+     * Raw bytes of the item with the given ordinal, decompressing only its block.
+     */
+    public byte[] getItem(long ordinal) throws IOException {
+        final int block = index.blockOf(ordinal);
+        final int count = (int) (ordinal - index.getFirstOrdinal(block));
+        final byte[] data = readBlock(block);
+        int pos = 0;
+        for (int i = 0; i < count; i++) {
+            pos = CborBytes.skipItem(data, pos);
+        }
+        return Arrays.copyOfRange(data, pos, CborBytes.skipItem(data, pos));
+    }
+
+    public Data.Page getPage(long ordinal) throws IOException {
+        return DeserializeData.pageFromBytes(getItem(ordinal));
+    }
+
+    public Data.Paragraph getParagraph(long ordinal) throws IOException {
+        return DeserializeData.paragraphFromBytes(getItem(ordinal));
+    }
+
+    /**
+     * Raw items from the given ordinal to the end, in order. Up to numThreads blocks ahead are decompressed in
+     * parallel; the threads are released when the iterator is exhausted or fails, and otherwise when the container
+     * is closed.
+     */
+    public Iterator<byte[]> iterItems(long fromOrdinal, int numThreads) {
+        return new PrefetchingIterator(fromOrdinal, numThreads);
+    }
+
+    public Iterator<Data.Page> iterAnnotations(int numThreads) {
+        if (paragraphs) throw new CborFileTypeException("This method only supports pages or outlines files, but input is a " + header.getFileType());
+        final Iterator<byte[]> items = iterItems(0, numThreads);
+        return new Iterator<Data.Page>() {
+            @Override
+            public boolean hasNext() {
+                return items.hasNext();
+            }
+
+            @Override
+            public Data.Page next() {
+                return DeserializeData.pageFromBytes(items.next());
+            }
+
+            @Override
+            public void remove() {
+                throw new UnsupportedOperationException("Read-only iterator.");
+            }
+        };
+    }
+
+    public Iterator<Data.Paragraph> iterParagraphs(int numThreads) {
+        if (!paragraphs) throw new CborFileTypeException("This method only supports paragraphs files, but input is a " + (header != null ? header.getFileType() : "file without header"));
+        final Iterator<byte[]> items = iterItems(0, numThreads);
+        return new Iterator<Data.Paragraph>() {
+            @Override
+            public boolean hasNext() {
+                return items.hasNext();
+            }
+
+            @Override
+            public Data.Paragraph next() {
+                return DeserializeData.paragraphFromBytes(items.next());
+            }
+
+            @Override
+            public void remove() {
+                throw new UnsupportedOperationException("Read-only iterator.");
+            }
+        };
+    }
+
+    private final class PrefetchingIterator implements Iterator<byte[]>, Closeable {
+        private final ExecutorService executor;
+        private final int lookahead;
+        private final Deque<Future<List<byte[]>>> pending = new ArrayDeque<>();
+        private int nextBlock;
+        private List<byte[]> current = Collections.emptyList();
+        private int pos = 0;
+        /** position of the first requested item in the first block */
+        private int skip = 0;
+
+        PrefetchingIterator(long fromOrdinal, int numThreads) {
+            this.lookahead = Math.max(numThreads, 1);
+            this.executor = Executors.newFixedThreadPool(lookahead, new ThreadFactory() {
+                @Override
+                public Thread newThread(Runnable r) {
+                    final Thread thread = new Thread(r, "block-decompressor");
+                    thread.setDaemon(true);
+                    return thread;
+                }
+            });
+            openIterators.add(this);
+            if (fromOrdinal < getItemCount()) {
+                this.nextBlock = index.blockOf(fromOrdinal);
+                this.skip = (int) (fromOrdinal - index.getFirstOrdinal(nextBlock));
+            } else {
+                this.nextBlock = index.getBlockCount();
+            }
+            try {
+                fillPipeline();
+                advance();
+            } catch (RuntimeException e) {
+                close();
+                throw e;
+            }
+        }
+
+        private void fillPipeline() {
+            while (pending.size() < lookahead && nextBlock < index.getBlockCount()) {
+                final int block = nextBlock++;
+                pending.addLast(executor.submit(new Callable<List<byte[]>>() {
+                    @Override
+                    public List<byte[]> call() throws IOException {
+                        return readItems(block);
+                    }
+                }));
+            }
+        }
+
+        /**
+         * Move on to the next block with remaining items, shutting the threads down at the end or on failure.
+         */
+        private void advance() {
+            while (pos >= current.size() && !pending.isEmpty()) {
+                try {
+                    current = pending.removeFirst().get();
+                    pos = skip;
+                    skip = 0;
+                } catch (InterruptedException e) {
+                    close();
+                    Thread.currentThread().interrupt();
+                    throw new RuntimeException(e);
+                } catch (ExecutionException e) {
+                    close();
+                    if (e.getCause() instanceof IOException) throw new UncheckedIOException((IOException) e.getCause());
+                    throw new RuntimeException(e.getCause());
+                }
+                fillPipeline();
+            }
+            if (pos >= current.size()) {
+                close();
+            }
+        }
+
+        /**
+         * Drop the blocks not yet consumed and stop the threads.
+         */
+        @Override
+        public void close() {
+            for (Future<List<byte[]>> future : pending) {
+                future.cancel(true);
+            }
+            pending.clear();
+            current = Collections.emptyList();
+            pos = 0;
+            executor.shutdownNow();
+            openIterators.remove(this);
+        }
+
+        @Override
+        public boolean hasNext() {
+            return pos < current.size();
+        }
+
+        @Override
+        public byte[] next() {
+            if (!hasNext()) {
+                throw new NoSuchElementException();
+            }
+            final byte[] item = current.get(pos++);
+            if (pos >= current.size()) advance();
+            return item;
+        }
+
+        @Override
+        public void remove() {
+            throw new UnsupportedOperationException("Read-only iterator.");
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        for (PrefetchingIterator iterator : openIterators) {
+            iterator.close();
+        }
+        channel.close();
+    }
+}
@@ -0,0 +1,168 @@
+package edu.unh.cs.treccar_v2.read_data;
+
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+
+/**
+ * Index of the blocks of a block-compressed CAR file (see {@link BlockCompressedFile}): compressed offset and size,
+ * and ordinal of the first item of every block.
+ *
+ * The index is stored next to the container as FILE.blocks; it can be rebuilt from the block headers alone with
+ * {@link #scan(File)}, without decompressing anything.
+ */
+public final class BlockIndex {
+    private static final int MAGIC = 0x43415242; // "CARB"
+    private static final int VERSION = 1;
+
+    /** gzip member header: ID1 ID2 CM FLG MTIME(4) XFL OS XLEN(2), followed by the 'C','R' subfield */
+    static final int MEMBER_HEADER_SIZE = 12;
+    static final int EXTRA_SIZE = 12;
+    static final int TRAILER_SIZE = 8;
+    static final byte SUBFIELD_ID1 = 'C';
+    static final byte SUBFIELD_ID2 = 'R';
+
+    private int blockCount = 0;
+    private long[] compressedOffsets = new long[16];
+    private int[] compressedSizes = new int[16];
+    private long[] firstOrdinals = new long[16];
+    private int[] itemCounts = new int[16];
+
+    public BlockIndex() {
+    }
+
+    /**
+     * Append the next block.
+     */
+    public void add(long compressedOffset, int compressedSize, int itemCount) {
+        if (blockCount == compressedOffsets.length) {
+            final int capacity = blockCount * 2;
+            compressedOffsets = Arrays.copyOf(compressedOffsets, capacity);
+            compressedSizes = Arrays.copyOf(compressedSizes, capacity);
+            firstOrdinals = Arrays.copyOf(firstOrdinals, capacity);
+            itemCounts = Arrays.copyOf(itemCounts, capacity);
+        }
+        compressedOffsets[blockCount] = compressedOffset;
+        compressedSizes[blockCount] = compressedSize;
+        firstOrdinals[blockCount] = getItemCount();
+        itemCounts[blockCount] = itemCount;
+        blockCount++;
+    }
+
+    public int getBlockCount() {
+        return blockCount;
+    }
+
+    public long getCompressedOffset(int block) {
+        return compressedOffsets[block];
+    }
+
+    public int getCompressedSize(int block) {
+        return compressedSizes[block];
+    }
+
+    public long getFirstOrdinal(int block) {
+        return firstOrdinals[block];
+    }
+
+    public int getItemCount(int block) {
+        return itemCounts[block];
+    }
+
+    /**
+     * Total number of items in all blocks.
+     */
+    public long getItemCount() {
+        return blockCount == 0 ? 0 : firstOrdinals[blockCount - 1] + itemCounts[blockCount - 1];
+    }
+
+    /**
+     * @return block containing the item with the given ordinal (counted from 0)
+     */
+    public int blockOf(long ordinal) {
+        if (ordinal < 0 || ordinal >= getItemCount()) {
+            throw new IndexOutOfBoundsException("Item " + ordinal + " of " + getItemCount());
+        }
+        int lo = 0;
+        int hi = blockCount - 1;
+        // last block whose first ordinal is <= ordinal and which is not empty
+        while (lo < hi) {
+            final int mid = (lo + hi + 1) >>> 1;
+            if (firstOrdinals[mid] <= ordinal) lo = mid;
+            else hi = mid - 1;
+        }
+        while (itemCounts[lo] == 0) lo--;
+        return lo;
+    }
+
+    public static File indexFileOf(File containerFile) {
+        return new File(containerFile.getPath() + ".blocks");
+    }
+
+    public void save(File file) throws IOException {
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(file)))) {
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+            out.writeInt(blockCount);
+            for (int i = 0; i < blockCount; i++) {
+                out.writeLong(compressedOffsets[i]);
+                out.writeInt(compressedSizes[i]);
+                out.writeInt(itemCounts[i]);
+            }
+        }
+    }
+
+    public static BlockIndex load(File file) throws IOException {
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(file)))) {
+            if (in.readInt() != MAGIC || in.readInt() != VERSION) {
+                throw new IOException("Not a block index: " + file);
+            }
+            final int count = in.readInt();
+            final BlockIndex index = new BlockIndex();
+            for (int i = 0; i < count; i++) {
+                final long offset = in.readLong();
+                final int size = in.readInt();
+                index.add(offset, size, in.readInt());
+            }
+            return index;
+        }
+    }
+
+    /**
+     * Rebuild the index by reading the header of every block.
+     */
+    public static BlockIndex scan(File containerFile) throws IOException {
+        final BlockIndex index = new BlockIndex();
+        try (FileChannel channel = FileChannel.open(containerFile.toPath(), StandardOpenOption.READ)) {
+            final long size = channel.size();
+            final ByteBuffer head = ByteBuffer.allocate(MEMBER_HEADER_SIZE + EXTRA_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+            long offset = 0;
+            while (offset < size) {
+                head.clear();
+                while (head.hasRemaining()) {
+                    if (channel.read(head, offset + head.position()) < 0) {
+                        throw new EOFException("Truncated block header at offset " + offset);
+                    }
+                }
+                final int memberSize = memberSize(head.array(), 0, offset);
+                index.add(offset, memberSize, head.getInt(MEMBER_HEADER_SIZE + 8));
+                offset += memberSize;
+            }
+        }
+        return index;
+    }
+
+    /**
+     * Validate the gzip member header at pos and return the member size recorded in its 'C','R' subfield.
+     */
+    static int memberSize(byte[] bytes, int pos, long fileOffset) throws IOException {
+        if ((bytes[pos] & 0xff) != 0x1f || (bytes[pos + 1] & 0xff) != 0x8b || bytes[pos + 2] != 8 || (bytes[pos + 3] & 4) == 0
+                || bytes[pos + MEMBER_HEADER_SIZE] != SUBFIELD_ID1 || bytes[pos + MEMBER_HEADER_SIZE + 1] != SUBFIELD_ID2) {
+            throw new IOException("Not a block-compressed CAR block at offset " + fileOffset);
+        }
+        return ByteBuffer.wrap(bytes, pos + MEMBER_HEADER_SIZE + 4, 4).order(ByteOrder.LITTLE_ENDIAN).getInt();
+    }
+}
@@ -0,0 +1,169 @@
+package edu.unh.cs.treccar_v2.read_data;
+
+import edu.unh.cs.treccar_v2.Header;
+
+import java.io.*;
+import java.util.Arrays;
+
+/**
+ * Byte offsets of all items of a CAR file, so that items can be located and read independently.
+ *
+ * The index is stored next to the file as FILE.offsets, together with the file size, and is kept up to date through
+ * the {@link ArtifactCache}.
+ *
+ * The stored layout is big-endian: int {@link #MAGIC}, int {@link #VERSION}, long file size, long end offset,
+ * int item count, followed by one long offset per item at {@link #HEADER_SIZE} + 8 * ordinal, so that readers of
+ * very large files can look up single offsets with positional reads instead of loading the whole index.
+ */
+public final class CarOffsetIndex {
+    public static final int MAGIC = 0x4341524f; // "CARO"
+    public static final int VERSION = 1;
+    public static final int HEADER_SIZE = 28;
+    /** Name of the index in the {@link ArtifactCache} of a CAR file. */
+    public static final String ARTIFACT_NAME = "offsets";
+
+    private final long fileSize;
+    private final long[] offsets;
+    private final long endOffset;
+
+    /**
+     * @param offsets start offsets of all items
+     * @param endOffset offset directly after the last item
+     */
+    public CarOffsetIndex(long fileSize, long[] offsets, long endOffset) {
+        this.fileSize = fileSize;
+        this.offsets = offsets;
+        this.endOffset = endOffset;
+    }
+
+    public static File indexFileOf(File carFile) {
+        return ArtifactCache.artifactFileOf(carFile, ARTIFACT_NAME);
+    }
+
+    /**
+     * Scan the file for item boundaries, without decoding items.
+     */
+    public static CarOffsetIndex build(File carFile) throws IOException {
+        long[] offsets = new long[1 << 12];
+        int count = 0;
+        try (RawItemReader reader = new RawItemReader(new BufferedInputStream(new FileInputStream(carFile), 1 << 16))) {
+            long end = reader.getPosition();
+            while (reader.next() != null) {
+                if (count == offsets.length) offsets = Arrays.copyOf(offsets, count * 2);
+                offsets[count++] = reader.getItemOffset();
+                end = reader.getPosition();
+            }
+            return new CarOffsetIndex(carFile.length(), Arrays.copyOf(offsets, count), end);
+        }
+    }
+
+    /**
+     * Load the index stored next to the file, or build and store it if it is missing or stale
+     * (see {@link ArtifactCache}).
+     */
+    public static CarOffsetIndex loadOrBuild(File carFile) throws IOException {
+        return ArtifactCache.getOrBuild(carFile, ARTIFACT_NAME, CODEC, new ArtifactCache.Builder<CarOffsetIndex>() {
+            @Override
+            public CarOffsetIndex build(File carFile) throws IOException {
+                return CarOffsetIndex.build(carFile);
+            }
+        });
+    }
+
+    /**
+     * @return the index stored next to the file, or null if there is none or it is stale
+     */
+    public static CarOffsetIndex loadIfValid(File carFile) throws IOException {
+        return ArtifactCache.load(carFile, ARTIFACT_NAME, CODEC);
+    }
+
+    public static CarOffsetIndex load(File indexFile) throws IOException {
+        try (InputStream in = new BufferedInputStream(new FileInputStream(indexFile), 1 << 16)) {
+            return read(in, indexFile.getPath());
+        }
+    }
+
+    private static CarOffsetIndex read(InputStream inputStream, String name) throws IOException {
+        final DataInputStream in = new DataInputStream(inputStream);
+        if (in.readInt() != MAGIC || in.readInt() != VERSION) {
+            throw new IOException("Not an offset index: " + name);
+        }
+        final long fileSize = in.readLong();
+        final long endOffset = in.readLong();
+        final long[] offsets = new long[in.readInt()];
+        for (int i = 0; i < offsets.length; i++) {
+            offsets[i] = in.readLong();
+        }
+        return new CarOffsetIndex(fileSize, offsets, endOffset);
+    }
+
+    public void save(File indexFile) throws IOException {
+        try (OutputStream out = new BufferedOutputStream(new FileOutputStream(indexFile), 1 << 16)) {
+            write(out);
+        }
+    }
+
+    private void write(OutputStream outputStream) throws IOException {
+        final DataOutputStream out = new DataOutputStream(outputStream);
+        out.writeInt(MAGIC);
+        out.writeInt(VERSION);
+        out.writeLong(fileSize);
+        out.writeLong(endOffset);
+        out.writeInt(offsets.length);
+        for (long offset : offsets) {
+            out.writeLong(offset);
+        }
+        out.flush();
+    }
+
+    /**
+     * Codec for storing offset indexes in an {@link ArtifactCache}.
+     */
+    public static final ArtifactCache.Codec<CarOffsetIndex> CODEC = new ArtifactCache.Codec<CarOffsetIndex>() {
+        @Override
+        public CarOffsetIndex read(InputStream in) throws IOException {
+            return CarOffsetIndex.read(in, ARTIFACT_NAME);
+        }
+
+        @Override
+        public void write(CarOffsetIndex index, OutputStream out) throws IOException {
+            index.write(out);
+        }
+    };
+
+    /**
+     * Size of the indexed file.
+     */
+    public long getFileSize() {
+        return fileSize;
+    }
+
+    public int getItemCount() {
+        return offsets.length;
+    }
+
+    /**
+     * Offset of the first item, directly after the header (see {@link Header.TrecCarHeader}).
+     */
+    public long getDataOffset() {
+        return offsets.length > 0 ? offsets[0] : endOffset;
+    }
+
+    public long getOffset(int ordinal) {
+        return offsets[ordinal];
+    }
+
+    /**
+     * Checkpoint for resuming a pass at the given item (see {@link RawItemReader#resume(File, Checkpoint)}).
+     */
+    public Checkpoint checkpointOf(int ordinal) {
+        return new Checkpoint(ordinal < offsets.length ? offsets[ordinal] : endOffset, ordinal);
+    }
+
+    /**
+     * Offset directly after the item.
+     */
+    public long getEndOffset(int ordinal) {
+        return ordinal + 1 < offsets.length ? offsets[ordinal + 1] : endOffset;
+    }
+}
@@ -0,0 +1,252 @@
+package edu.unh.cs.treccar_v2.read_data;
+
+import edu.unh.cs.treccar_v2.Data;
+import edu.unh.cs.treccar_v2.Header;
+import org.reactivestreams.Publisher;
+import org.reactivestreams.Subscriber;
+import org.reactivestreams.Subscription;
+
+import java.io.*;
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Reactive Streams publisher of the pages or paragraphs of a CAR file.
+ *
+ * Items are read and decoded only when the subscriber has requested them, on the thread that calls
+ * {@link Subscription#request(long)} (or on an executor, see {@link #withExecutor(Executor)}); no thread blocks
+ * while the subscriber is not asking for more. Cancelling closes the input stream. On Java 9 or later, use
+ * {@code org.reactivestreams.FlowAdapters.toFlowPublisher} to obtain a {@code java.util.concurrent.Flow.Publisher}.
+ *
+ * A publisher over a file opens the file anew for each subscriber; a publisher over an input stream accepts a
+ * single subscriber.
+ */
+public final class CarPublisher<T> implements Publisher<T> {
+
+    private interface Opener {
+        InputStream open() throws IOException;
+    }
+
+    private interface Decoder<T> {
+        T decode(byte[] item);
+    }
+
+    private final Opener opener;
+    private final boolean paragraphs;
+    private final Decoder<T> decoder;
+    private final AtomicBoolean subscribed;
+    private final Executor executor;
+
+    private CarPublisher(Opener opener, boolean singleSubscriber, boolean paragraphs, Decoder<T> decoder, Executor executor) {
+        this.opener = opener;
+        this.paragraphs = paragraphs;
+        this.decoder = decoder;
+        this.subscribed = singleSubscriber ? new AtomicBoolean(false) : null;
+        this.executor = executor;
+    }
+
+    private static final Decoder<Data.Page> PAGE_DECODER = new Decoder<Data.Page>() {
+        @Override
+        public Data.Page decode(byte[] item) {
+            return DeserializeData.pageFromBytes(item);
+        }
+    };
+
+    private static final Decoder<Data.Paragraph> PARAGRAPH_DECODER = new Decoder<Data.Paragraph>() {
+        @Override
+        public Data.Paragraph decode(byte[] item) {
+            return DeserializeData.paragraphFromBytes(item);
+        }
+    };
+
+    public static CarPublisher<Data.Page> pages(final File file) {
+        return new CarPublisher<>(fileOpener(file), false, false, PAGE_DECODER, null);
+    }
+
+    public static CarPublisher<Data.Page> pages(InputStream inputStream) {
+        return new CarPublisher<>(streamOpener(inputStream), true, false, PAGE_DECODER, null);
+    }
+
+    public static CarPublisher<Data.Paragraph> paragraphs(final File file) {
+        return new CarPublisher<>(fileOpener(file), false, true, PARAGRAPH_DECODER, null);
+    }
+
+    public static CarPublisher<Data.Paragraph> paragraphs(InputStream inputStream) {
+        return new CarPublisher<>(streamOpener(inputStream), true, true, PARAGRAPH_DECODER, null);
+    }
+
+    private static Opener fileOpener(final File file) {
+        return new Opener() {
+            @Override
+            public InputStream open() throws IOException {
+                return new BufferedInputStream(new FileInputStream(file), 1 << 16);
+            }
+        };
+    }
+
+    private static Opener streamOpener(final InputStream inputStream) {
+        return new Opener() {
+            @Override
+            public InputStream open() {
+                return inputStream;
+            }
+        };
+    }
+
+    /**
+     * Publisher that reads, decodes and signals the subscriber on the executor instead of the requesting thread.
+     */
+    public CarPublisher<T> withExecutor(Executor executor) {
+        return new CarPublisher<>(opener, subscribed != null, paragraphs, decoder, executor);
+    }
+
+    @Override
+    public void subscribe(Subscriber<? super T> subscriber) {
+        if (subscriber == null) {
+            throw new NullPointerException("Subscriber must not be null");
+        }
+        if (subscribed != null && !subscribed.compareAndSet(false, true)) {
+            rejectSubscriber(subscriber, new IllegalStateException("This publisher reads an input stream and accepts a single subscriber."));
+            return;
+        }
+
+        final RawItemReader reader;
+        try {
+            reader = new RawItemReader(opener.open());
+            final Header.TrecCarHeader header = reader.getHeader();
+            if (header != null && (header.getFileType() == Header.FileType.ParagraphsFile) != paragraphs) {
+                reader.close();
+                throw new CborFileTypeException("Expected " + (paragraphs ? "a paragraphs file" : "a pages or outlines file") + ", but input is of file type " + header.getFileType());
+            }
+        } catch (IOException | RuntimeException e) {
+            rejectSubscriber(subscriber, e);
+            return;
+        }
+        subscriber.onSubscribe(new CarSubscription(subscriber, reader));
+    }
+
+    private static void rejectSubscriber(Subscriber<?> subscriber, Throwable error) {
+        subscriber.onSubscribe(new Subscription() {
+            @Override
+            public void request(long n) {
+            }
+
+            @Override
+            public void cancel() {
+            }
+        });
+        subscriber.onError(error);
+    }
+
+    /**
+     * Emits items in a drain loop; a work counter makes sure that only one thread runs the loop at a time, and that
+     * re-entrant calls to {@link #request(long)} from {@code onNext} only extend the running loop.
+     */
+    private final class CarSubscription implements Subscription, Runnable {
+        private final Subscriber<? super T> subscriber;
+        private final RawItemReader reader;
+        private final AtomicLong requested = new AtomicLong();
+        private final AtomicInteger work = new AtomicInteger();
+        private volatile boolean cancelled = false;
+        private volatile Throwable invalidRequest = null;
+        /** next raw item, read ahead to signal completion without waiting for further demand */
+        private byte[] nextItem = null;
+
+        CarSubscription(Subscriber<? super T> subscriber, RawItemReader reader) {
+            this.subscriber = subscriber;
+            this.reader = reader;
+        }
+
+        @Override
+        public void request(long n) {
+            if (n <= 0) {
+                invalidRequest = new IllegalArgumentException("Request must be positive, was " + n);
+            } else {
+                long current;
+                long updated;
+                do {
+                    current = requested.get();
+                    updated = current + n < 0 ? Long.MAX_VALUE : current + n;
+                } while (current != Long.MAX_VALUE && !requested.compareAndSet(current, updated));
+            }
+            schedule();
+        }
+
+        @Override
+        public void cancel() {
+            cancelled = true;
+            schedule();
+        }
+
+        private void schedule() {
+            if (work.getAndIncrement() == 0) {
+                if (executor != null) {
+                    executor.execute(this);
+                } else {
+                    run();
+                }
+            }
+        }
+
+        @Override
+        public void run() {
+            int missed = 1;
+            do {
+                if (cancelled) {
+                    closeReader();
+                    return;
+                }
+                if (invalidRequest != null) {
+                    cancelled = true;
+                    closeReader();
+                    subscriber.onError(invalidRequest);
+                    return;
+                }
+
+                final long demand = requested.get();
+                long emitted = 0;
+                try {
+                    while (emitted != demand && !cancelled) {
+                        final byte[] item = nextItem != null ? nextItem : reader.next();
+                        nextItem = null;
+                        if (item == null) {
+                            complete();
+                            return;
+                        }
+                        subscriber.onNext(decoder.decode(item));
+                        emitted++;
+                    }
+                    if (!cancelled && nextItem == null && (nextItem = reader.next()) == null) {
+                        complete();
+                        return;
+                    }
+                } catch (IOException | RuntimeException e) {
+                    cancelled = true;
+                    closeReader();
+                    subscriber.onError(e);
+                    return;
+                }
+                if (emitted != 0 && demand != Long.MAX_VALUE) {
+                    requested.addAndGet(-emitted);
+                }
+                missed = work.addAndGet(-missed);
+            } while (missed != 0);
+        }
+
+        private void complete() {
+            cancelled = true;
+            closeReader();
+            subscriber.onComplete();
+        }
+
+        private void closeReader() {
+            try {
+                reader.close();
+            } catch (IOException e) {
+                // nothing left to read
+            }
+        }
+    }
+}
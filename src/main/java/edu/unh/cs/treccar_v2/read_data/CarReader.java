@@ -0,0 +1,153 @@
+package edu.unh.cs.treccar_v2.read_data;
+
+import edu.unh.cs.treccar_v2.Data;
+import edu.unh.cs.treccar_v2.Header;
+
+import java.io.*;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+/**
+ * Iterator over the pages or paragraphs of a CAR file that knows the byte offset and ordinal of each item,
+ * so that long passes can save a {@link Checkpoint} now and then and resume from it after a failure:
+ *
+ * <pre>
+ * File checkpointFile = Checkpoint.checkpointFileOf(file);
+ * try (CarReader&lt;Data.Page&gt; reader = checkpointFile.exists()
+ *         ? CarReader.pages(file, Checkpoint.load(checkpointFile)) : CarReader.pages(file)) {
+ *     while (reader.hasNext()) {
+ *         process(reader.next());
+ *         if (reader.getOrdinal() % 100000 == 0) reader.getCheckpoint().save(checkpointFile);
+ *     }
+ * }
+ * </pre>
+ *
+ * Resuming seeks directly to the checkpoint offset; the items before it are neither read nor parsed.
+ */
+public final class CarReader<T> implements Iterator<T>, Closeable {
+    private interface Decoder<T> {
+        T decode(byte[] item);
+    }
+
+    private static final Decoder<Data.Page> PAGE_DECODER = new Decoder<Data.Page>() {
+        @Override
+        public Data.Page decode(byte[] item) {
+            return DeserializeData.pageFromBytes(item);
+        }
+    };
+
+    private static final Decoder<Data.Paragraph> PARAGRAPH_DECODER = new Decoder<Data.Paragraph>() {
+        @Override
+        public Data.Paragraph decode(byte[] item) {
+            return DeserializeData.paragraphFromBytes(item);
+        }
+    };
+
+    private final RawItemReader reader;
+    private final Decoder<T> decoder;
+    private byte[] nextItem = null;
+    private long nextOffset;
+    private long itemOffset = -1;
+    private long ordinal = -1;
+
+    private CarReader(RawItemReader reader, boolean paragraphs, Decoder<T> decoder) throws IOException {
+        final Header.TrecCarHeader header = reader.getHeader();
+        if (header != null && (header.getFileType() == Header.FileType.ParagraphsFile) != paragraphs) {
+            reader.close();
+            throw new CborFileTypeException("Expected " + (paragraphs ? "a paragraphs file" : "a pages or outlines file") + ", but input is of file type " + header.getFileType());
+        }
+        this.reader = reader;
+        this.decoder = decoder;
+    }
+
+    public static CarReader<Data.Page> pages(File file) throws IOException {
+        return new CarReader<>(new RawItemReader(new FileInputStream(file)), false, PAGE_DECODER);
+    }
+
+    public static CarReader<Data.Page> pages(File file, Checkpoint checkpoint) throws IOException {
+        return new CarReader<>(RawItemReader.resume(file, checkpoint), false, PAGE_DECODER);
+    }
+
+    /**
+     * @param header header of the original file, which is not read again
+     */
+    public static CarReader<Data.Page> pages(File file, Header.TrecCarHeader header, Checkpoint checkpoint) throws IOException {
+        return new CarReader<>(RawItemReader.resume(file, header, checkpoint), false, PAGE_DECODER);
+    }
+
+    public static CarReader<Data.Paragraph> paragraphs(File file) throws IOException {
+        return new CarReader<>(new RawItemReader(new FileInputStream(file)), true, PARAGRAPH_DECODER);
+    }
+
+    public static CarReader<Data.Paragraph> paragraphs(File file, Checkpoint checkpoint) throws IOException {
+        return new CarReader<>(RawItemReader.resume(file, checkpoint), true, PARAGRAPH_DECODER);
+    }
+
+    public static CarReader<Data.Paragraph> paragraphs(File file, Header.TrecCarHeader header, Checkpoint checkpoint) throws IOException {
+        return new CarReader<>(RawItemReader.resume(file, header, checkpoint), true, PARAGRAPH_DECODER);
+    }
+
+    public Header.TrecCarHeader getHeader() {
+        return reader.getHeader();
+    }
+
+    @Override
+    public boolean hasNext() {
+        if (nextItem == null) {
+            try {
+                nextItem = reader.next();
+                nextOffset = reader.getItemOffset();
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+        return nextItem != null;
+    }
+
+    @Override
+    public T next() {
+        if (!hasNext()) {
+            throw new NoSuchElementException();
+        }
+        final byte[] item = nextItem;
+        nextItem = null;
+        itemOffset = nextOffset;
+        ordinal = reader.getItemCount() - 1;
+        return decoder.decode(item);
+    }
+
+    @Override
+    public void remove() {
+        throw new UnsupportedOperationException("Read-only iterator.");
+    }
+
+    /**
+     * Ordinal of the item returned by the last call to {@link #next()}, counted from the start of the file.
+     */
+    public long getOrdinal() {
+        return ordinal;
+    }
+
+    /**
+     * Byte offset of the item returned by the last call to {@link #next()}.
+     */
+    public long getItemOffset() {
+        return itemOffset;
+    }
+
+    /**
+     * Checkpoint after the item returned by the last call to {@link #next()}: resuming from it continues with the
+     * following item.
+     */
+    public Checkpoint getCheckpoint() {
+        if (nextItem != null) {
+            return new Checkpoint(nextOffset, ordinal + 1);
+        }
+        return reader.getCheckpoint();
+    }
+
+    @Override
+    public void close() throws IOException {
+        reader.close();
+    }
+}
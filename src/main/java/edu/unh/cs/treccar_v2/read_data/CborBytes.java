@@ -0,0 +1,149 @@
+package edu.unh.cs.treccar_v2.read_data;
+
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Helpers for inspecting encoded CBOR items without decoding them, e.g. to read the id of a page from its raw bytes.
+ *
+ * Positions are offsets into the given array; the array must contain the complete item.
+ */
+public class CborBytes {
+    private static final int MAJOR_UNSIGNED = 0;
+    private static final int MAJOR_NEGATIVE = 1;
+    private static final int MAJOR_BYTE_STRING = 2;
+    private static final int MAJOR_TEXT_STRING = 3;
+    private static final int MAJOR_ARRAY = 4;
+    private static final int MAJOR_MAP = 5;
+    private static final int MAJOR_TAG = 6;
+    private static final int MAJOR_SPECIAL = 7;
+    private static final int INDEFINITE = 31;
+    private static final int BREAK = 0xff;
+
+    /** Page items: [0, pageName, pageId, skeleton, ...] */
+    private static final int PAGE_NAME_INDEX = 1;
+    private static final int PAGE_ID_INDEX = 2;
+    /** Paragraph items: [0, paraId, bodies] */
+    private static final int PARA_ID_INDEX = 1;
+
+    public static int majorType(byte[] bytes, int pos) {
+        return (bytes[pos] & 0xff) >>> 5;
+    }
+
+    private static int additionalInfo(byte[] bytes, int pos) {
+        return bytes[pos] & 0x1f;
+    }
+
+    /**
+     * Size of the head (initial byte plus length argument) of the item at pos.
+     */
+    static int headLength(int additionalInfo) {
+        if (additionalInfo < 24 || additionalInfo == INDEFINITE) return 1;
+        switch (additionalInfo) {
+            case 24: return 2;
+            case 25: return 3;
+            case 26: return 5;
+            case 27: return 9;
+            default: throw new IllegalArgumentException("Invalid CBOR additional info " + additionalInfo);
+        }
+    }
+
+    /**
+     * Length argument of the head at pos (string length, array length, or integer value).
+     */
+    public static long headArgument(byte[] bytes, int pos) {
+        final int info = additionalInfo(bytes, pos);
+        if (info < 24) return info;
+        final int length = headLength(info) - 1;
+        long value = 0;
+        for (int i = 1; i <= length; i++) {
+            value = (value << 8) | (bytes[pos + i] & 0xff);
+        }
+        return value;
+    }
+
+    /**
+     * @return position directly after the complete item starting at pos
+     */
+    public static int skipItem(byte[] bytes, int pos) {
+        final int major = majorType(bytes, pos);
+        final int info = additionalInfo(bytes, pos);
+        final int head = headLength(info);
+        switch (major) {
+            case MAJOR_UNSIGNED:
+            case MAJOR_NEGATIVE:
+                return pos + head;
+            case MAJOR_BYTE_STRING:
+            case MAJOR_TEXT_STRING:
+                if (info == INDEFINITE) {
+                    pos += 1;
+                    while ((bytes[pos] & 0xff) != BREAK) pos = skipItem(bytes, pos);
+                    return pos + 1;
+                }
+                return pos + head + (int) headArgument(bytes, pos);
+            case MAJOR_ARRAY:
+            case MAJOR_MAP: {
+                if (info == INDEFINITE) {
+                    pos += 1;
+                    while ((bytes[pos] & 0xff) != BREAK) pos = skipItem(bytes, pos);
+                    return pos + 1;
+                }
+                long count = headArgument(bytes, pos) * (major == MAJOR_MAP ? 2 : 1);
+                pos += head;
+                for (long i = 0; i < count; i++) pos = skipItem(bytes, pos);
+                return pos;
+            }
+            case MAJOR_TAG:
+                return skipItem(bytes, pos + head);
+            case MAJOR_SPECIAL:
+            default:
+                return pos + head;
+        }
+    }
+
+    /**
+     * Position of the index-th element of the array starting at pos.
+     */
+    public static int arrayElement(byte[] bytes, int pos, int index) {
+        if (majorType(bytes, pos) != MAJOR_ARRAY) {
+            throw new IllegalArgumentException("Expected CBOR array at position " + pos);
+        }
+        pos += headLength(additionalInfo(bytes, pos));
+        for (int i = 0; i < index; i++) {
+            pos = skipItem(bytes, pos);
+        }
+        return pos;
+    }
+
+    /**
+     * Decode the (definite length) text or byte string at pos as UTF-8.
+     */
+    public static String readString(byte[] bytes, int pos) {
+        final int major = majorType(bytes, pos);
+        if (major != MAJOR_BYTE_STRING && major != MAJOR_TEXT_STRING) {
+            throw new IllegalArgumentException("Expected CBOR string at position " + pos);
+        }
+        final int head = headLength(additionalInfo(bytes, pos));
+        final int length = (int) headArgument(bytes, pos);
+        return new String(bytes, pos + head, length, StandardCharsets.UTF_8);
+    }
+
+    public static String pageIdOf(byte[] item) {
+        return readString(item, arrayElement(item, 0, PAGE_ID_INDEX));
+    }
+
+    public static String pageNameOf(byte[] item) {
+        return readString(item, arrayElement(item, 0, PAGE_NAME_INDEX));
+    }
+
+    public static String paraIdOf(byte[] item) {
+        return readString(item, arrayElement(item, 0, PARA_ID_INDEX));
+    }
+
+    /**
+     * Id of the page or paragraph encoded in the item.
+     * @param paragraphs true for items of a paragraphs file
+     */
+    public static String keyOf(byte[] item, boolean paragraphs) {
+        return paragraphs ? paraIdOf(item) : pageIdOf(item);
+    }
+}
@@ -0,0 +1,111 @@
+package edu.unh.cs.treccar_v2.read_data;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+
+/**
+ * Position in a CAR file from which reading can be resumed: the byte offset of the next item and its ordinal
+ * (the number of items before it).
+ *
+ * Obtain checkpoints from {@link RawItemReader#getCheckpoint()} or {@link CarReader#getCheckpoint()}, and resume with
+ * {@link RawItemReader#resume(File, Checkpoint)} or {@link CarReader#pages(File, Checkpoint)}. Checkpoint files are
+ * replaced atomically, so a pass that dies while saving leaves the previous checkpoint intact.
+ */
+public final class Checkpoint {
+    private static final String MAGIC = "# trec-car checkpoint";
+
+    private final long offset;
+    private final long ordinal;
+
+    public Checkpoint(long offset, long ordinal) {
+        if (offset < 0 || ordinal < 0) {
+            throw new IllegalArgumentException("Invalid checkpoint offset " + offset + ", ordinal " + ordinal);
+        }
+        this.offset = offset;
+        this.ordinal = ordinal;
+    }
+
+    /**
+     * Checkpoint file next to the CAR file, FILE.checkpoint
+     */
+    public static File checkpointFileOf(File carFile) {
+        return new File(carFile.getPath() + ".checkpoint");
+    }
+
+    /**
+     * Byte offset of the next item to read.
+     */
+    public long getOffset() {
+        return offset;
+    }
+
+    /**
+     * Ordinal of the next item to read, i.e. the number of items already processed.
+     */
+    public long getOrdinal() {
+        return ordinal;
+    }
+
+    public static Checkpoint load(File checkpointFile) throws IOException {
+        try (BufferedReader reader = new BufferedReader(new InputStreamReader(new FileInputStream(checkpointFile), StandardCharsets.UTF_8))) {
+            if (!MAGIC.equals(reader.readLine())) {
+                throw new IOException("Not a checkpoint file: " + checkpointFile);
+            }
+            final long offset = readField(reader, "offset", checkpointFile);
+            final long ordinal = readField(reader, "ordinal", checkpointFile);
+            return new Checkpoint(offset, ordinal);
+        }
+    }
+
+    private static long readField(BufferedReader reader, String name, File checkpointFile) throws IOException {
+        final String line = reader.readLine();
+        if (line == null || !line.startsWith(name + "\t")) {
+            throw new IOException("Missing " + name + " in checkpoint file " + checkpointFile);
+        }
+        return Long.parseLong(line.substring(name.length() + 1));
+    }
+
+    /**
+     * Write to a temporary file with a unique name and rename it to the checkpoint file.
+     */
+    public void save(File checkpointFile) throws IOException {
+        final File tempFile = ArtifactCache.tempFileFor(checkpointFile);
+        try {
+            try (FileOutputStream out = new FileOutputStream(tempFile)) {
+                out.write((MAGIC + "\noffset\t" + offset + "\nordinal\t" + ordinal + "\n").getBytes(StandardCharsets.UTF_8));
+                out.getFD().sync();
+            }
+            try {
+                Files.move(tempFile.toPath(), checkpointFile.toPath(), StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+            } catch (AtomicMoveNotSupportedException e) {
+                Files.move(tempFile.toPath(), checkpointFile.toPath(), StandardCopyOption.REPLACE_EXISTING);
+            }
+        } finally {
+            Files.deleteIfExists(tempFile.toPath());
+        }
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (!(o instanceof Checkpoint)) return false;
+        Checkpoint that = (Checkpoint) o;
+        return offset == that.offset && ordinal == that.ordinal;
+    }
+
+    @Override
+    public int hashCode() {
+        return 31 * Long.hashCode(offset) + Long.hashCode(ordinal);
+    }
+
+    @Override
+    public String toString() {
+        return "Checkpoint{" +
+                "offset=" + offset +
+                ", ordinal=" + ordinal +
+                '}';
+    }
+}
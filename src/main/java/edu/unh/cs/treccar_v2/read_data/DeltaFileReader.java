@@ -0,0 +1,234 @@
+package edu.unh.cs.treccar_v2.read_data;
+
+import edu.unh.cs.treccar_v2.Header;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.zip.CRC32;
+
+/**
+ * Reads a delta file, which records the changes from a base CAR file to a new one.
+ *
+ * A delta file has the same framing as a CAR file, but the magic word {@value #MAGIC_WORD}. Its header is the
+ * header of the new file, copied as encoded there with only the magic word replaced, followed by a fourth element
+ * that identifies the base the delta was created from: [0, dataReleaseName, itemCount, checksum] (see {@link Base}).
+ * Items are entries, sorted by key (page id, or paragraph id for paragraph files):
+ *
+ * - [0, key]: remove the item with this key from the base
+ * - [1, key, item]: add the item, or replace the base item with this key
+ *
+ * Use {@link DeltaOverlay} to read base and delta as one file.
+ */
+public final class DeltaFileReader implements Closeable {
+    public static final String MAGIC_WORD = "CAR-DELTA";
+    private static final String CAR_MAGIC_WORD = "CAR";
+
+    public enum Op {
+        REMOVE,
+        UPSERT;
+
+        private static Op[] values = null;
+        public static Op fromInt(int i) {
+            if (Op.values == null) {
+                Op.values = Op.values();
+            }
+            return Op.values[i];
+        }
+    }
+
+    public static final class Entry {
+        private final Op op;
+        private final String key;
+        private final byte[] item;
+
+        Entry(Op op, String key, byte[] item) {
+            this.op = op;
+            this.key = key;
+            this.item = item;
+        }
+
+        public Op getOp() {
+            return op;
+        }
+
+        public String getKey() {
+            return key;
+        }
+
+        /**
+         * @return raw bytes of the new item, or null for {@link Op#REMOVE}
+         */
+        public byte[] getItem() {
+            return item;
+        }
+    }
+
+    /**
+     * Identity of the base file of a delta: data release name, number of items, and CRC-32 over the raw bytes of all
+     * items in file order. Applying a delta to any other file fails.
+     */
+    public static final class Base {
+        private final String dataReleaseName;
+        private final long itemCount;
+        private final long checksum;
+
+        public Base(String dataReleaseName, long itemCount, long checksum) {
+            this.dataReleaseName = dataReleaseName;
+            this.itemCount = itemCount;
+            this.checksum = checksum;
+        }
+
+        /**
+         * Read a complete base file to compute its identity.
+         */
+        public static Base of(InputStream baseStream) throws IOException {
+            final RawItemReader reader = new RawItemReader(baseStream);
+            if (reader.getHeader() == null) {
+                throw new CborFileTypeException("Input has no header, cannot be the base of a delta.");
+            }
+            final CRC32 checksum = new CRC32();
+            long itemCount = 0;
+            byte[] item;
+            while ((item = reader.next()) != null) {
+                checksum.update(item, 0, item.length);
+                itemCount++;
+            }
+            return new Base(reader.getHeader().getProvenance().getDataReleaseName(), itemCount, checksum.getValue());
+        }
+
+        public String getDataReleaseName() {
+            return dataReleaseName;
+        }
+
+        public long getItemCount() {
+            return itemCount;
+        }
+
+        public long getChecksum() {
+            return checksum;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) return true;
+            if (!(o instanceof Base)) return false;
+            Base base = (Base) o;
+            return itemCount == base.itemCount && checksum == base.checksum
+                    && (dataReleaseName != null ? dataReleaseName.equals(base.dataReleaseName) : base.dataReleaseName == null);
+        }
+
+        @Override
+        public int hashCode() {
+            int result = dataReleaseName != null ? dataReleaseName.hashCode() : 0;
+            result = 31 * result + (int) (itemCount ^ (itemCount >>> 32));
+            result = 31 * result + (int) (checksum ^ (checksum >>> 32));
+            return result;
+        }
+
+        @Override
+        public String toString() {
+            return "Base{" +
+                    "dataReleaseName='" + dataReleaseName + '\'' +
+                    ", itemCount=" + itemCount +
+                    ", checksum=" + Long.toHexString(checksum) +
+                    '}';
+        }
+    }
+
+    private final RawItemReader reader;
+    private final Base base;
+
+    public DeltaFileReader(InputStream inputStream) throws IOException {
+        this.reader = new RawItemReader(inputStream, MAGIC_WORD);
+        if (reader.getHeader() == null) {
+            throw new CborFileTypeException("Input is not a CAR delta file.");
+        }
+        this.base = baseOf(reader.getHeaderBytes());
+    }
+
+    private static Base baseOf(byte[] headerBytes) {
+        if (CborBytes.headArgument(headerBytes, 0) < 4) {
+            return null;
+        }
+        final int pos = CborBytes.arrayElement(headerBytes, 0, 3);
+        return new Base(
+                CborBytes.readString(headerBytes, CborBytes.arrayElement(headerBytes, pos, 1)),
+                CborBytes.headArgument(headerBytes, CborBytes.arrayElement(headerBytes, pos, 2)),
+                CborBytes.headArgument(headerBytes, CborBytes.arrayElement(headerBytes, pos, 3)));
+    }
+
+    /**
+     * Base file the delta was created from, or null for deltas written without it, which cannot be checked.
+     */
+    public Base getBase() {
+        return base;
+    }
+
+    /**
+     * Header of the new file.
+     */
+    public Header.TrecCarHeader getHeader() {
+        return reader.getHeader();
+    }
+
+    /**
+     * Header of the new file exactly as encoded there, see {@link RawItemReader#getHeaderBytes()}.
+     */
+    public byte[] getHeaderBytes() {
+        byte[] headerBytes = reader.getHeaderBytes();
+        if (base != null) {
+            // drop the base, which is the last element
+            headerBytes = Arrays.copyOf(headerBytes, CborBytes.arrayElement(headerBytes, 0, 3));
+            headerBytes[0] = (byte) 0x83;
+        }
+        return replaceMagicWord(headerBytes, MAGIC_WORD, CAR_MAGIC_WORD);
+    }
+
+    /**
+     * Replace the magic word (the first element) of an encoded header, keeping all other bytes unchanged.
+     * @return the header with the new magic word, or null if it is null or does not start with {@code from}
+     */
+    public static byte[] replaceMagicWord(byte[] headerBytes, String from, String to) {
+        if (headerBytes == null || headerBytes.length == 0 || CborBytes.majorType(headerBytes, 0) != 4) {
+            return null;
+        }
+        final int start = CborBytes.arrayElement(headerBytes, 0, 0);
+        if (start >= headerBytes.length || CborBytes.majorType(headerBytes, start) != 3
+                || !from.equals(CborBytes.readString(headerBytes, start))) {
+            return null;
+        }
+        final int end = CborBytes.skipItem(headerBytes, start);
+        final byte[] magic = to.getBytes(StandardCharsets.UTF_8);
+        if (magic.length >= 24) {
+            throw new IllegalArgumentException("Magic word too long: " + to);
+        }
+        final byte[] result = new byte[headerBytes.length - (end - start) + 1 + magic.length];
+        System.arraycopy(headerBytes, 0, result, 0, start);
+        result[start] = (byte) (0x60 | magic.length);
+        System.arraycopy(magic, 0, result, start + 1, magic.length);
+        System.arraycopy(headerBytes, end, result, start + 1 + magic.length, headerBytes.length - end);
+        return result;
+    }
+
+    /**
+     * @return next entry, or null when all entries have been read
+     */
+    public Entry next() throws IOException {
+        final byte[] entry = reader.next();
+        if (entry == null) {
+            return null;
+        }
+        final Op op = Op.fromInt((int) CborBytes.headArgument(entry, CborBytes.arrayElement(entry, 0, 0)));
+        final String key = CborBytes.readString(entry, CborBytes.arrayElement(entry, 0, 1));
+        final byte[] item = op == Op.UPSERT ? Arrays.copyOfRange(entry, CborBytes.arrayElement(entry, 0, 2), entry.length) : null;
+        return new Entry(op, key, item);
+    }
+
+    @Override
+    public void close() throws IOException {
+        reader.close();
+    }
+}
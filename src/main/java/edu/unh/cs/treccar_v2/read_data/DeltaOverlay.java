@@ -0,0 +1,188 @@
+package edu.unh.cs.treccar_v2.read_data;
+
+import edu.unh.cs.treccar_v2.Data;
+import edu.unh.cs.treccar_v2.Header;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.zip.CRC32;
+
+/**
+ * Raw items of a base CAR file with a delta applied, merged on the fly without materializing the new file.
+ *
+ * The base must be sorted by key like the delta (see {@link edu.unh.cs.treccar_v2.tools.SortCarFile}), and must be
+ * the file the delta was created from (see {@link DeltaFileReader.Base}). The data release name is checked on
+ * construction; item count and checksum are checked while the base is read, the checksum once it has been read
+ * completely, i.e. before {@link #hasNext()} returns false.
+ *
+ * I/O errors are thrown as {@link UncheckedIOException}; a base that is not the base of the delta, a delta that
+ * removes a key missing from the base, or an unsorted base, throws {@link IllegalStateException}.
+ */
+public final class DeltaOverlay implements Iterator<byte[]> {
+    private final RawItemReader base;
+    private final DeltaFileReader delta;
+    private final boolean paragraphs;
+    private final DeltaFileReader.Base expectedBase;
+    private final CRC32 baseChecksum = new CRC32();
+    private long baseItemCount = 0;
+
+    private byte[] baseItem;
+    private String baseKey;
+    private DeltaFileReader.Entry entry;
+    private byte[] next;
+
+    public DeltaOverlay(RawItemReader base, DeltaFileReader delta) throws IOException {
+        this.base = base;
+        this.delta = delta;
+        final Header.FileType fileType = delta.getHeader().getFileType();
+        this.paragraphs = fileType == Header.FileType.ParagraphsFile;
+        if (base.getHeader() != null && (base.getHeader().getFileType() == Header.FileType.ParagraphsFile) != paragraphs) {
+            throw new CborFileTypeException("Delta for " + fileType + " cannot be applied to a " + base.getHeader().getFileType());
+        }
+        this.expectedBase = delta.getBase();
+        if (expectedBase != null) {
+            final String releaseName = base.getHeader() != null ? base.getHeader().getProvenance().getDataReleaseName() : null;
+            if (!expectedBase.getDataReleaseName().equals(releaseName)) {
+                throw new IllegalStateException("Delta was created from " + expectedBase.getDataReleaseName() + ", but the base is " + releaseName);
+            }
+        }
+        advanceBase();
+        entry = delta.next();
+        next = computeNext();
+    }
+
+    /**
+     * Header of the new file.
+     */
+    public Header.TrecCarHeader getHeader() {
+        return delta.getHeader();
+    }
+
+    /**
+     * Header of the new file as encoded there, see {@link DeltaFileReader#getHeaderBytes()}.
+     */
+    public byte[] getHeaderBytes() {
+        return delta.getHeaderBytes();
+    }
+
+    private void advanceBase() throws IOException {
+        final String previousKey = baseKey;
+        baseItem = base.next();
+        checkBase();
+        baseKey = baseItem != null ? CborBytes.keyOf(baseItem, paragraphs) : null;
+        if (baseKey != null && previousKey != null && previousKey.compareTo(baseKey) > 0) {
+            throw new IllegalStateException("Base is not sorted: " + previousKey + " > " + baseKey);
+        }
+    }
+
+    private void checkBase() {
+        if (expectedBase == null) return;
+        if (baseItem != null) {
+            baseChecksum.update(baseItem, 0, baseItem.length);
+            if (++baseItemCount > expectedBase.getItemCount()) {
+                throw new IllegalStateException("Base has more items than the base of the delta " + expectedBase);
+            }
+        } else if (baseItemCount != expectedBase.getItemCount() || baseChecksum.getValue() != expectedBase.getChecksum()) {
+            throw new IllegalStateException("Base is not the base of the delta " + expectedBase + ": " + baseItemCount
+                    + " items, checksum " + Long.toHexString(baseChecksum.getValue()));
+        }
+    }
+
+    private byte[] computeNext() throws IOException {
+        while (baseItem != null || entry != null) {
+            final int cmp = baseItem == null ? 1
+                    : entry == null ? -1
+                    : baseKey.compareTo(entry.getKey());
+            if (cmp < 0) {
+                final byte[] result = baseItem;
+                advanceBase();
+                return result;
+            }
+            if (cmp > 0 && entry.getOp() == DeltaFileReader.Op.REMOVE) {
+                throw new IllegalStateException("Delta removes " + entry.getKey() + ", which is not in the base");
+            }
+            if (cmp == 0) {
+                advanceBase();
+            }
+            final DeltaFileReader.Entry current = entry;
+            entry = delta.next();
+            if (current.getOp() == DeltaFileReader.Op.UPSERT) {
+                return current.getItem();
+            }
+        }
+        return null;
+    }
+
+    @Override
+    public boolean hasNext() {
+        return next != null;
+    }
+
+    @Override
+    public byte[] next() {
+        if (next == null) {
+            throw new NoSuchElementException();
+        }
+        final byte[] result = next;
+        try {
+            next = computeNext();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return result;
+    }
+
+    @Override
+    public void remove() {
+        throw new UnsupportedOperationException("Read-only iterator.");
+    }
+
+    /**
+     * Pages of the base pages or outlines file with the delta applied.
+     */
+    public static Iterator<Data.Page> iterAnnotations(InputStream baseStream, InputStream deltaStream) throws IOException {
+        final DeltaOverlay overlay = new DeltaOverlay(new RawItemReader(baseStream), new DeltaFileReader(deltaStream));
+        return new Iterator<Data.Page>() {
+            @Override
+            public boolean hasNext() {
+                return overlay.hasNext();
+            }
+
+            @Override
+            public Data.Page next() {
+                return DeserializeData.pageFromBytes(overlay.next());
+            }
+
+            @Override
+            public void remove() {
+                throw new UnsupportedOperationException("Read-only iterator.");
+            }
+        };
+    }
+
+    /**
+     * Paragraphs of the base paragraphs file with the delta applied.
+     */
+    public static Iterator<Data.Paragraph> iterParagraphs(InputStream baseStream, InputStream deltaStream) throws IOException {
+        final DeltaOverlay overlay = new DeltaOverlay(new RawItemReader(baseStream), new DeltaFileReader(deltaStream));
+        return new Iterator<Data.Paragraph>() {
+            @Override
+            public boolean hasNext() {
+                return overlay.hasNext();
+            }
+
+            @Override
+            public Data.Paragraph next() {
+                return DeserializeData.paragraphFromBytes(overlay.next());
+            }
+
+            @Override
+            public void remove() {
+                throw new UnsupportedOperationException("Read-only iterator.");
+            }
+        };
+    }
+}
@@ -1,8 +1,10 @@
 package edu.unh.cs.treccar_v2.read_data;
 
 import co.nstant.in.cbor.CborDecoder;
+import co.nstant.in.cbor.CborException;
 import co.nstant.in.cbor.model.*;
 
+import java.io.ByteArrayInputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.util.*;
@@ -178,6 +180,31 @@ public class DeserializeData {
     }
 
 
+    // =========== Raw items ===================
+
+    /**
+     * Decode a page from its raw CBOR bytes, e.g. as returned by {@link RawItemReader}.
+     */
+    public static Data.Page pageFromBytes(byte[] bytes) throws CborRuntimeException {
+        return pageFromCbor(decodeBytes(bytes));
+    }
+
+    /**
+     * Decode a paragraph from its raw CBOR bytes, e.g. as returned by {@link RawItemReader}.
+     */
+    public static Data.Paragraph paragraphFromBytes(byte[] bytes) throws CborRuntimeException {
+        return paragraphFromCbor(decodeBytes(bytes));
+    }
+
+    private static DataItem decodeBytes(byte[] bytes) throws CborRuntimeException {
+        try {
+            return new CborDecoder(new ByteArrayInputStream(bytes)).decodeNext();
+        } catch (CborException e) {
+            throw new CborRuntimeException(e);
+        }
+    }
+
+
     // ============ Data accessors ==================
     private static ArrayList<Data.ItemWithFrequency<String>> getStringWithFrequencyArray(List<DataItem> dataItems) {
         final ArrayList<Data.ItemWithFrequency<String>> result = new ArrayList<>();
@@ -450,14 +477,22 @@ public class DeserializeData {
     }
 
     public static Header.TrecCarHeader headerFromCbor(DataItem dataItem) throws Header.InvalidHeaderException {
+        return headerFromCbor(dataItem, "CAR");
+    }
+
+    /**
+     * @param expectedMagicWord first element of the header; files other than CAR files may have further elements
+     *                          after the provenance (see {@link DeltaFileReader})
+     */
+    static Header.TrecCarHeader headerFromCbor(DataItem dataItem, String expectedMagicWord) throws Header.InvalidHeaderException {
         List<DataItem> array = ((Array) dataItem).getDataItems();
-        if (array.size() != 3) {
+        if (array.size() < 3 || (array.size() > 3 && "CAR".equals(expectedMagicWord))) {
             throw new Header.InvalidHeaderException();
         }
 
         try {
             String magicWord = ((UnicodeString) array.get(0)).getString();
-            if (!Objects.equals(magicWord, "CAR")) {
+            if (!Objects.equals(magicWord, expectedMagicWord)) {
                 throw new Header.InvalidHeaderException();
             }
         } catch (ClassCastException e) {
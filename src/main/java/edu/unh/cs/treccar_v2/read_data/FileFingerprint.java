@@ -0,0 +1,165 @@
+package edu.unh.cs.treccar_v2.read_data;
+
+import edu.unh.cs.treccar_v2.Header;
+
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.StandardOpenOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+
+/**
+ * Cheap fingerprint of a CAR file that changes whenever the file is replaced or modified, used as the key of
+ * derived artifacts (see {@link ArtifactCache}).
+ *
+ * The fingerprint is a SHA-1 digest over the data release name and transforms of the header provenance, the file
+ * size, the modification time, and {@link #SAMPLE_BLOCKS} blocks of {@link #BLOCK_SIZE} bytes sampled evenly across
+ * the file, including the first and last block. Computing it reads about one megabyte, regardless of file size.
+ */
+public final class FileFingerprint {
+    public static final int SAMPLE_BLOCKS = 16;
+    public static final int BLOCK_SIZE = 1 << 16;
+    private static final String VERSION = "trec-car fingerprint 1";
+    private static final char[] HEX = "0123456789abcdef".toCharArray();
+
+    private final String value;
+
+    /**
+     * Read access to a CAR file for fingerprinting, e.g. on a distributed file system.
+     */
+    public interface Input {
+        long length();
+
+        /** modification time in milliseconds since the epoch */
+        long lastModified();
+
+        /** stream from the beginning of the file, to read its header */
+        InputStream open() throws IOException;
+
+        /** positional read; @return number of bytes read, or -1 at the end of the file */
+        int read(long position, byte[] buffer, int offset, int length) throws IOException;
+    }
+
+    private FileFingerprint(String value) {
+        this.value = value;
+    }
+
+    public static FileFingerprint of(final File carFile) throws IOException {
+        try (final FileChannel channel = FileChannel.open(carFile.toPath(), StandardOpenOption.READ)) {
+            return of(new Input() {
+                @Override
+                public long length() {
+                    return carFile.length();
+                }
+
+                @Override
+                public long lastModified() {
+                    return carFile.lastModified();
+                }
+
+                @Override
+                public InputStream open() throws IOException {
+                    return new FileInputStream(carFile);
+                }
+
+                @Override
+                public int read(long position, byte[] buffer, int offset, int length) throws IOException {
+                    return channel.read(ByteBuffer.wrap(buffer, offset, length), position);
+                }
+            });
+        }
+    }
+
+    public static FileFingerprint of(Input input) throws IOException {
+        final MessageDigest digest;
+        try {
+            digest = MessageDigest.getInstance("SHA-1");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+        final long length = input.length();
+        update(digest, VERSION);
+        update(digest, Long.toString(length));
+        update(digest, Long.toString(input.lastModified()));
+
+        final Header.TrecCarHeader header = readHeader(input, length);
+        if (header != null && header.getProvenance() != null) {
+            final Header.Provenance provenance = header.getProvenance();
+            update(digest, provenance.getDataReleaseName());
+            for (Header.Transform transform : provenance.getTransforms()) {
+                update(digest, transform.getToolName());
+                update(digest, transform.getToolCommit());
+                update(digest, transform.getToolInfo());
+            }
+        }
+
+        final byte[] block = new byte[BLOCK_SIZE];
+        final long lastBlock = Math.max(0, length - BLOCK_SIZE);
+        for (int i = 0; i < SAMPLE_BLOCKS; i++) {
+            final long position = lastBlock * i / (SAMPLE_BLOCKS - 1);
+            int filled = 0;
+            while (filled < BLOCK_SIZE) {
+                final int n = input.read(position + filled, block, filled, BLOCK_SIZE - filled);
+                if (n < 0) break;
+                filled += n;
+            }
+            digest.update(block, 0, filled);
+        }
+
+        final byte[] bytes = digest.digest();
+        final char[] chars = new char[bytes.length * 2];
+        for (int i = 0; i < bytes.length; i++) {
+            chars[2 * i] = HEX[(bytes[i] >>> 4) & 0xf];
+            chars[2 * i + 1] = HEX[bytes[i] & 0xf];
+        }
+        return new FileFingerprint(new String(chars));
+    }
+
+    private static Header.TrecCarHeader readHeader(Input input, long length) throws IOException {
+        if (length == 0) {
+            return null;
+        }
+        try (RawItemReader reader = new RawItemReader(input.open())) {
+            return reader.getHeader();
+        }
+    }
+
+    private static void update(MessageDigest digest, String s) {
+        if (s == null) {
+            digest.update((byte) 0);
+        } else {
+            digest.update((byte) 1);
+            digest.update(s.getBytes(StandardCharsets.UTF_8));
+            digest.update((byte) 0);
+        }
+    }
+
+    /**
+     * Parse a fingerprint as written by {@link #toString()}.
+     */
+    public static FileFingerprint valueOf(String value) {
+        return new FileFingerprint(value);
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (!(o instanceof FileFingerprint)) return false;
+        return value.equals(((FileFingerprint) o).value);
+    }
+
+    @Override
+    public int hashCode() {
+        return value.hashCode();
+    }
+
+    /**
+     * Fingerprint as hexadecimal string.
+     */
+    @Override
+    public String toString() {
+        return value;
+    }
+}
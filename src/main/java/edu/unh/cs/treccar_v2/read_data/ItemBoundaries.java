@@ -0,0 +1,236 @@
+package edu.unh.cs.treccar_v2.read_data;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Arrays;
+
+/**
+ * Finds the start of the next item from an arbitrary byte position in a CAR file, e.g. at the beginning of an
+ * input split, without reading the file from the start.
+ *
+ * A candidate position must start an item of the expected shape (pages: [0, text name, byte id, [_ skeleton...],
+ * ...]; paragraphs: [0, byte id, [_ bodies...]]) and be followed by a chain of {@link #CHAIN_LENGTH} more such
+ * items, or by the end of the file.
+ *
+ * Sections are encoded as [0, text heading, byte id, [_ children...]], the same shape as a page without type and
+ * metadata, so in files with a header every item must start with the same initial byte as the first item of the
+ * file: pages and outlines of a release are 6-element arrays (0x86), which a section never is, and
+ * {@link edu.unh.cs.treccar_v2.write_data.SerializeData#pageToCbor} writes all pages in that form. This requires
+ * that all pages of a file have the same form; files that mix 4-element pages (0x84) with 6-element pages lose the
+ * pages of the other form at split starts.
+ *
+ * Files whose pages are 4-element arrays, and headerless legacy files (which accept both forms), cannot tell pages
+ * from sections: a position inside a page with more than {@link #CHAIN_LENGTH} sibling sections could be taken for
+ * a boundary. The exact offsets of a {@link CarOffsetIndex} are preferred when available.
+ */
+public final class ItemBoundaries {
+    /** Number of well-formed items that must follow a candidate boundary. */
+    public static final int CHAIN_LENGTH = 16;
+    private static final int INITIAL_WINDOW = 1 << 16;
+    private static final int MAX_NESTING = 256;
+
+    private static final int BREAK = 0xff;
+    private static final int INDEFINITE_ARRAY = 0x9f;
+    private static final int NEED_MORE = -1;
+    private static final int INVALID = -2;
+
+    private final InputStream inputStream;
+    private final long fileLength;
+    private final boolean paragraphs;
+    private final int itemHead;
+    private byte[] window = new byte[INITIAL_WINDOW];
+    private long windowOffset;
+    private int windowLength = 0;
+    private boolean eof = false;
+
+    private ItemBoundaries(InputStream inputStream, long from, long fileLength, boolean paragraphs, int itemHead) {
+        this.inputStream = inputStream;
+        this.windowOffset = from;
+        this.fileLength = fileLength;
+        this.paragraphs = paragraphs;
+        this.itemHead = itemHead;
+    }
+
+    /**
+     * @param inputStream stream positioned at {@code from}; it is read beyond the returned offset, so the caller
+     *                    has to seek back (or reopen the file) before reading items
+     * @param from byte position at or after the header
+     * @param fileLength length of the file
+     * @param paragraphs true for paragraph files, false for pages and outlines files
+     * @param itemHead initial byte of the first item of the file, which all its items share, or -1 for headerless
+     *                 legacy files (see {@link #itemHeadOf(byte[], boolean)})
+     * @return offset of the first item starting at or after {@code from}, or the end of the item array (the
+     * position of its break, or the file length) if there is none
+     */
+    public static long findNext(InputStream inputStream, long from, long fileLength, boolean paragraphs, int itemHead) throws IOException {
+        return new ItemBoundaries(inputStream, from, fileLength, paragraphs, itemHead).find();
+    }
+
+    /**
+     * @param firstItem first item of the file, as returned by {@link RawItemReader#next()}, or null if it has none
+     * @param hasHeader true unless the file is a headerless legacy file
+     * @return item head to pass to {@link #findNext(InputStream, long, long, boolean, int)}
+     */
+    public static int itemHeadOf(byte[] firstItem, boolean hasHeader) {
+        return hasHeader && firstItem != null && firstItem.length > 0 ? firstItem[0] & 0xff : -1;
+    }
+
+    private long find() throws IOException {
+        int candidate = 0;
+        while (true) {
+            if (candidate >= windowLength) {
+                if (!fill(candidate)) {
+                    return windowOffset + candidate;
+                }
+                // fill dropped the bytes before the candidate
+                candidate = 0;
+                continue;
+            }
+            final long absolute = windowOffset + candidate;
+            if ((window[candidate] & 0xff) == BREAK && absolute == fileLength - 1) {
+                return absolute;
+            }
+            final int result = checkChain(candidate);
+            if (result == NEED_MORE) {
+                if (!fill(candidate)) {
+                    throw new EOFException("Truncated CAR file at offset " + (windowOffset + windowLength));
+                }
+                candidate = 0;
+            } else if (result == INVALID) {
+                candidate++;
+            } else {
+                return absolute;
+            }
+        }
+    }
+
+    /**
+     * Drop the window before {@code keep} and read more bytes, growing the window if needed.
+     * @return false if the end of the stream was already reached before
+     */
+    private boolean fill(int keep) throws IOException {
+        if (eof) return false;
+        if (keep > 0) {
+            System.arraycopy(window, keep, window, 0, windowLength - keep);
+            windowLength -= keep;
+            windowOffset += keep;
+        }
+        if (windowLength == window.length) {
+            window = Arrays.copyOf(window, window.length * 2);
+        }
+        final int n = inputStream.read(window, windowLength, window.length - windowLength);
+        if (n < 0) {
+            eof = true;
+            return true;
+        }
+        windowLength += n;
+        return true;
+    }
+
+    /**
+     * @return a non-negative value if a chain of items starts at pos, otherwise {@link #INVALID} or {@link #NEED_MORE}
+     */
+    private int checkChain(int pos) {
+        for (int i = 0; i <= CHAIN_LENGTH; i++) {
+            if (pos >= windowLength) {
+                return eof ? (windowOffset + pos == fileLength ? 0 : INVALID) : NEED_MORE;
+            }
+            if ((window[pos] & 0xff) == BREAK) {
+                // the only break at top level closes the item array at the end of the file
+                return windowOffset + pos == fileLength - 1 ? 0 : INVALID;
+            }
+            final int shape = checkShape(pos);
+            if (shape < 0) return shape;
+            pos = skip(pos, 0);
+            if (pos < 0) return pos;
+        }
+        return 0;
+    }
+
+    private int checkShape(int pos) {
+        if (pos + 3 > windowLength) return eof ? INVALID : NEED_MORE;
+        final int head = window[pos] & 0xff;
+        if (window[pos + 1] != 0) return INVALID;
+        if (paragraphs) {
+            if (head != 0x83 || (itemHead >= 0 && head != itemHead) || major(pos + 2) != 2) return INVALID;
+            final int next = skip(pos + 2, 0);
+            if (next < 0) return next;
+            return next >= windowLength ? (eof ? INVALID : NEED_MORE) : ((window[next] & 0xff) == INDEFINITE_ARRAY ? 0 : INVALID);
+        } else {
+            final boolean pageHead = itemHead >= 0 ? head == itemHead : (head == 0x84 || head == 0x86);
+            if (!pageHead || major(pos + 2) != 3) return INVALID;
+            final int id = skip(pos + 2, 0);
+            if (id < 0) return id;
+            if (id >= windowLength) return eof ? INVALID : NEED_MORE;
+            if (major(id) != 2) return INVALID;
+            final int skeleton = skip(id, 0);
+            if (skeleton < 0) return skeleton;
+            if (skeleton >= windowLength) return eof ? INVALID : NEED_MORE;
+            return (window[skeleton] & 0xff) == INDEFINITE_ARRAY ? 0 : INVALID;
+        }
+    }
+
+    private int major(int pos) {
+        return (window[pos] & 0xff) >>> 5;
+    }
+
+    /**
+     * Bounds-checked version of {@link CborBytes#skipItem(byte[], int)} that rejects malformed items.
+     * @return position after the item, {@link #NEED_MORE} if it extends beyond the window, or {@link #INVALID}
+     */
+    private int skip(int pos, int depth) {
+        if (depth > MAX_NESTING) return INVALID;
+        if (pos >= windowLength) return eof ? INVALID : NEED_MORE;
+        final int initial = window[pos] & 0xff;
+        final int major = initial >>> 5;
+        final int info = initial & 0x1f;
+        if (info > 27 && info != 31) return INVALID;
+        final int headLength = CborBytes.headLength(info);
+        if (pos + headLength > windowLength) return eof ? INVALID : NEED_MORE;
+        final long argument = info == 31 ? 0 : CborBytes.headArgument(window, pos);
+        final boolean indefinite = info == 31;
+        pos += headLength;
+
+        switch (major) {
+            case 0:
+            case 1:
+                return indefinite ? INVALID : pos;
+            case 2:
+            case 3:
+                if (indefinite) return skipUntilBreak(pos, depth, major);
+                if (argument < 0 || argument > fileLength - (windowOffset + pos)) return INVALID;
+                return pos + argument > windowLength ? (eof ? INVALID : NEED_MORE) : pos + (int) argument;
+            case 4:
+            case 5: {
+                if (indefinite) return skipUntilBreak(pos, depth, -1);
+                final long count = major == 5 ? 2 * argument : argument;
+                if (count < 0 || count > fileLength - (windowOffset + pos)) return INVALID;
+                for (long i = 0; i < count; i++) {
+                    pos = skip(pos, depth + 1);
+                    if (pos < 0) return pos;
+                }
+                return pos;
+            }
+            case 6:
+                return indefinite ? INVALID : skip(pos, depth + 1);
+            default:
+                // simple values; a break at this position is not an item
+                return initial == BREAK ? INVALID : pos;
+        }
+    }
+
+    /**
+     * Skip the elements of an indefinite-length item and its break.
+     * @param chunkMajor required major type of string chunks, or -1 for arrays and maps
+     */
+    private int skipUntilBreak(int pos, int depth, int chunkMajor) {
+        while (true) {
+            if (pos >= windowLength) return eof ? INVALID : NEED_MORE;
+            if ((window[pos] & 0xff) == BREAK) return pos + 1;
+            if (chunkMajor >= 0 && major(pos) != chunkMajor) return INVALID;
+            pos = skip(pos, depth + 1);
+            if (pos < 0) return pos;
+        }
+    }
+}
@@ -0,0 +1,313 @@
+package edu.unh.cs.treccar_v2.read_data;
+
+import edu.unh.cs.treccar_v2.Data;
+import edu.unh.cs.treccar_v2.Header;
+
+import java.io.*;
+import java.nio.file.*;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+/**
+ * Reads several CAR files (e.g. all folds of a release) as one stream of pages or paragraphs.
+ *
+ * Headers are checked up front: all files must have the same file type and data release. Each file is then read
+ * and decoded by its own task on a thread pool, handing items over through bounded queues, so at most
+ * numThreads files are decoded at once and memory stays bounded. Items are returned either file by file in the
+ * given order ({@link Order#FILE_ORDER}), or in whatever order the tasks produce them ({@link Order#INTERLEAVED}).
+ *
+ * A source can be iterated once. Errors of the reader tasks are rethrown by the iterator, I/O errors as
+ * {@link UncheckedIOException}.
+ */
+public final class MultiFileSource<T> implements Iterable<T>, Closeable {
+    private static final int QUEUE_CAPACITY = 256;
+
+    public enum Order {
+        FILE_ORDER,
+        INTERLEAVED
+    }
+
+    private interface Decoder<T> {
+        Iterator<T> open(InputStream inputStream);
+    }
+
+    /** marks the end of a file, or a failure while reading it */
+    private static final class Signal {
+        final Throwable error;
+
+        Signal(Throwable error) {
+            this.error = error;
+        }
+    }
+
+    private static final Signal END = new Signal(null);
+
+    private final List<File> files;
+    private final List<Header.TrecCarHeader> headers;
+    private final Order order;
+    private final int numThreads;
+    private final Decoder<T> decoder;
+    private ExecutorService executor = null;
+
+    private MultiFileSource(boolean paragraphs, List<File> files, Order order, int numThreads, Decoder<T> decoder) throws IOException {
+        if (files.isEmpty()) {
+            throw new FileNotFoundException("No input files.");
+        }
+        this.files = Collections.unmodifiableList(new ArrayList<>(files));
+        this.order = order;
+        this.numThreads = numThreads;
+        this.decoder = decoder;
+        this.headers = readHeaders(this.files);
+        for (Header.TrecCarHeader header : headers) {
+            if (header != null && (header.getFileType() == Header.FileType.ParagraphsFile) != paragraphs) {
+                throw new CborFileTypeException("Expected " + (paragraphs ? "a paragraphs file" : "pages or outlines files") + ", but input is of file type " + header.getFileType());
+            }
+        }
+    }
+
+    public static MultiFileSource<Data.Page> pages(List<File> files, Order order, int numThreads) throws IOException {
+        return new MultiFileSource<>(false, files, order, numThreads, new Decoder<Data.Page>() {
+            @Override
+            public Iterator<Data.Page> open(InputStream inputStream) {
+                return DeserializeData.iterAnnotations(inputStream);
+            }
+        });
+    }
+
+    public static MultiFileSource<Data.Paragraph> paragraphs(List<File> files, Order order, int numThreads) throws IOException {
+        return new MultiFileSource<>(true, files, order, numThreads, new Decoder<Data.Paragraph>() {
+            @Override
+            public Iterator<Data.Paragraph> open(InputStream inputStream) {
+                return DeserializeData.iterParagraphs(inputStream);
+            }
+        });
+    }
+
+    /**
+     * Input files for a path: all *.cbor files of a directory, the files matching a glob in the last path
+     * component (e.g. {@code benchmarkY1/fold-*-train.pages.cbor}), or the file itself; sorted by name.
+     */
+    public static List<File> resolve(String path) throws IOException {
+        final File file = new File(path);
+        final File directory;
+        final PathMatcher matcher;
+        if (file.isDirectory()) {
+            directory = file;
+            matcher = FileSystems.getDefault().getPathMatcher("glob:*.cbor");
+        } else if (file.exists()) {
+            return Collections.singletonList(file);
+        } else {
+            directory = file.getAbsoluteFile().getParentFile();
+            matcher = FileSystems.getDefault().getPathMatcher("glob:" + file.getName());
+        }
+
+        final List<File> result = new ArrayList<>();
+        final File[] candidates = directory.listFiles();
+        if (candidates != null) {
+            for (File candidate : candidates) {
+                if (candidate.isFile() && matcher.matches(Paths.get(candidate.getName()))) {
+                    result.add(candidate);
+                }
+            }
+        }
+        if (result.isEmpty()) {
+            throw new FileNotFoundException("No CAR files match " + path);
+        }
+        Collections.sort(result);
+        return result;
+    }
+
+    /**
+     * Headers of the files, in order (null for files without header).
+     * @throws CborFileTypeException if two headers differ in file type or data release
+     */
+    public static List<Header.TrecCarHeader> readHeaders(List<File> files) throws IOException {
+        final List<Header.TrecCarHeader> headers = new ArrayList<>(files.size());
+        Header.TrecCarHeader first = null;
+        File firstFile = null;
+        for (File file : files) {
+            final Header.TrecCarHeader header;
+            try (RawItemReader reader = new RawItemReader(new FileInputStream(file))) {
+                header = reader.getHeader();
+            }
+            if (header != null) {
+                if (first == null) {
+                    first = header;
+                    firstFile = file;
+                } else if (header.getFileType() != first.getFileType()
+                        || !Objects.equals(header.getProvenance().getDataReleaseName(), first.getProvenance().getDataReleaseName())) {
+                    throw new CborFileTypeException("Incompatible headers: " + file + " is a " + header.getFileType()
+                            + " of " + header.getProvenance().getDataReleaseName() + ", but " + firstFile + " is a "
+                            + first.getFileType() + " of " + first.getProvenance().getDataReleaseName());
+                }
+            }
+            headers.add(header);
+        }
+        return Collections.unmodifiableList(headers);
+    }
+
+    public List<File> getFiles() {
+        return files;
+    }
+
+    /**
+     * Headers of all files, in file order (null for legacy files without header).
+     */
+    public List<Header.TrecCarHeader> getHeaders() {
+        return headers;
+    }
+
+    @Override
+    public synchronized Iterator<T> iterator() {
+        if (executor != null) {
+            throw new IllegalStateException("A MultiFileSource can only be iterated once.");
+        }
+        executor = Executors.newFixedThreadPool(Math.min(numThreads, files.size()), new ThreadFactory() {
+            @Override
+            public Thread newThread(Runnable r) {
+                final Thread thread = new Thread(r, "car-file-reader");
+                thread.setDaemon(true);
+                return thread;
+            }
+        });
+
+        final List<BlockingQueue<Object>> queues = new ArrayList<>(files.size());
+        final BlockingQueue<Object> shared = order == Order.INTERLEAVED ? new ArrayBlockingQueue<Object>(QUEUE_CAPACITY) : null;
+        for (final File file : files) {
+            final BlockingQueue<Object> queue = shared != null ? shared : new ArrayBlockingQueue<Object>(QUEUE_CAPACITY);
+            queues.add(queue);
+            executor.submit(new FileTask(file, queue));
+        }
+        return new QueueIterator(shared != null ? Collections.singletonList(shared) : queues, files.size());
+    }
+
+    /**
+     * Sequential stream over all items; closing the stream stops the reader tasks.
+     */
+    public Stream<T> stream() {
+        return StreamSupport.stream(spliterator(), false).onClose(new Runnable() {
+            @Override
+            public void run() {
+                close();
+            }
+        });
+    }
+
+    @Override
+    public Spliterator<T> spliterator() {
+        return Spliterators.spliteratorUnknownSize(iterator(), Spliterator.NONNULL | (order == Order.FILE_ORDER ? Spliterator.ORDERED : 0));
+    }
+
+    /**
+     * Stop all reader tasks.
+     */
+    @Override
+    public synchronized void close() {
+        if (executor != null) {
+            executor.shutdownNow();
+        }
+    }
+
+    private final class FileTask implements Runnable {
+        private final File file;
+        private final BlockingQueue<Object> queue;
+
+        FileTask(File file, BlockingQueue<Object> queue) {
+            this.file = file;
+            this.queue = queue;
+        }
+
+        /**
+         * Always signals the end of the file, also after an {@link Error}, since the consumer waits for it.
+         */
+        @Override
+        public void run() {
+            Throwable error = null;
+            boolean closed = false;
+            try (InputStream inputStream = new BufferedInputStream(new FileInputStream(file), 1 << 16)) {
+                final Iterator<T> items = decoder.open(inputStream);
+                while (items.hasNext()) {
+                    queue.put(items.next());
+                }
+            } catch (InterruptedException e) {
+                // source was closed, nobody waits for the signal
+                closed = true;
+            } catch (IOException e) {
+                error = new UncheckedIOException("Cannot read " + file, e);
+            } catch (Throwable e) {
+                error = e;
+            } finally {
+                if (!closed) {
+                    try {
+                        queue.put(error == null ? END : new Signal(error));
+                    } catch (InterruptedException e) {
+                        // source was closed
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * Drains the queues one after the other, until every file has signalled its end.
+     */
+    private final class QueueIterator implements Iterator<T> {
+        private final List<BlockingQueue<Object>> queues;
+        private int remainingFiles;
+        private int queueIndex = 0;
+        private T next = null;
+
+        QueueIterator(List<BlockingQueue<Object>> queues, int numFiles) {
+            this.queues = queues;
+            this.remainingFiles = numFiles;
+        }
+
+        @Override
+        @SuppressWarnings("unchecked")
+        public boolean hasNext() {
+            while (next == null && remainingFiles > 0) {
+                final Object element;
+                try {
+                    element = queues.get(queueIndex).take();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    throw new RuntimeException(e);
+                }
+                if (element instanceof Signal) {
+                    remainingFiles--;
+                    if (queues.size() > 1) queueIndex++;
+                    final Throwable error = ((Signal) element).error;
+                    if (error != null) {
+                        close();
+                        if (error instanceof Error) throw (Error) error;
+                        if (error instanceof RuntimeException) throw (RuntimeException) error;
+                        throw new RuntimeException(error);
+                    }
+                } else {
+                    next = (T) element;
+                }
+            }
+            if (next == null) {
+                close();
+            }
+            return next != null;
+        }
+
+        @Override
+        public T next() {
+            if (!hasNext()) {
+                throw new NoSuchElementException();
+            }
+            final T result = next;
+            next = null;
+            return result;
+        }
+
+        @Override
+        public void remove() {
+            throw new UnsupportedOperationException("Read-only iterator.");
+        }
+    }
+}
@@ -0,0 +1,346 @@
+package edu.unh.cs.treccar_v2.read_data;
+
+import co.nstant.in.cbor.CborDecoder;
+import co.nstant.in.cbor.CborException;
+import edu.unh.cs.treccar_v2.Header;
+
+import java.io.*;
+import java.util.Arrays;
+
+/**
+ * Reads the items of a TREC CAR file as raw CBOR bytes, without decoding them.
+ *
+ * Item boundaries are found by parsing only the CBOR heads, which is much cheaper than building a DataItem tree.
+ * Use {@link CborBytes} to inspect ids of raw items, and {@link DeserializeData#pageFromBytes(byte[])} or
+ * {@link DeserializeData#paragraphFromBytes(byte[])} to decode them.
+ */
+public final class RawItemReader implements Closeable {
+    private static final int BREAK = 0xff;
+    private static final int INDEFINITE_ARRAY = 0x9f;
+
+    private final InputStream inputStream;
+    private final byte[] input = new byte[1 << 16];
+    private int inputPos = 0;
+    private int inputLimit = 0;
+    private long position;
+
+    private byte[] item = new byte[1 << 12];
+    private int itemLength = 0;
+
+    private final Header.TrecCarHeader header;
+    private final byte[] headerBytes;
+    private final long dataOffset;
+    private final boolean inArray;
+    private byte[] pending = null;
+    private long pendingOffset;
+    private long itemOffset = -1;
+    private long itemCount = 0;
+    private boolean finished = false;
+
+    /**
+     * Read the header (if any) from the beginning of the stream.
+     */
+    public RawItemReader(InputStream inputStream) throws IOException {
+        this(inputStream, "CAR");
+    }
+
+    /**
+     * @param magicWord first element of the header, to read other files with the same framing (see {@link DeltaFileReader})
+     */
+    RawItemReader(InputStream inputStream, String magicWord) throws IOException {
+        this.inputStream = inputStream;
+        this.position = 0;
+        final byte[] first = readItem();
+        if (first == null) {
+            throw new EOFException("Empty CBOR input");
+        }
+        Header.TrecCarHeader header = null;
+        try {
+            header = DeserializeData.headerFromCbor(new CborDecoder(new ByteArrayInputStream(first)).decodeNext(), magicWord);
+        } catch (Header.InvalidHeaderException | ClassCastException e) {
+            // there is no header
+        } catch (CborException e) {
+            throw new CborRuntimeException(e);
+        }
+
+        this.header = header;
+        this.headerBytes = header != null ? first : null;
+        if (header != null) {
+            if (peekByte() != INDEFINITE_ARRAY) {
+                throw new IOException("Expected indefinite array of items after header");
+            }
+            readByte();
+            this.inArray = true;
+        } else {
+            // legacy files without header are a plain sequence of items
+            this.pending = first;
+            this.pendingOffset = 0;
+            this.inArray = false;
+        }
+        this.dataOffset = header != null ? position : 0;
+    }
+
+    /**
+     * Continue reading items in the middle of a file, e.g. from a checkpoint or the beginning of a shard.
+     *
+     * @param inputStream stream positioned at the first item to read
+     * @param header header of the file (may be null for legacy files without header)
+     * @param position byte offset of the stream in the original file, used to report item offsets
+     */
+    public RawItemReader(InputStream inputStream, Header.TrecCarHeader header, long position) {
+        this.inputStream = inputStream;
+        this.header = header;
+        this.headerBytes = null;
+        this.position = position;
+        this.dataOffset = position;
+        this.inArray = header != null;
+    }
+
+    /**
+     * Continue reading items from a checkpoint; item ordinals and offsets continue from the checkpoint.
+     *
+     * @param inputStream stream positioned at {@link Checkpoint#getOffset()}
+     * @param header header of the file (may be null for legacy files without header)
+     */
+    public RawItemReader(InputStream inputStream, Header.TrecCarHeader header, Checkpoint checkpoint) {
+        this(inputStream, header, checkpoint.getOffset());
+        this.itemCount = checkpoint.getOrdinal();
+    }
+
+    /**
+     * Resume reading a file from a checkpoint, without parsing the items before it.
+     * The header is read from the beginning of the file.
+     */
+    public static RawItemReader resume(File file, Checkpoint checkpoint) throws IOException {
+        final Header.TrecCarHeader header;
+        final long dataOffset;
+        try (RawItemReader headerReader = new RawItemReader(new BufferedInputStream(new FileInputStream(file), 1 << 12))) {
+            header = headerReader.getHeader();
+            dataOffset = headerReader.getDataOffset();
+        }
+        if (checkpoint.getOffset() < dataOffset) {
+            throw new IOException("Checkpoint offset " + checkpoint.getOffset() + " lies within the header of " + file);
+        }
+        return resume(file, header, checkpoint);
+    }
+
+    /**
+     * Resume reading a file from a checkpoint, with the header taken from the original file, e.g. when the
+     * header was already read at the start of the pass.
+     *
+     * @param header header of the file (may be null for legacy files without header)
+     */
+    public static RawItemReader resume(File file, Header.TrecCarHeader header, Checkpoint checkpoint) throws IOException {
+        if (checkpoint.getOffset() > file.length()) {
+            throw new IOException("Checkpoint offset " + checkpoint.getOffset() + " lies beyond the end of " + file);
+        }
+        final FileInputStream inputStream = new FileInputStream(file);
+        try {
+            inputStream.getChannel().position(checkpoint.getOffset());
+        } catch (IOException e) {
+            inputStream.close();
+            throw e;
+        }
+        return new RawItemReader(inputStream, header, checkpoint);
+    }
+
+    public Header.TrecCarHeader getHeader() {
+        return header;
+    }
+
+    /**
+     * Header exactly as encoded in the file, to copy it without re-encoding (which would lose fields that are not
+     * decoded and may change the framing).
+     * @return encoded header, or null if the file has none or reading did not start at the beginning of the file
+     */
+    public byte[] getHeaderBytes() {
+        return headerBytes != null ? headerBytes.clone() : null;
+    }
+
+    /**
+     * Byte offset of the first item, directly after the header.
+     */
+    public long getDataOffset() {
+        return dataOffset;
+    }
+
+    /**
+     * Byte offset of the item returned by the last call to {@link #next()}.
+     */
+    public long getItemOffset() {
+        return itemOffset;
+    }
+
+    /**
+     * Byte offset of the next item (or of the end of the item array).
+     */
+    public long getPosition() {
+        return pending != null ? pendingOffset : position;
+    }
+
+    /**
+     * Number of items returned so far, counting from the start of the file when resumed from a checkpoint.
+     */
+    public long getItemCount() {
+        return itemCount;
+    }
+
+    /**
+     * Checkpoint after the item returned by the last call to {@link #next()}, from which reading can be resumed
+     * with the next item.
+     */
+    public Checkpoint getCheckpoint() {
+        return new Checkpoint(getPosition(), itemCount);
+    }
+
+    /**
+     * @return raw bytes of the next item, or null when all items have been read
+     */
+    public byte[] next() throws IOException {
+        if (pending != null) {
+            final byte[] result = pending;
+            itemOffset = pendingOffset;
+            pending = null;
+            itemCount++;
+            return result;
+        }
+        if (finished) {
+            return null;
+        }
+        final int b = peekByte();
+        if (b < 0 || b == BREAK) {
+            if (b == BREAK) readByte();
+            finished = true;
+            return null;
+        }
+        itemOffset = position;
+        final byte[] result = readItem();
+        itemCount++;
+        return result;
+    }
+
+    private byte[] readItem() throws IOException {
+        if (peekByte() < 0) {
+            return null;
+        }
+        itemLength = 0;
+        copyItem();
+        return Arrays.copyOf(item, itemLength);
+    }
+
+    private void copyItem() throws IOException {
+        final int initial = readByteOrFail();
+        append(initial);
+        final int major = initial >>> 5;
+        final int info = initial & 0x1f;
+        long argument = info;
+        if (info >= 24 && info <= 27) {
+            argument = 0;
+            for (int i = CborBytes.headLength(info) - 1; i > 0; i--) {
+                final int b = readByteOrFail();
+                append(b);
+                argument = (argument << 8) | b;
+            }
+        } else if (info > 27 && info != 31) {
+            throw new IOException("Invalid CBOR additional info " + info + " at offset " + (position - 1));
+        }
+        final boolean indefinite = info == 31;
+
+        switch (major) {
+            case 2:
+            case 3:
+                if (indefinite) {
+                    copyUntilBreak();
+                } else {
+                    copyBytes(argument);
+                }
+                break;
+            case 4:
+            case 5:
+                if (indefinite) {
+                    copyUntilBreak();
+                } else {
+                    final long count = major == 5 ? 2 * argument : argument;
+                    for (long i = 0; i < count; i++) copyItem();
+                }
+                break;
+            case 6:
+                copyItem();
+                break;
+            default:
+                // integers and simple values carry everything in their head
+        }
+    }
+
+    private void copyUntilBreak() throws IOException {
+        while (true) {
+            final int b = peekByte();
+            if (b < 0) throw new EOFException("Truncated CBOR item at offset " + position);
+            if (b == BREAK) {
+                append(readByte());
+                return;
+            }
+            copyItem();
+        }
+    }
+
+    private void copyBytes(long count) throws IOException {
+        if (count > Integer.MAX_VALUE - itemLength) {
+            throw new IOException("CBOR item too large at offset " + position);
+        }
+        ensureItemCapacity((int) count);
+        long remaining = count;
+        while (remaining > 0) {
+            if (inputPos == inputLimit && !fill()) {
+                throw new EOFException("Truncated CBOR item at offset " + position);
+            }
+            final int n = (int) Math.min(remaining, inputLimit - inputPos);
+            System.arraycopy(input, inputPos, item, itemLength, n);
+            inputPos += n;
+            itemLength += n;
+            position += n;
+            remaining -= n;
+        }
+    }
+
+    private void append(int b) {
+        ensureItemCapacity(1);
+        item[itemLength++] = (byte) b;
+    }
+
+    private void ensureItemCapacity(int extra) {
+        if (item.length - itemLength < extra) {
+            item = Arrays.copyOf(item, Math.max(item.length * 2, itemLength + extra));
+        }
+    }
+
+    private boolean fill() throws IOException {
+        final int n = inputStream.read(input, 0, input.length);
+        if (n <= 0) return false;
+        inputPos = 0;
+        inputLimit = n;
+        return true;
+    }
+
+    private int peekByte() throws IOException {
+        if (inputPos == inputLimit && !fill()) return -1;
+        return input[inputPos] & 0xff;
+    }
+
+    private int readByte() throws IOException {
+        if (inputPos == inputLimit && !fill()) return -1;
+        position++;
+        return input[inputPos++] & 0xff;
+    }
+
+    private int readByteOrFail() throws IOException {
+        final int b = readByte();
+        if (b < 0) throw new EOFException("Truncated CBOR item at offset " + position);
+        return b;
+    }
+
+    @Override
+    public void close() throws IOException {
+        inputStream.close();
+    }
+}
@@ -1,10 +1,11 @@
 package edu.unh.cs.treccar_v2.read_data;
 
 import edu.unh.cs.treccar_v2.Data;
+import edu.unh.cs.treccar_v2.export.PageRenderer;
+import edu.unh.cs.treccar_v2.export.RenderFormat;
 
-import java.io.File;
-import java.io.FileInputStream;
-import java.util.List;
+import java.io.*;
+import java.nio.charset.StandardCharsets;
 
 /**
  * User: dietz
@@ -13,7 +14,8 @@ import java.util.List;
  */
 public class ReadDataTest {
     public static void usage() {
-        System.out.println("Command line parameters: (header|pages|outlines|paragraphs) FILE");
+        System.out.println("Command line parameters: (header|pages|outlines|paragraphs) FILE [FORMAT]");
+        System.out.println("FORMAT is one of jsonl, markdown, text; by default items are printed with toString().");
         System.exit(-1);
     }
 
@@ -24,6 +26,11 @@ public class ReadDataTest {
             usage();
 
         String mode = args[0];
+        if (args.length > 2) {
+            render(mode, args[1], RenderFormat.fromName(args[2]).getRenderer());
+            return;
+        }
+
         if (mode.equals("header")) {
             final String pagesFile = args[1];
             final FileInputStream fileInputStream = new FileInputStream(new File(pagesFile));
@@ -41,8 +48,8 @@ public class ReadDataTest {
             final String pagesFile = args[1];
             final FileInputStream fileInputStream3 = new FileInputStream(new File(pagesFile));
             for(Data.Page page: DeserializeData.iterableAnnotations(fileInputStream3)) {
-                for (List<Data.Section> sectionPath : page.flatSectionPaths()){
-                    System.out.println(Data.sectionPathId(page.getPageId(), sectionPath)+"   \t "+Data.sectionPathHeadings(sectionPath));
+                for (Data.SectionPath sectionPath : page.iterableSectionPaths()){
+                    System.out.println(sectionPath.getSectionPathId()+"   \t "+sectionPath.getHeadings());
                 }
                 System.out.println();
             }
@@ -66,4 +73,23 @@ public class ReadDataTest {
 //        }
     }
 
+    private static void render(String mode, String file, PageRenderer renderer) throws IOException {
+        final Writer out = new BufferedWriter(new OutputStreamWriter(System.out, StandardCharsets.UTF_8), 1 << 16);
+        try (FileInputStream fileInputStream = new FileInputStream(new File(file))) {
+            if (mode.equals("header")) {
+                renderer.renderHeader(DeserializeData.getTrecCarHeader(fileInputStream), out);
+            } else if (mode.equals("pages") || mode.equals("outlines")) {
+                for (Data.Page page : DeserializeData.iterableAnnotations(fileInputStream)) {
+                    renderer.renderPage(page, out);
+                }
+            } else if (mode.equals("paragraphs")) {
+                for (Data.Paragraph p : DeserializeData.iterableParagraphs(fileInputStream)) {
+                    renderer.renderParagraph(p, out);
+                }
+            } else {
+                usage();
+            }
+        }
+        out.flush();
+    }
 }
@@ -0,0 +1,266 @@
+package edu.unh.cs.treccar_v2.read_data;
+
+import edu.unh.cs.treccar_v2.Data;
+import edu.unh.cs.treccar_v2.Header;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.util.*;
+import java.util.zip.CRC32;
+
+/**
+ * Manifest of a CAR file that was split into shards (see {@link edu.unh.cs.treccar_v2.tools.ShardCarFile}).
+ *
+ * Each shard is a valid CAR file on its own. The manifest records shard paths (relative to the manifest),
+ * item counts, sizes, first and last item id, and a CRC32 checksum, and can open all shards as one logical source.
+ */
+public final class ShardManifest {
+    private static final String MAGIC = "# trec-car shard manifest";
+    private static final String COLUMNS = "path\titems\tbytes\tfirstKey\tlastKey\tcrc32";
+
+    public static final class Shard {
+        private final String path;
+        private final long itemCount;
+        private final long byteSize;
+        private final String firstKey;
+        private final String lastKey;
+        private final long crc32;
+
+        public Shard(String path, long itemCount, long byteSize, String firstKey, String lastKey, long crc32) {
+            this.path = path;
+            this.itemCount = itemCount;
+            this.byteSize = byteSize;
+            this.firstKey = firstKey;
+            this.lastKey = lastKey;
+            this.crc32 = crc32;
+        }
+
+        /**
+         * Path of the shard file, relative to the manifest.
+         */
+        public String getPath() {
+            return path;
+        }
+
+        public long getItemCount() {
+            return itemCount;
+        }
+
+        public long getByteSize() {
+            return byteSize;
+        }
+
+        /**
+         * Id of the first page or paragraph in this shard, or "" if the shard is empty.
+         */
+        public String getFirstKey() {
+            return firstKey;
+        }
+
+        /**
+         * Id of the last page or paragraph in this shard, or "" if the shard is empty.
+         */
+        public String getLastKey() {
+            return lastKey;
+        }
+
+        public long getCrc32() {
+            return crc32;
+        }
+
+        @Override
+        public String toString() {
+            return "Shard{" +
+                    "path='" + path + '\'' +
+                    ", itemCount=" + itemCount +
+                    ", byteSize=" + byteSize +
+                    ", firstKey='" + firstKey + '\'' +
+                    ", lastKey='" + lastKey + '\'' +
+                    ", crc32=" + Long.toHexString(crc32) +
+                    '}';
+        }
+    }
+
+    private final File directory;
+    private final Header.FileType fileType;
+    private final List<Shard> shards;
+
+    public ShardManifest(File directory, Header.FileType fileType, List<Shard> shards) {
+        this.directory = directory;
+        this.fileType = fileType;
+        this.shards = Collections.unmodifiableList(new ArrayList<>(shards));
+    }
+
+    public static ShardManifest load(File manifestFile) throws IOException {
+        try (BufferedReader reader = new BufferedReader(new InputStreamReader(new FileInputStream(manifestFile), StandardCharsets.UTF_8))) {
+            if (!MAGIC.equals(reader.readLine())) {
+                throw new IOException("Not a shard manifest: " + manifestFile);
+            }
+            final String fileTypeLine = reader.readLine();
+            if (fileTypeLine == null || !fileTypeLine.startsWith("fileType\t")) {
+                throw new IOException("Missing file type in shard manifest " + manifestFile);
+            }
+            final String fileTypeName = fileTypeLine.substring("fileType\t".length());
+            final Header.FileType fileType = fileTypeName.isEmpty() ? null : Header.FileType.valueOf(fileTypeName);
+            if (!COLUMNS.equals(reader.readLine())) {
+                throw new IOException("Unexpected columns in shard manifest " + manifestFile);
+            }
+
+            final List<Shard> shards = new ArrayList<>();
+            String line;
+            while ((line = reader.readLine()) != null) {
+                if (line.isEmpty()) continue;
+                final String[] fields = line.split("\t", -1);
+                shards.add(new Shard(fields[0], Long.parseLong(fields[1]), Long.parseLong(fields[2]), fields[3], fields[4], Long.parseLong(fields[5], 16)));
+            }
+            return new ShardManifest(manifestFile.getAbsoluteFile().getParentFile(), fileType, shards);
+        }
+    }
+
+    public void save(File manifestFile) throws IOException {
+        try (Writer writer = new OutputStreamWriter(new FileOutputStream(manifestFile), StandardCharsets.UTF_8)) {
+            writer.write(MAGIC + "\n");
+            writer.write("fileType\t" + (fileType != null ? fileType.name() : "") + "\n");
+            writer.write(COLUMNS + "\n");
+            for (Shard shard : shards) {
+                writer.write(shard.getPath() + "\t" + shard.getItemCount() + "\t" + shard.getByteSize() + "\t"
+                        + shard.getFirstKey() + "\t" + shard.getLastKey() + "\t" + Long.toHexString(shard.getCrc32()) + "\n");
+            }
+        }
+    }
+
+    public Header.FileType getFileType() {
+        return fileType;
+    }
+
+    public List<Shard> getShards() {
+        return shards;
+    }
+
+    public long getItemCount() {
+        long count = 0;
+        for (Shard shard : shards) count += shard.getItemCount();
+        return count;
+    }
+
+    public File getShardFile(Shard shard) {
+        return new File(directory, shard.getPath());
+    }
+
+    /**
+     * Check size and checksum of every shard file.
+     * @throws IOException if a shard is missing or does not match the manifest
+     */
+    public void verify() throws IOException {
+        final byte[] buffer = new byte[1 << 16];
+        for (Shard shard : shards) {
+            final File file = getShardFile(shard);
+            if (file.length() != shard.getByteSize()) {
+                throw new IOException("Shard " + file + " has " + file.length() + " bytes, manifest says " + shard.getByteSize());
+            }
+            final CRC32 crc = new CRC32();
+            try (InputStream in = new FileInputStream(file)) {
+                int n;
+                while ((n = in.read(buffer)) > 0) crc.update(buffer, 0, n);
+            }
+            if (crc.getValue() != shard.getCrc32()) {
+                throw new IOException("Checksum mismatch for shard " + file);
+            }
+        }
+    }
+
+    /**
+     * Iterator over the pages of all shards, in shard order.
+     */
+    public Iterator<Data.Page> iterAnnotations() {
+        return new ShardIterator<Data.Page>() {
+            @Override
+            protected Iterator<Data.Page> open(InputStream inputStream) {
+                return DeserializeData.iterAnnotations(inputStream);
+            }
+        };
+    }
+
+    public Iterable<Data.Page> iterableAnnotations() {
+        return new Iterable<Data.Page>() {
+            @Override
+            public Iterator<Data.Page> iterator() {
+                return iterAnnotations();
+            }
+        };
+    }
+
+    /**
+     * Iterator over the paragraphs of all shards, in shard order.
+     */
+    public Iterator<Data.Paragraph> iterParagraphs() {
+        return new ShardIterator<Data.Paragraph>() {
+            @Override
+            protected Iterator<Data.Paragraph> open(InputStream inputStream) {
+                return DeserializeData.iterParagraphs(inputStream);
+            }
+        };
+    }
+
+    public Iterable<Data.Paragraph> iterableParagraphs() {
+        return new Iterable<Data.Paragraph>() {
+            @Override
+            public Iterator<Data.Paragraph> iterator() {
+                return iterParagraphs();
+            }
+        };
+    }
+
+    /**
+     * Opens one shard at a time, closing it once it is exhausted.
+     */
+    private abstract class ShardIterator<T> implements Iterator<T> {
+        private int nextShard = 0;
+        private InputStream current = null;
+        private Iterator<T> iter = Collections.emptyIterator();
+
+        protected abstract Iterator<T> open(InputStream inputStream);
+
+        @Override
+        public boolean hasNext() {
+            while (!iter.hasNext()) {
+                closeCurrent();
+                if (nextShard >= shards.size()) {
+                    return false;
+                }
+                final File file = getShardFile(shards.get(nextShard++));
+                try {
+                    current = new BufferedInputStream(new FileInputStream(file), 1 << 16);
+                } catch (FileNotFoundException e) {
+                    throw new UncheckedIOException(e);
+                }
+                iter = open(current);
+            }
+            return true;
+        }
+
+        @Override
+        public T next() {
+            if (!hasNext()) {
+                throw new NoSuchElementException();
+            }
+            return iter.next();
+        }
+
+        private void closeCurrent() {
+            if (current != null) {
+                try {
+                    current.close();
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+                current = null;
+            }
+        }
+
+        @Override
+        public void remove() {
+            throw new UnsupportedOperationException("Read-only iterator.");
+        }
+    }
+}
@@ -0,0 +1,266 @@
+package edu.unh.cs.treccar_v2.read_data;
+
+import edu.unh.cs.treccar_v2.Data;
+import edu.unh.cs.treccar_v2.Header;
+
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Source of pages or paragraphs that many worker threads read from at once.
+ *
+ * Each worker uses its own {@link Cursor}. Cursors claim batches of items and decode them on the worker thread:
+ * with a {@link CarOffsetIndex}, a batch is claimed by advancing an atomic cursor and its bytes are fetched with one
+ * positional read, so workers never wait for each other. Without an index, batches of raw items are read under a
+ * lock, which only covers the cheap splitting of the input and not the decoding.
+ *
+ * Items are handed out in no particular order; {@link Cursor#getOrdinal()} tells the position of an item in the file.
+ */
+public final class SharedCarSource<T> implements Closeable {
+    public static final int DEFAULT_BATCH_SIZE = 64;
+
+    private interface Decoder<T> {
+        T decode(byte[] item);
+    }
+
+    private final Decoder<T> decoder;
+    private final Header.TrecCarHeader header;
+    private final int batchSize;
+
+    // with offset index
+    private final CarOffsetIndex index;
+    private final FileChannel channel;
+    private final AtomicLong nextOrdinal = new AtomicLong();
+
+    // without offset index
+    private final RawItemReader reader;
+    private long readerOrdinal = 0;
+
+    private SharedCarSource(File file, CarOffsetIndex index, boolean paragraphs, Decoder<T> decoder, int batchSize) throws IOException {
+        this.decoder = decoder;
+        this.batchSize = batchSize;
+        this.index = index;
+        if (index != null && index.getFileSize() != file.length()) {
+            throw new IOException("Offset index does not match " + file);
+        }
+
+        final RawItemReader headerReader = new RawItemReader(new BufferedInputStream(new FileInputStream(file), 1 << 16));
+        this.header = headerReader.getHeader();
+        if (header != null && (header.getFileType() == Header.FileType.ParagraphsFile) != paragraphs) {
+            headerReader.close();
+            throw new CborFileTypeException("Expected " + (paragraphs ? "a paragraphs file" : "a pages or outlines file") + ", but input is of file type " + header.getFileType());
+        }
+        if (index != null) {
+            headerReader.close();
+            this.reader = null;
+            this.channel = FileChannel.open(file.toPath(), StandardOpenOption.READ);
+        } else {
+            this.reader = headerReader;
+            this.channel = null;
+        }
+    }
+
+    private static final Decoder<Data.Page> PAGE_DECODER = new Decoder<Data.Page>() {
+        @Override
+        public Data.Page decode(byte[] item) {
+            return DeserializeData.pageFromBytes(item);
+        }
+    };
+
+    private static final Decoder<Data.Paragraph> PARAGRAPH_DECODER = new Decoder<Data.Paragraph>() {
+        @Override
+        public Data.Paragraph decode(byte[] item) {
+            return DeserializeData.paragraphFromBytes(item);
+        }
+    };
+
+    /**
+     * Shared source over a pages or outlines file, using the offset index next to it if there is an up-to-date one.
+     */
+    public static SharedCarSource<Data.Page> pages(File file) throws IOException {
+        return new SharedCarSource<>(file, CarOffsetIndex.loadIfValid(file), false, PAGE_DECODER, DEFAULT_BATCH_SIZE);
+    }
+
+    /**
+     * @param index offset index of the file, or null to read without index
+     */
+    public static SharedCarSource<Data.Page> pages(File file, CarOffsetIndex index, int batchSize) throws IOException {
+        return new SharedCarSource<>(file, index, false, PAGE_DECODER, batchSize);
+    }
+
+    public static SharedCarSource<Data.Paragraph> paragraphs(File file) throws IOException {
+        return new SharedCarSource<>(file, CarOffsetIndex.loadIfValid(file), true, PARAGRAPH_DECODER, DEFAULT_BATCH_SIZE);
+    }
+
+    public static SharedCarSource<Data.Paragraph> paragraphs(File file, CarOffsetIndex index, int batchSize) throws IOException {
+        return new SharedCarSource<>(file, index, true, PARAGRAPH_DECODER, batchSize);
+    }
+
+    public Header.TrecCarHeader getHeader() {
+        return header;
+    }
+
+    /**
+     * @return true if batches are claimed lock-free through an offset index
+     */
+    public boolean isIndexed() {
+        return index != null;
+    }
+
+    /**
+     * New cursor for one worker thread. Cursors must not be shared between threads.
+     */
+    public Cursor newCursor() {
+        return new Cursor();
+    }
+
+    public interface ItemHandler<T> {
+        void handle(T item, long ordinal) throws Exception;
+    }
+
+    /**
+     * Run numThreads workers, each with its own cursor, until all items have been handled.
+     */
+    public void forEachParallel(int numThreads, final ItemHandler<? super T> handler) throws IOException, InterruptedException {
+        final ExecutorService executor = Executors.newFixedThreadPool(numThreads);
+        try {
+            final List<Future<Void>> futures = new ArrayList<>(numThreads);
+            for (int i = 0; i < numThreads; i++) {
+                futures.add(executor.submit(new Callable<Void>() {
+                    @Override
+                    public Void call() throws Exception {
+                        final Cursor cursor = newCursor();
+                        T item;
+                        while ((item = cursor.next()) != null) {
+                            handler.handle(item, cursor.getOrdinal());
+                        }
+                        return null;
+                    }
+                }));
+            }
+            for (Future<Void> future : futures) {
+                try {
+                    future.get();
+                } catch (ExecutionException e) {
+                    if (e.getCause() instanceof IOException) throw (IOException) e.getCause();
+                    if (e.getCause() instanceof RuntimeException) throw (RuntimeException) e.getCause();
+                    throw new RuntimeException(e.getCause());
+                }
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    /**
+     * Batch of raw items: data[starts[i]] up to data[starts[i + 1]].
+     */
+    private static final class Batch {
+        long firstOrdinal;
+        byte[] data = new byte[0];
+        int[] starts = new int[0];
+        int count = 0;
+    }
+
+    private boolean claimIndexed(Batch batch) throws IOException {
+        final long first = nextOrdinal.getAndAdd(batchSize);
+        if (first >= index.getItemCount()) {
+            return false;
+        }
+        final int from = (int) first;
+        final int to = (int) Math.min(first + batchSize, index.getItemCount());
+        final long start = index.getOffset(from);
+        final int length = (int) (index.getEndOffset(to - 1) - start);
+
+        if (batch.data.length < length) batch.data = new byte[length];
+        final ByteBuffer buffer = ByteBuffer.wrap(batch.data, 0, length);
+        while (buffer.hasRemaining()) {
+            if (channel.read(buffer, start + buffer.position()) < 0) {
+                throw new EOFException("File is shorter than its offset index");
+            }
+        }
+        batch.firstOrdinal = first;
+        batch.count = to - from;
+        if (batch.starts.length < batch.count + 1) batch.starts = new int[batch.count + 1];
+        for (int i = 0; i <= batch.count; i++) {
+            batch.starts[i] = (int) ((i < batch.count ? index.getOffset(from + i) : index.getEndOffset(to - 1)) - start);
+        }
+        return true;
+    }
+
+    private boolean claimLocked(Batch batch) throws IOException {
+        final List<byte[]> items = new ArrayList<>(batchSize);
+        synchronized (reader) {
+            byte[] item;
+            while (items.size() < batchSize && (item = reader.next()) != null) {
+                items.add(item);
+            }
+            batch.firstOrdinal = readerOrdinal;
+            readerOrdinal += items.size();
+        }
+        if (items.isEmpty()) {
+            return false;
+        }
+        int length = 0;
+        for (byte[] item : items) length += item.length;
+        if (batch.data.length < length) batch.data = new byte[length];
+        if (batch.starts.length < items.size() + 1) batch.starts = new int[items.size() + 1];
+        int pos = 0;
+        for (int i = 0; i < items.size(); i++) {
+            batch.starts[i] = pos;
+            System.arraycopy(items.get(i), 0, batch.data, pos, items.get(i).length);
+            pos += items.get(i).length;
+        }
+        batch.starts[items.size()] = pos;
+        batch.count = items.size();
+        return true;
+    }
+
+    public final class Cursor {
+        private final Batch batch = new Batch();
+        private int pos = 0;
+        private long ordinal = -1;
+        private boolean exhausted = false;
+
+        private Cursor() {
+        }
+
+        /**
+         * @return next decoded item, or null when the source is exhausted
+         */
+        public T next() throws IOException {
+            if (pos >= batch.count) {
+                if (exhausted || !(index != null ? claimIndexed(batch) : claimLocked(batch))) {
+                    exhausted = true;
+                    return null;
+                }
+                pos = 0;
+            }
+            final int start = batch.starts[pos];
+            final byte[] item = new byte[batch.starts[pos + 1] - start];
+            System.arraycopy(batch.data, start, item, 0, item.length);
+            ordinal = batch.firstOrdinal + pos;
+            pos++;
+            return decoder.decode(item);
+        }
+
+        /**
+         * Position in the file (counted from 0) of the item returned by the last call to {@link #next()}.
+         */
+        public long getOrdinal() {
+            return ordinal;
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        if (channel != null) channel.close();
+        if (reader != null) reader.close();
+    }
+}
@@ -0,0 +1,406 @@
+package edu.unh.cs.treccar_v2.search;
+
+import edu.unh.cs.treccar_v2.Data;
+
+import java.util.*;
+
+/**
+ * Finds many keywords at once in paragraph text, case-insensitively, with an Aho-Corasick automaton.
+ *
+ * The automaton is built once from the keyword list; matching takes time linear in the length of the text (plus the
+ * number of hits), independent of the number of keywords. Text is case-folded character by character while it is
+ * scanned, and paragraphs are scanned body by body, so no lower-cased copy of {@link Data.Paragraph#getTextOnly()}
+ * is built. Hit positions are character offsets into {@link Data.Paragraph#getTextOnly()}.
+ *
+ * A matcher is immutable after construction and can be shared between threads.
+ */
+public final class KeywordMatcher {
+    private static final int ROOT = 0;
+    private static final long EMPTY = -1L;
+
+    /**
+     * Occurrence of a keyword in a text.
+     */
+    public static final class Hit {
+        private final String keyword;
+        private final int keywordIndex;
+        private final int start;
+        private final int end;
+
+        Hit(String keyword, int keywordIndex, int start, int end) {
+            this.keyword = keyword;
+            this.keywordIndex = keywordIndex;
+            this.start = start;
+            this.end = end;
+        }
+
+        public String getKeyword() {
+            return keyword;
+        }
+
+        /**
+         * Index into {@link KeywordMatcher#getKeywords()}.
+         */
+        public int getKeywordIndex() {
+            return keywordIndex;
+        }
+
+        /**
+         * Offset of the first character of the occurrence.
+         */
+        public int getStart() {
+            return start;
+        }
+
+        /**
+         * Offset directly after the occurrence.
+         */
+        public int getEnd() {
+            return end;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) return true;
+            if (!(o instanceof Hit)) return false;
+            Hit hit = (Hit) o;
+            return keywordIndex == hit.keywordIndex && start == hit.start && end == hit.end;
+        }
+
+        @Override
+        public int hashCode() {
+            return 31 * (31 * keywordIndex + start) + end;
+        }
+
+        @Override
+        public String toString() {
+            return "Hit{" +
+                    "keyword='" + keyword + '\'' +
+                    ", start=" + start +
+                    ", end=" + end +
+                    '}';
+        }
+    }
+
+    /**
+     * Paragraph of a page with its keyword hits.
+     */
+    public static final class ParagraphHits {
+        private final Data.Paragraph paragraph;
+        private final Data.SectionPath sectionPath;
+        private final List<Hit> hits;
+
+        ParagraphHits(Data.Paragraph paragraph, Data.SectionPath sectionPath, List<Hit> hits) {
+            this.paragraph = paragraph;
+            this.sectionPath = sectionPath;
+            this.hits = hits;
+        }
+
+        public Data.Paragraph getParagraph() {
+            return paragraph;
+        }
+
+        /**
+         * Sections enclosing the paragraph.
+         */
+        public Data.SectionPath getSectionPath() {
+            return sectionPath;
+        }
+
+        public List<Hit> getHits() {
+            return hits;
+        }
+    }
+
+    private final List<String> keywords;
+    // index of the empty keyword, or -1
+    private final int emptyKeyword;
+
+    // transitions (state, folded char) -> state, in an open-addressing table keyed by state << 16 | char
+    private final long[] transitionKeys;
+    private final int[] transitionTargets;
+    private final int transitionMask;
+
+    // per state
+    private final int[] fail;
+    private final int[] keywordAt;
+    private final int[] depth;
+    private final int[] outputLink;
+
+    /**
+     * @param keywords keywords to search for; keywords that only differ in case are only reported once, as the
+     *                 first of them. An empty keyword matches every text.
+     */
+    public KeywordMatcher(Collection<String> keywords) {
+        final TrieBuilder trie = new TrieBuilder();
+        final Set<String> folded = new HashSet<>();
+        final List<String> distinct = new ArrayList<>();
+        int empty = -1;
+        for (String keyword : keywords) {
+            final String key = fold(keyword);
+            if (!folded.add(key)) continue;
+            if (key.isEmpty()) {
+                empty = distinct.size();
+            } else {
+                trie.insert(key, distinct.size());
+            }
+            distinct.add(keyword);
+        }
+        this.keywords = Collections.unmodifiableList(distinct);
+        this.emptyKeyword = empty;
+
+        final int states = trie.size;
+        this.keywordAt = Arrays.copyOf(trie.keywordAt, states);
+        this.depth = Arrays.copyOf(trie.depth, states);
+        this.fail = new int[states];
+        this.outputLink = new int[states];
+
+        int capacity = 16;
+        while (capacity < 2 * states) capacity <<= 1;
+        this.transitionKeys = new long[capacity];
+        this.transitionTargets = new int[capacity];
+        this.transitionMask = capacity - 1;
+        Arrays.fill(transitionKeys, EMPTY);
+        for (int state = 1; state < states; state++) {
+            put(trie.parent[state], trie.label[state], state);
+        }
+
+        // breadth-first: failure links of a state only depend on states of smaller depth
+        outputLink[ROOT] = -1;
+        final int[] queue = new int[states];
+        int head = 0;
+        int tail = 0;
+        for (int child = trie.firstChild[ROOT]; child != 0; child = trie.nextSibling[child]) {
+            fail[child] = ROOT;
+            outputLink[child] = -1;
+            queue[tail++] = child;
+        }
+        while (head < tail) {
+            final int state = queue[head++];
+            for (int child = trie.firstChild[state]; child != 0; child = trie.nextSibling[child]) {
+                final char c = trie.label[child];
+                int f = fail[state];
+                int target;
+                while ((target = get(f, c)) < 0 && f != ROOT) {
+                    f = fail[f];
+                }
+                fail[child] = target >= 0 ? target : ROOT;
+                final int suffix = fail[child];
+                outputLink[child] = keywordAt[suffix] >= 0 ? suffix : outputLink[suffix];
+                queue[tail++] = child;
+            }
+        }
+    }
+
+    /**
+     * Trie of the folded keywords, with children as linked lists for the breadth-first traversal.
+     */
+    private static final class TrieBuilder {
+        int size = 1;
+        int[] parent = new int[16];
+        char[] label = new char[16];
+        int[] firstChild = new int[16];
+        int[] nextSibling = new int[16];
+        int[] keywordAt = filled(16);
+        int[] depth = new int[16];
+
+        private static int[] filled(int length) {
+            final int[] result = new int[length];
+            Arrays.fill(result, -1);
+            return result;
+        }
+
+        void insert(String key, int keywordIndex) {
+            int state = ROOT;
+            for (int i = 0; i < key.length(); i++) {
+                final char c = key.charAt(i);
+                int child = firstChild[state];
+                while (child != 0 && label[child] != c) child = nextSibling[child];
+                if (child == 0) {
+                    child = newState(state, c);
+                }
+                state = child;
+            }
+            keywordAt[state] = keywordIndex;
+        }
+
+        private int newState(int parentState, char c) {
+            if (size == parent.length) {
+                final int capacity = size * 2;
+                parent = Arrays.copyOf(parent, capacity);
+                label = Arrays.copyOf(label, capacity);
+                firstChild = Arrays.copyOf(firstChild, capacity);
+                nextSibling = Arrays.copyOf(nextSibling, capacity);
+                depth = Arrays.copyOf(depth, capacity);
+                final int old = keywordAt.length;
+                keywordAt = Arrays.copyOf(keywordAt, capacity);
+                Arrays.fill(keywordAt, old, capacity, -1);
+            }
+            final int state = size++;
+            parent[state] = parentState;
+            label[state] = c;
+            depth[state] = depth[parentState] + 1;
+            nextSibling[state] = firstChild[parentState];
+            firstChild[parentState] = state;
+            return state;
+        }
+    }
+
+    private static String fold(String s) {
+        final char[] chars = s.toCharArray();
+        for (int i = 0; i < chars.length; i++) chars[i] = Character.toLowerCase(chars[i]);
+        return new String(chars);
+    }
+
+    private static int slot(long key, int mask) {
+        long h = key * 0x9E3779B97F4A7C15L;
+        return (int) (h >>> 32) & mask;
+    }
+
+    private void put(int state, char c, int target) {
+        final long key = ((long) state << 16) | c;
+        int i = slot(key, transitionMask);
+        while (transitionKeys[i] != EMPTY) i = (i + 1) & transitionMask;
+        transitionKeys[i] = key;
+        transitionTargets[i] = target;
+    }
+
+    private int get(int state, char c) {
+        final long key = ((long) state << 16) | c;
+        int i = slot(key, transitionMask);
+        long k;
+        while ((k = transitionKeys[i]) != EMPTY) {
+            if (k == key) return transitionTargets[i];
+            i = (i + 1) & transitionMask;
+        }
+        return -1;
+    }
+
+    private int step(int state, char c) {
+        c = Character.toLowerCase(c);
+        while (true) {
+            final int next = get(state, c);
+            if (next >= 0) return next;
+            if (state == ROOT) return ROOT;
+            state = fail[state];
+        }
+    }
+
+    /**
+     * Distinct keywords, as given to the constructor.
+     */
+    public List<String> getKeywords() {
+        return keywords;
+    }
+
+    /**
+     * Scans consecutive pieces of text, carrying the automaton state across pieces.
+     */
+    private final class Scanner {
+        int state = ROOT;
+        int position = 0;
+        List<Hit> hits = null;
+
+        /**
+         * @param stopAtFirst return as soon as a keyword is found
+         * @return true if a keyword was found
+         */
+        boolean scan(CharSequence text, boolean stopAtFirst) {
+            if (text == null) return false;
+            boolean found = false;
+            for (int i = 0; i < text.length(); i++) {
+                state = step(state, text.charAt(i));
+                position++;
+                int output = keywordAt[state] >= 0 ? state : outputLink[state];
+                if (output < 0) continue;
+                if (stopAtFirst) return true;
+                found = true;
+                if (hits == null) hits = new ArrayList<>();
+                for (; output >= 0; output = outputLink[output]) {
+                    final int keywordIndex = keywordAt[output];
+                    hits.add(new Hit(keywords.get(keywordIndex), keywordIndex, position - depth[output], position));
+                }
+            }
+            return found;
+        }
+
+        boolean scan(Data.Paragraph paragraph, boolean stopAtFirst) {
+            for (Data.ParaBody body : paragraph.getBodies()) {
+                final String text = body instanceof Data.ParaLink
+                        ? ((Data.ParaLink) body).getAnchorText()
+                        : ((Data.ParaText) body).getText();
+                if (scan(text, stopAtFirst) && stopAtFirst) return true;
+            }
+            return hits != null;
+        }
+
+        List<Hit> result() {
+            final List<Hit> result = new ArrayList<>((hits != null ? hits.size() : 0) + 1);
+            if (emptyKeyword >= 0) {
+                result.add(new Hit(keywords.get(emptyKeyword), emptyKeyword, 0, 0));
+            }
+            if (hits != null) result.addAll(hits);
+            return result;
+        }
+    }
+
+    /**
+     * @return true if any keyword occurs in the text
+     */
+    public boolean matches(CharSequence text) {
+        return emptyKeyword >= 0 || new Scanner().scan(text, true);
+    }
+
+    /**
+     * @return true if any keyword occurs in the text of the paragraph (links replaced by their anchor text)
+     */
+    public boolean matches(Data.Paragraph paragraph) {
+        return emptyKeyword >= 0 || new Scanner().scan(paragraph, true);
+    }
+
+    /**
+     * All (possibly overlapping) occurrences of keywords in the text, ordered by end position.
+     */
+    public List<Hit> find(CharSequence text) {
+        final Scanner scanner = new Scanner();
+        scanner.scan(text, false);
+        return scanner.result();
+    }
+
+    /**
+     * All occurrences of keywords in the text of the paragraph, with offsets into {@link Data.Paragraph#getTextOnly()}.
+     */
+    public List<Hit> find(Data.Paragraph paragraph) {
+        final Scanner scanner = new Scanner();
+        scanner.scan(paragraph, false);
+        return scanner.result();
+    }
+
+    /**
+     * Paragraphs of the page (including list items, captions, and infobox values) in which keywords occur.
+     */
+    public List<ParagraphHits> find(Data.Page page) {
+        final List<ParagraphHits> result = new ArrayList<>();
+        page.accept(new Data.PageVisitor() {
+            @Override
+            public boolean visitPara(Data.Para para, Data.SectionPath path) {
+                add(para.getParagraph(), path);
+                return false;
+            }
+
+            @Override
+            public boolean visitListItem(Data.ListItem listItem, Data.SectionPath path) {
+                add(listItem.getBodyParagraph(), path);
+                return false;
+            }
+
+            private void add(Data.Paragraph paragraph, Data.SectionPath path) {
+                final List<Hit> hits = find(paragraph);
+                if (!hits.isEmpty()) {
+                    result.add(new ParagraphHits(paragraph, path, hits));
+                }
+            }
+        });
+        return result;
+    }
+}
@@ -0,0 +1,92 @@
+package edu.unh.cs.treccar_v2.tools;
+
+import edu.unh.cs.treccar_v2.Header;
+import edu.unh.cs.treccar_v2.read_data.BlockCompressedFile;
+import edu.unh.cs.treccar_v2.read_data.BlockIndex;
+import edu.unh.cs.treccar_v2.read_data.CborFileTypeException;
+import edu.unh.cs.treccar_v2.read_data.RawItemReader;
+import edu.unh.cs.treccar_v2.write_data.BlockCompressedWriter;
+import edu.unh.cs.treccar_v2.write_data.CarFileWriter;
+
+import java.io.*;
+import java.util.Iterator;
+import java.util.zip.Deflater;
+
+/**
+ * Convert between plain and block-compressed CAR files (see {@link BlockCompressedFile}), and rebuild block indexes.
+ *
+ * Compression writes the container and its index FILE.blocks. The header and items are copied as encoded in the
+ * input, without decoding them, so decompressing (or {@code zcat}) restores the original file byte for byte.
+ */
+public class BlockCompressCarFile {
+
+    public static void usage() {
+        System.out.println("Command line parameters: compress INPUT_FILE OUTPUT_FILE [BLOCK_SIZE_KB]");
+        System.out.println("                     or: decompress INPUT_FILE OUTPUT_FILE");
+        System.out.println("                     or: index INPUT_FILE");
+        System.exit(-1);
+    }
+
+    public static void main(String[] args) throws IOException {
+        System.setProperty("file.encoding", "UTF-8");
+        if (args.length < 2)
+            usage();
+
+        final int numThreads = Runtime.getRuntime().availableProcessors();
+        if ("compress".equals(args[0]) && args.length >= 3) {
+            final int blockSize = args.length > 3 ? Integer.parseInt(args[3]) << 10 : BlockCompressedWriter.DEFAULT_BLOCK_SIZE;
+            final BlockIndex index = compress(new File(args[1]), new File(args[2]), blockSize, numThreads);
+            System.err.println("Wrote " + index.getItemCount() + " items in " + index.getBlockCount() + " blocks.");
+        } else if ("decompress".equals(args[0]) && args.length >= 3) {
+            final long count = decompress(new File(args[1]), new File(args[2]), numThreads);
+            System.err.println("Wrote " + count + " items.");
+        } else if ("index".equals(args[0])) {
+            final File file = new File(args[1]);
+            final BlockIndex index = BlockIndex.scan(file);
+            index.save(BlockIndex.indexFileOf(file));
+            System.err.println("Indexed " + index.getItemCount() + " items in " + index.getBlockCount() + " blocks.");
+        } else {
+            usage();
+        }
+    }
+
+    public static BlockIndex compress(File input, File output, int blockSize, int numThreads) throws IOException {
+        try (RawItemReader reader = new RawItemReader(new BufferedInputStream(new FileInputStream(input), 1 << 16))) {
+            final Header.TrecCarHeader header = reader.getHeader();
+            if (header == null) {
+                throw new CborFileTypeException("Input has no header, cannot create a block-compressed CAR file from it.");
+            }
+            final BlockCompressedWriter writer = new BlockCompressedWriter(new BufferedOutputStream(new FileOutputStream(output), 1 << 20),
+                    header, reader.getHeaderBytes(), blockSize, Deflater.DEFAULT_COMPRESSION, numThreads);
+            try {
+                byte[] item;
+                while ((item = reader.next()) != null) {
+                    writer.writeRawItem(item, 0, item.length);
+                }
+            } finally {
+                writer.close();
+            }
+            writer.getIndex().save(BlockIndex.indexFileOf(output));
+            return writer.getIndex();
+        }
+    }
+
+    /**
+     * @return number of items written
+     */
+    public static long decompress(File input, File output, int numThreads) throws IOException {
+        try (BlockCompressedFile container = new BlockCompressedFile(input);
+             CarFileWriter writer = new CarFileWriter(new BufferedOutputStream(new FileOutputStream(output), 1 << 20), container.getHeader(), container.getHeaderBytes())) {
+            final Iterator<byte[]> items = container.iterItems(0, numThreads);
+            try {
+                while (items.hasNext()) {
+                    final byte[] item = items.next();
+                    writer.writeRawItem(item, 0, item.length);
+                }
+            } catch (UncheckedIOException e) {
+                throw e.getCause();
+            }
+            return writer.getItemCount();
+        }
+    }
+}
@@ -0,0 +1,156 @@
+package edu.unh.cs.treccar_v2.tools;
+
+import edu.unh.cs.treccar_v2.Header;
+import edu.unh.cs.treccar_v2.read_data.*;
+import edu.unh.cs.treccar_v2.write_data.CarFileWriter;
+import edu.unh.cs.treccar_v2.write_data.DeltaFileWriter;
+
+import java.io.*;
+import java.util.Arrays;
+import java.util.zip.CRC32;
+
+/**
+ * Create delta files between two sorted CAR files, and apply them to the base to reproduce the new file.
+ *
+ * Both files must be sorted by page id (or paragraph id, for paragraph files), see {@link SortCarFile}. Applying a
+ * delta reproduces the new file byte for byte, including its header. See {@link DeltaFileReader} for the format.
+ *
+ * A delta records the data release name, item count and checksum of its base, and can only be applied to that
+ * file; applying it to another file fails (and the command line tool deletes the incomplete output).
+ */
+public class CarDelta {
+
+    public static void usage() {
+        System.out.println("Command line parameters: create BASE_FILE NEW_FILE DELTA_FILE");
+        System.out.println("                     or: apply BASE_FILE DELTA_FILE OUTPUT_FILE");
+        System.exit(-1);
+    }
+
+    public static void main(String[] args) throws IOException {
+        System.setProperty("file.encoding", "UTF-8");
+        if (args.length < 4)
+            usage();
+
+        if (!"create".equals(args[0]) && !"apply".equals(args[0])) {
+            usage();
+        }
+        final File baseFile = new File(args[1]);
+        final File outputFile = new File(args[3]);
+        boolean success = false;
+        try (OutputStream outputStream = new BufferedOutputStream(new FileOutputStream(outputFile), 1 << 20)) {
+            if ("create".equals(args[0])) {
+                final long count = create(baseFile, new File(args[2]), outputStream);
+                System.err.println("Wrote " + count + " delta entries.");
+            } else {
+                try (InputStream baseStream = new BufferedInputStream(new FileInputStream(baseFile), 1 << 16);
+                     InputStream deltaStream = new BufferedInputStream(new FileInputStream(new File(args[2])), 1 << 16)) {
+                    final long count = apply(baseStream, deltaStream, outputStream);
+                    System.err.println("Wrote " + count + " items.");
+                }
+            }
+            success = true;
+        } finally {
+            if (!success) {
+                outputFile.delete();
+            }
+        }
+    }
+
+    /**
+     * Reads the base twice: once to compute its identity for the delta header, and once to compare it to the new file.
+     * @return number of delta entries written
+     */
+    public static long create(File baseFile, File newFile, OutputStream deltaStream) throws IOException {
+        final DeltaFileReader.Base base;
+        try (InputStream baseStream = new BufferedInputStream(new FileInputStream(baseFile), 1 << 16)) {
+            base = DeltaFileReader.Base.of(baseStream);
+        }
+        try (InputStream baseStream = new BufferedInputStream(new FileInputStream(baseFile), 1 << 16);
+             InputStream newStream = new BufferedInputStream(new FileInputStream(newFile), 1 << 16)) {
+            return create(baseStream, newStream, deltaStream, base);
+        }
+    }
+
+    /**
+     * @param baseIdentity identity of the base, see {@link DeltaFileReader.Base#of}; checked against the base stream
+     * @return number of delta entries written
+     */
+    public static long create(InputStream baseStream, InputStream newStream, OutputStream deltaStream, DeltaFileReader.Base baseIdentity) throws IOException {
+        final RawItemReader base = new RawItemReader(baseStream);
+        final RawItemReader newer = new RawItemReader(newStream);
+        final Header.TrecCarHeader header = newer.getHeader();
+        if (base.getHeader() == null || header == null) {
+            throw new CborFileTypeException("Input has no header, cannot create a delta for it.");
+        }
+        final boolean paragraphs = header.getFileType() == Header.FileType.ParagraphsFile;
+        if ((base.getHeader().getFileType() == Header.FileType.ParagraphsFile) != paragraphs) {
+            throw new CborFileTypeException("Cannot create a delta from a " + base.getHeader().getFileType() + " to a " + header.getFileType());
+        }
+
+        if (!baseIdentity.getDataReleaseName().equals(base.getHeader().getProvenance().getDataReleaseName())) {
+            throw new IllegalArgumentException("Base identity " + baseIdentity + " is not of the base " + base.getHeader().getProvenance().getDataReleaseName());
+        }
+
+        final CRC32 baseChecksum = new CRC32();
+        try (DeltaFileWriter writer = new DeltaFileWriter(deltaStream, header, newer.getHeaderBytes(), baseIdentity)) {
+            byte[] baseItem = base.next();
+            byte[] newItem = newer.next();
+            String baseKey = baseItem != null ? CborBytes.keyOf(baseItem, paragraphs) : null;
+            String newKey = newItem != null ? CborBytes.keyOf(newItem, paragraphs) : null;
+            while (baseItem != null || newItem != null) {
+                final int cmp = baseItem == null ? 1
+                        : newItem == null ? -1
+                        : baseKey.compareTo(newKey);
+                if (cmp <= 0) {
+                    if (cmp < 0) {
+                        writer.writeRemove(baseKey);
+                    } else if (!Arrays.equals(baseItem, newItem)) {
+                        writer.writeUpsert(newKey, newItem, 0, newItem.length);
+                    }
+                    baseChecksum.update(baseItem, 0, baseItem.length);
+                    baseItem = base.next();
+                    baseKey = checkOrder("base", baseKey, baseItem, paragraphs);
+                } else {
+                    writer.writeUpsert(newKey, newItem, 0, newItem.length);
+                }
+                if (cmp >= 0) {
+                    newItem = newer.next();
+                    newKey = checkOrder("new", newKey, newItem, paragraphs);
+                }
+            }
+            if (base.getItemCount() != baseIdentity.getItemCount() || baseChecksum.getValue() != baseIdentity.getChecksum()) {
+                throw new IllegalArgumentException("Base identity " + baseIdentity + " does not match the base: " + base.getItemCount()
+                        + " items, checksum " + Long.toHexString(baseChecksum.getValue()));
+            }
+            return writer.getEntryCount();
+        }
+    }
+
+    private static String checkOrder(String name, String previousKey, byte[] item, boolean paragraphs) {
+        if (item == null) return null;
+        final String key = CborBytes.keyOf(item, paragraphs);
+        if (previousKey.compareTo(key) >= 0) {
+            throw new IllegalStateException("The " + name + " file is not sorted by key or has duplicates: " + previousKey + " >= " + key + "; sort it with SortCarFile first.");
+        }
+        return key;
+    }
+
+    /**
+     * Stream the base and the delta into the new file.
+     * @return number of items written
+     */
+    public static long apply(InputStream baseStream, InputStream deltaStream, OutputStream outputStream) throws IOException {
+        final DeltaOverlay overlay = new DeltaOverlay(new RawItemReader(baseStream), new DeltaFileReader(deltaStream));
+        try (CarFileWriter writer = new CarFileWriter(outputStream, overlay.getHeader(), overlay.getHeaderBytes())) {
+            try {
+                while (overlay.hasNext()) {
+                    final byte[] item = overlay.next();
+                    writer.writeRawItem(item, 0, item.length);
+                }
+            } catch (UncheckedIOException e) {
+                throw e.getCause();
+            }
+            return writer.getItemCount();
+        }
+    }
+}
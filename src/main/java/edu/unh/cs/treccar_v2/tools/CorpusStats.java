@@ -0,0 +1,488 @@
+package edu.unh.cs.treccar_v2.tools;
+
+import edu.unh.cs.treccar_v2.Data;
+import edu.unh.cs.treccar_v2.Header;
+import edu.unh.cs.treccar_v2.export.ExportOutput;
+import edu.unh.cs.treccar_v2.export.JsonLinesRenderer;
+import edu.unh.cs.treccar_v2.read_data.RawItemReader;
+import edu.unh.cs.treccar_v2.read_data.SharedCarSource;
+
+import java.io.*;
+import java.util.*;
+import java.util.concurrent.*;
+
+/**
+ * Statistics of a pages, outlines, or paragraphs file, computed in a single parallel pass and written as JSON.
+ *
+ * Worker threads read through their own {@link SharedCarSource.Cursor} (lock-free when the file has an offset
+ * index) and aggregate into their own {@link Stats}; the partial aggregates are merged once all items are read.
+ *
+ * For pages: counts by page type, sections by depth, sections, paragraphs, and links per page, paragraph lengths,
+ * links per paragraph, coverage of metadata fields, and the top pages by number of inlinks. For paragraphs: paragraph
+ * lengths and links per paragraph.
+ */
+public class CorpusStats {
+    public static final int DEFAULT_TOP_K = 100;
+
+    public static void usage() {
+        System.out.println("Command line parameters: FILE [OUTPUT_FILE [NUM_THREADS [TOP_K]]]");
+        System.out.println("  Writes statistics as JSON. " + ExportOutput.USAGE);
+        System.exit(-1);
+    }
+
+    public static void main(String[] args) throws IOException, InterruptedException {
+        System.setProperty("file.encoding", "UTF-8");
+        if (args.length < 1)
+            usage();
+
+        final File file = new File(args[0]);
+        final int numThreads = ExportOutput.numThreads(args, 2);
+        final int topK = args.length > 3 ? Integer.parseInt(args[3]) : DEFAULT_TOP_K;
+        final Stats stats = compute(file, numThreads, topK);
+        try (Writer writer = ExportOutput.open(args.length > 1 ? args[1] : null)) {
+            stats.writeJson(writer);
+        }
+    }
+
+    /**
+     * Adds one item to the statistics of a worker.
+     */
+    private interface Accumulator<T> {
+        void add(Stats stats, T item);
+    }
+
+    private static final Accumulator<Data.Page> PAGE_ACCUMULATOR = new Accumulator<Data.Page>() {
+        @Override
+        public void add(Stats stats, Data.Page page) {
+            stats.addPage(page);
+        }
+    };
+
+    private static final Accumulator<Data.Paragraph> PARAGRAPH_ACCUMULATOR = new Accumulator<Data.Paragraph>() {
+        @Override
+        public void add(Stats stats, Data.Paragraph paragraph) {
+            stats.addParagraph(paragraph);
+        }
+    };
+
+    public static Stats compute(File file, int numThreads, int topK) throws IOException, InterruptedException {
+        final Header.TrecCarHeader header;
+        try (RawItemReader reader = new RawItemReader(new FileInputStream(file))) {
+            header = reader.getHeader();
+        }
+        final boolean paragraphs = header != null && header.getFileType() == Header.FileType.ParagraphsFile;
+        final Stats result = new Stats(file.getPath(), header, topK);
+        final List<Stats> partials;
+        if (paragraphs) {
+            try (SharedCarSource<Data.Paragraph> source = SharedCarSource.paragraphs(file)) {
+                partials = runWorkers(source, numThreads, result, PARAGRAPH_ACCUMULATOR);
+            }
+        } else {
+            try (SharedCarSource<Data.Page> source = SharedCarSource.pages(file)) {
+                partials = runWorkers(source, numThreads, result, PAGE_ACCUMULATOR);
+            }
+        }
+        for (Stats partial : partials) {
+            result.merge(partial);
+        }
+        return result;
+    }
+
+    private static <T> List<Stats> runWorkers(final SharedCarSource<T> source, int numThreads, final Stats template,
+                                              final Accumulator<T> accumulator) throws IOException, InterruptedException {
+        final ExecutorService executor = Executors.newFixedThreadPool(numThreads);
+        try {
+            final List<Future<Stats>> futures = new ArrayList<>(numThreads);
+            for (int i = 0; i < numThreads; i++) {
+                futures.add(executor.submit(new Callable<Stats>() {
+                    @Override
+                    public Stats call() throws IOException {
+                        final Stats stats = template.emptyCopy();
+                        final SharedCarSource<T>.Cursor cursor = source.newCursor();
+                        T item;
+                        while ((item = cursor.next()) != null) {
+                            accumulator.add(stats, item);
+                        }
+                        return stats;
+                    }
+                }));
+            }
+            final List<Stats> partials = new ArrayList<>(numThreads);
+            for (Future<Stats> future : futures) {
+                try {
+                    partials.add(future.get());
+                } catch (ExecutionException e) {
+                    if (e.getCause() instanceof IOException) throw (IOException) e.getCause();
+                    if (e.getCause() instanceof RuntimeException) throw (RuntimeException) e.getCause();
+                    throw new RuntimeException(e.getCause());
+                }
+            }
+            return partials;
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    /**
+     * Distribution of non-negative values: exact counts below {@link #EXACT_LIMIT}, power-of-two buckets above.
+     */
+    public static final class Histogram {
+        private static final int EXACT_LIMIT = 32;
+        private static final int EXACT_BITS = 5;
+
+        private final long[] buckets = new long[EXACT_LIMIT + 64 - EXACT_BITS];
+        private long count = 0;
+        private long sum = 0;
+        private long min = Long.MAX_VALUE;
+        private long max = Long.MIN_VALUE;
+
+        public void add(long value) {
+            buckets[bucketOf(value)]++;
+            count++;
+            sum += value;
+            if (value < min) min = value;
+            if (value > max) max = value;
+        }
+
+        private static int bucketOf(long value) {
+            if (value < EXACT_LIMIT) return (int) Math.max(0, value);
+            return EXACT_LIMIT + (63 - Long.numberOfLeadingZeros(value)) - EXACT_BITS;
+        }
+
+        private static long lowerBound(int bucket) {
+            return bucket < EXACT_LIMIT ? bucket : 1L << (bucket - EXACT_LIMIT + EXACT_BITS);
+        }
+
+        private static long upperBound(int bucket) {
+            return bucket < EXACT_LIMIT ? bucket : (lowerBound(bucket) << 1) - 1;
+        }
+
+        void merge(Histogram other) {
+            for (int i = 0; i < buckets.length; i++) buckets[i] += other.buckets[i];
+            count += other.count;
+            sum += other.sum;
+            min = Math.min(min, other.min);
+            max = Math.max(max, other.max);
+        }
+
+        public long getCount() {
+            return count;
+        }
+
+        public long getSum() {
+            return sum;
+        }
+
+        public double getMean() {
+            return count > 0 ? (double) sum / count : 0.0;
+        }
+
+        /**
+         * {"count": n, "sum": s, "min": a, "max": b, "mean": m, "buckets": [[from, to, count], ...]}, with
+         * empty buckets omitted.
+         */
+        void writeJson(Appendable out) throws IOException {
+            out.append("{\"count\":").append(Long.toString(count))
+                    .append(",\"sum\":").append(Long.toString(sum))
+                    .append(",\"min\":").append(count > 0 ? Long.toString(min) : "null")
+                    .append(",\"max\":").append(count > 0 ? Long.toString(max) : "null")
+                    .append(",\"mean\":").append(String.format(Locale.ROOT, "%.3f", getMean()))
+                    .append(",\"buckets\":[");
+            boolean first = true;
+            for (int i = 0; i < buckets.length; i++) {
+                if (buckets[i] == 0) continue;
+                if (!first) out.append(',');
+                first = false;
+                out.append('[').append(Long.toString(lowerBound(i))).append(',').append(Long.toString(upperBound(i)))
+                        .append(',').append(Long.toString(buckets[i])).append(']');
+            }
+            out.append("]}");
+        }
+    }
+
+    private static final class InlinkEntry {
+        final String pageId;
+        final String pageName;
+        final int inlinks;
+
+        InlinkEntry(String pageId, String pageName, int inlinks) {
+            this.pageId = pageId;
+            this.pageName = pageName;
+            this.inlinks = inlinks;
+        }
+    }
+
+    /** Most inlinks first, ties by page id. */
+    private static final Comparator<InlinkEntry> BY_INLINKS = new Comparator<InlinkEntry>() {
+        @Override
+        public int compare(InlinkEntry a, InlinkEntry b) {
+            if (a.inlinks != b.inlinks) return Integer.compare(b.inlinks, a.inlinks);
+            return a.pageId.compareTo(b.pageId);
+        }
+    };
+
+    /**
+     * Aggregated statistics of one worker, or of the whole file after merging.
+     */
+    public static final class Stats {
+        private static final String[] METADATA_FIELDS = {"redirectNames", "disambiguationNames", "disambiguationIds",
+                "categoryNames", "categoryIds", "inlinkIds", "inlinkAnchors", "wikiDataQid", "siteId", "pageTags"};
+
+        private final String fileName;
+        private final Header.TrecCarHeader header;
+        private final int topK;
+
+        private long pages = 0;
+        private final long[] pageTypes = new long[Data.PageType.values().length];
+        private long sections = 0;
+        private long paragraphs = 0;
+        private long listItems = 0;
+        private long images = 0;
+        private long infoBoxes = 0;
+        private long links = 0;
+        private long linksWithSection = 0;
+        private final Histogram sectionDepth = new Histogram();
+        private final Histogram sectionsPerPage = new Histogram();
+        private final Histogram paragraphsPerPage = new Histogram();
+        private final Histogram linksPerPage = new Histogram();
+        private final Histogram paragraphLength = new Histogram();
+        private final Histogram linksPerParagraph = new Histogram();
+        private long pagesWithMetadata = 0;
+        private final long[] metadataCoverage = new long[METADATA_FIELDS.length];
+        // ordered worst first, so the head is the first entry to drop
+        private final PriorityQueue<InlinkEntry> topInlinks;
+
+        // counters of the page being added
+        private long pageSections;
+        private long pageParagraphs;
+        private long pageLinks;
+
+        private final Data.PageVisitor visitor = new Data.PageVisitor() {
+            @Override
+            public boolean visitSection(Data.Section section, Data.SectionPath path) {
+                sections++;
+                pageSections++;
+                sectionDepth.add(path.size());
+                return true;
+            }
+
+            @Override
+            public boolean visitPara(Data.Para para, Data.SectionPath path) {
+                paragraphs++;
+                pageParagraphs++;
+                pageLinks += addParagraphBody(para.getParagraph());
+                return false;
+            }
+
+            @Override
+            public boolean visitListItem(Data.ListItem listItem, Data.SectionPath path) {
+                listItems++;
+                pageLinks += countLinks(listItem.getBodyParagraph());
+                return false;
+            }
+
+            @Override
+            public boolean visitImage(Data.Image image, Data.SectionPath path) {
+                images++;
+                return false;
+            }
+
+            @Override
+            public boolean visitInfoBox(Data.InfoBox infoBox, Data.SectionPath path) {
+                infoBoxes++;
+                return false;
+            }
+        };
+
+        Stats(String fileName, Header.TrecCarHeader header, int topK) {
+            this.fileName = fileName;
+            this.header = header;
+            this.topK = topK;
+            this.topInlinks = new PriorityQueue<>(Math.max(1, topK + 1), Collections.reverseOrder(BY_INLINKS));
+        }
+
+        Stats emptyCopy() {
+            return new Stats(fileName, header, topK);
+        }
+
+        void addPage(Data.Page page) {
+            pages++;
+            if (page.getPageType() != null) {
+                pageTypes[page.getPageType().ordinal()]++;
+            }
+            pageSections = 0;
+            pageParagraphs = 0;
+            pageLinks = 0;
+            page.accept(visitor);
+            sectionsPerPage.add(pageSections);
+            paragraphsPerPage.add(pageParagraphs);
+            linksPerPage.add(pageLinks);
+
+            final Data.PageMetadata metadata = page.getPageMetadata();
+            if (metadata != null) {
+                pagesWithMetadata++;
+                final List<?>[] fields = {metadata.getRedirectNames(), metadata.getDisambiguationNames(),
+                        metadata.getDisambiguationIds(), metadata.getCategoryNames(), metadata.getCategoryIds(),
+                        metadata.getInlinkIds(), metadata.getInlinkAnchors(), metadata.getWikiDataQid(),
+                        metadata.getSiteId(), metadata.getPageTags()};
+                for (int i = 0; i < fields.length; i++) {
+                    if (!fields[i].isEmpty()) metadataCoverage[i]++;
+                }
+                offerInlinks(new InlinkEntry(page.getPageId(), page.getPageName(), metadata.getInlinkIds().size()));
+            }
+        }
+
+        void addParagraph(Data.Paragraph paragraph) {
+            paragraphs++;
+            addParagraphBody(paragraph);
+        }
+
+        /**
+         * @return number of links in the paragraph
+         */
+        private long addParagraphBody(Data.Paragraph paragraph) {
+            long length = 0;
+            long paragraphLinks = 0;
+            for (Data.ParaBody body : paragraph.getBodies()) {
+                if (body instanceof Data.ParaLink) {
+                    final Data.ParaLink link = (Data.ParaLink) body;
+                    paragraphLinks++;
+                    if (link.hasLinkSection()) linksWithSection++;
+                    if (link.getAnchorText() != null) length += link.getAnchorText().length();
+                } else {
+                    final String text = ((Data.ParaText) body).getText();
+                    if (text != null) length += text.length();
+                }
+            }
+            links += paragraphLinks;
+            paragraphLength.add(length);
+            linksPerParagraph.add(paragraphLinks);
+            return paragraphLinks;
+        }
+
+        private long countLinks(Data.Paragraph paragraph) {
+            long paragraphLinks = 0;
+            for (Data.ParaBody body : paragraph.getBodies()) {
+                if (body instanceof Data.ParaLink) {
+                    paragraphLinks++;
+                    if (((Data.ParaLink) body).hasLinkSection()) linksWithSection++;
+                }
+            }
+            links += paragraphLinks;
+            return paragraphLinks;
+        }
+
+        private void offerInlinks(InlinkEntry entry) {
+            if (topK <= 0) return;
+            if (topInlinks.size() < topK) {
+                topInlinks.add(entry);
+            } else if (BY_INLINKS.compare(entry, topInlinks.peek()) < 0) {
+                topInlinks.poll();
+                topInlinks.add(entry);
+            }
+        }
+
+        void merge(Stats other) {
+            pages += other.pages;
+            for (int i = 0; i < pageTypes.length; i++) pageTypes[i] += other.pageTypes[i];
+            sections += other.sections;
+            paragraphs += other.paragraphs;
+            listItems += other.listItems;
+            images += other.images;
+            infoBoxes += other.infoBoxes;
+            links += other.links;
+            linksWithSection += other.linksWithSection;
+            sectionDepth.merge(other.sectionDepth);
+            sectionsPerPage.merge(other.sectionsPerPage);
+            paragraphsPerPage.merge(other.paragraphsPerPage);
+            linksPerPage.merge(other.linksPerPage);
+            paragraphLength.merge(other.paragraphLength);
+            linksPerParagraph.merge(other.linksPerParagraph);
+            pagesWithMetadata += other.pagesWithMetadata;
+            for (int i = 0; i < metadataCoverage.length; i++) metadataCoverage[i] += other.metadataCoverage[i];
+            for (InlinkEntry entry : other.topInlinks) offerInlinks(entry);
+        }
+
+        public long getPages() {
+            return pages;
+        }
+
+        public long getParagraphs() {
+            return paragraphs;
+        }
+
+        public long getLinks() {
+            return links;
+        }
+
+        public long getPageTypeCount(Data.PageType pageType) {
+            return pageTypes[pageType.ordinal()];
+        }
+
+        public Histogram getParagraphLength() {
+            return paragraphLength;
+        }
+
+        public void writeJson(Appendable out) throws IOException {
+            final boolean paragraphsFile = header != null && header.getFileType() == Header.FileType.ParagraphsFile;
+            out.append("{\n  \"file\": ");
+            JsonLinesRenderer.writeString(fileName, out);
+            out.append(",\n  \"fileType\": ");
+            JsonLinesRenderer.writeString(header != null ? header.getFileType().name() : null, out);
+            out.append(",\n  \"dataReleaseName\": ");
+            JsonLinesRenderer.writeString(header != null && header.getProvenance() != null ? header.getProvenance().getDataReleaseName() : null, out);
+
+            if (!paragraphsFile) {
+                out.append(",\n  \"pages\": ").append(Long.toString(pages));
+                out.append(",\n  \"pageTypes\": {");
+                final Data.PageType[] types = Data.PageType.values();
+                for (int i = 0; i < types.length; i++) {
+                    if (i > 0) out.append(", ");
+                    out.append('"').append(types[i].name()).append("\": ").append(Long.toString(pageTypes[i]));
+                }
+                out.append('}');
+                out.append(",\n  \"sections\": ").append(Long.toString(sections));
+                out.append(",\n  \"sectionDepth\": ");
+                sectionDepth.writeJson(out);
+                out.append(",\n  \"sectionsPerPage\": ");
+                sectionsPerPage.writeJson(out);
+            }
+            out.append(",\n  \"paragraphs\": ").append(Long.toString(paragraphs));
+            if (!paragraphsFile) {
+                out.append(",\n  \"paragraphsPerPage\": ");
+                paragraphsPerPage.writeJson(out);
+                out.append(",\n  \"listItems\": ").append(Long.toString(listItems));
+                out.append(",\n  \"images\": ").append(Long.toString(images));
+                out.append(",\n  \"infoBoxes\": ").append(Long.toString(infoBoxes));
+            }
+            out.append(",\n  \"paragraphLength\": ");
+            paragraphLength.writeJson(out);
+            out.append(",\n  \"links\": ").append(Long.toString(links));
+            out.append(",\n  \"linksWithSection\": ").append(Long.toString(linksWithSection));
+            out.append(",\n  \"linksPerParagraph\": ");
+            linksPerParagraph.writeJson(out);
+            if (!paragraphsFile) {
+                out.append(",\n  \"linksPerPage\": ");
+                linksPerPage.writeJson(out);
+                out.append(",\n  \"metadataCoverage\": {\"pagesWithMetadata\": ").append(Long.toString(pagesWithMetadata));
+                for (int i = 0; i < METADATA_FIELDS.length; i++) {
+                    out.append(", \"").append(METADATA_FIELDS[i]).append("\": ").append(Long.toString(metadataCoverage[i]));
+                }
+                out.append('}');
+                out.append(",\n  \"topInlinks\": [");
+                final List<InlinkEntry> top = new ArrayList<>(topInlinks);
+                Collections.sort(top, BY_INLINKS);
+                for (int i = 0; i < top.size(); i++) {
+                    out.append(i > 0 ? ",\n    " : "\n    ");
+                    out.append("{\"pageId\": ");
+                    JsonLinesRenderer.writeString(top.get(i).pageId, out);
+                    out.append(", \"pageName\": ");
+                    JsonLinesRenderer.writeString(top.get(i).pageName, out);
+                    out.append(", \"inlinks\": ").append(Integer.toString(top.get(i).inlinks)).append('}');
+                }
+                out.append(top.isEmpty() ? "]" : "\n  ]");
+            }
+            out.append("\n}\n");
+        }
+    }
+}
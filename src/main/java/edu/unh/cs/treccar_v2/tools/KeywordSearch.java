@@ -0,0 +1,114 @@
+package edu.unh.cs.treccar_v2.tools;
+
+import edu.unh.cs.treccar_v2.Data;
+import edu.unh.cs.treccar_v2.export.ExportOutput;
+import edu.unh.cs.treccar_v2.pipeline.Pipeline;
+import edu.unh.cs.treccar_v2.pipeline.Sink;
+import edu.unh.cs.treccar_v2.pipeline.StageStats;
+import edu.unh.cs.treccar_v2.pipeline.Transform;
+import edu.unh.cs.treccar_v2.search.KeywordMatcher;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Case-insensitive search for a list of keywords in all paragraphs of a pages or paragraphs file.
+ *
+ * All keywords are matched in a single scan per paragraph (see {@link KeywordMatcher}); pages or paragraphs are
+ * matched in parallel. Writes one line per hit, in file order:
+ * <pre>
+ * pages:      PAGE_ID  SECTION_PATH_ID  PARA_ID  KEYWORD  START  END
+ * paragraphs: PARA_ID  KEYWORD  START  END
+ * </pre>
+ * where START and END are character offsets into the text of the paragraph.
+ */
+public class KeywordSearch {
+    public static void usage() {
+        System.out.println("Command line parameters: (pages|paragraphs) FILE KEYWORDS_FILE [OUTPUT_FILE [NUM_THREADS]]");
+        System.out.println("  KEYWORDS_FILE has one keyword per line.");
+        System.out.println("  " + ExportOutput.USAGE);
+        System.exit(-1);
+    }
+
+    public static void main(String[] args) throws IOException, InterruptedException {
+        System.setProperty("file.encoding", "UTF-8");
+        if (args.length < 3)
+            usage();
+        final String mode = args[0];
+        final FileInputStream fileInputStream = new FileInputStream(new File(args[1]));
+        final KeywordMatcher matcher = new KeywordMatcher(readKeywords(new File(args[2])));
+        final int numThreads = ExportOutput.numThreads(args, 4);
+        final String newline = System.lineSeparator();
+
+        try (final Writer out = ExportOutput.open(args.length > 3 ? args[3] : null, numThreads)) {
+            final Sink<String> sink = new Sink<String>() {
+                @Override
+                public void accept(String lines) throws IOException {
+                    out.write(lines);
+                }
+            };
+            final List<StageStats> stats;
+            if (mode.equals("pages")) {
+                stats = Pipeline.pages(fileInputStream, numThreads)
+                        .map("search", numThreads, new Transform<Data.Page, String>() {
+                            @Override
+                            public String apply(Data.Page page) {
+                                final List<KeywordMatcher.ParagraphHits> paragraphs = matcher.find(page);
+                                if (paragraphs.isEmpty()) return null;
+                                final StringBuilder lines = new StringBuilder();
+                                for (KeywordMatcher.ParagraphHits paragraph : paragraphs) {
+                                    final String prefix = page.getPageId() + "\t"
+                                            + paragraph.getSectionPath().getSectionPathId() + "\t"
+                                            + paragraph.getParagraph().getParaId();
+                                    appendHits(lines, prefix, paragraph.getHits(), newline);
+                                }
+                                return lines.toString();
+                            }
+                        })
+                        .run(sink);
+            } else if (mode.equals("paragraphs")) {
+                stats = Pipeline.paragraphs(fileInputStream, numThreads)
+                        .map("search", numThreads, new Transform<Data.Paragraph, String>() {
+                            @Override
+                            public String apply(Data.Paragraph paragraph) {
+                                final List<KeywordMatcher.Hit> hits = matcher.find(paragraph);
+                                if (hits.isEmpty()) return null;
+                                final StringBuilder lines = new StringBuilder();
+                                appendHits(lines, paragraph.getParaId(), hits, newline);
+                                return lines.toString();
+                            }
+                        })
+                        .run(sink);
+            } else {
+                usage();
+                return;
+            }
+            ExportOutput.report(stats);
+        }
+    }
+
+    private static void appendHits(StringBuilder lines, String prefix, List<KeywordMatcher.Hit> hits, String newline) {
+        for (KeywordMatcher.Hit hit : hits) {
+            lines.append(prefix).append('\t')
+                    .append(hit.getKeyword()).append('\t')
+                    .append(hit.getStart()).append('\t')
+                    .append(hit.getEnd()).append(newline);
+        }
+    }
+
+    private static List<String> readKeywords(File file) throws IOException {
+        final List<String> keywords = new ArrayList<>();
+        try (BufferedReader reader = new BufferedReader(new InputStreamReader(new FileInputStream(file), StandardCharsets.UTF_8))) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                final String keyword = line.trim();
+                if (!keyword.isEmpty()) {
+                    keywords.add(keyword);
+                }
+            }
+        }
+        return keywords;
+    }
+}
@@ -0,0 +1,284 @@
+package edu.unh.cs.treccar_v2.tools;
+
+import edu.unh.cs.treccar_v2.Data;
+import edu.unh.cs.treccar_v2.Header;
+import edu.unh.cs.treccar_v2.read_data.CborBytes;
+import edu.unh.cs.treccar_v2.read_data.CborFileTypeException;
+import edu.unh.cs.treccar_v2.read_data.DeserializeData;
+import edu.unh.cs.treccar_v2.read_data.RawItemReader;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.util.*;
+
+/**
+ * Report added, removed and changed pages between two releases of a pages or outlines file.
+ *
+ * Both files must be sorted by page id (see {@link SortCarFile}); they are merge-joined in a single streaming pass,
+ * holding one page of each release at a time. Pages with identical bytes are unchanged without being decoded;
+ * otherwise both pages are decoded and compared by their {@link Data.Page#getFingerprint() fingerprints}, and
+ * changed pages are drilled down into sections (by section path id and fingerprint) and paragraphs (by id).
+ */
+public class ReleaseDiff {
+
+    public static void usage() {
+        System.out.println("Command line parameters: OLD_FILE NEW_FILE [OUTPUT_FILE]");
+        System.out.println("  Both files must be sorted by page id. Writes TSV lines: change type, page id, section path id or paragraph id.");
+        System.exit(-1);
+    }
+
+    public static void main(String[] args) throws IOException {
+        System.setProperty("file.encoding", "UTF-8");
+        if (args.length < 2)
+            usage();
+
+        final OutputStream outputStream = args.length > 2 ? new FileOutputStream(new File(args[2])) : System.out;
+        try (InputStream oldStream = new BufferedInputStream(new FileInputStream(new File(args[0])), 1 << 16);
+             InputStream newStream = new BufferedInputStream(new FileInputStream(new File(args[1])), 1 << 16);
+             Writer writer = new BufferedWriter(new OutputStreamWriter(outputStream, StandardCharsets.UTF_8))) {
+            final TsvListener listener = new TsvListener(writer);
+            diff(oldStream, newStream, listener);
+            System.err.println("added: " + listener.added + "  removed: " + listener.removed + "  changed: " + listener.changed);
+        }
+    }
+
+    public interface Listener {
+        /** Called once before any page, with {@link Header.Provenance#getDataReleaseName()} of both inputs. */
+        default void releases(String oldRelease, String newRelease) throws IOException { }
+        default void pageAdded(Data.Page page) throws IOException { }
+        default void pageRemoved(Data.Page page) throws IOException { }
+        default void pageChanged(PageDiff diff) throws IOException { }
+    }
+
+    /**
+     * Differences between two versions of a page with the same page id.
+     *
+     * A paragraph id is derived from the paragraph content, so an edited paragraph shows up as removed and added.
+     * The fingerprint of a section covers its subsections, so a change inside a subsection also marks its
+     * ancestors as changed.
+     */
+    public static final class PageDiff {
+        private final Data.Page oldPage;
+        private final Data.Page newPage;
+        private final List<String> addedSections = new ArrayList<>();
+        private final List<String> removedSections = new ArrayList<>();
+        private final List<String> changedSections = new ArrayList<>();
+        private final List<String> addedParagraphs = new ArrayList<>();
+        private final List<String> removedParagraphs = new ArrayList<>();
+
+        PageDiff(Data.Page oldPage, Data.Page newPage) {
+            this.oldPage = oldPage;
+            this.newPage = newPage;
+
+            final Map<String, Long> oldSections = sectionFingerprints(oldPage);
+            final Map<String, Long> newSections = sectionFingerprints(newPage);
+            for (Map.Entry<String, Long> entry : newSections.entrySet()) {
+                final Long oldFingerprint = oldSections.get(entry.getKey());
+                if (oldFingerprint == null) addedSections.add(entry.getKey());
+                else if (!oldFingerprint.equals(entry.getValue())) changedSections.add(entry.getKey());
+            }
+            for (String sectionPathId : oldSections.keySet()) {
+                if (!newSections.containsKey(sectionPathId)) removedSections.add(sectionPathId);
+            }
+
+            final Set<String> oldParagraphs = paragraphIds(oldPage);
+            final Set<String> newParagraphs = paragraphIds(newPage);
+            for (String paraId : newParagraphs) {
+                if (!oldParagraphs.contains(paraId)) addedParagraphs.add(paraId);
+            }
+            for (String paraId : oldParagraphs) {
+                if (!newParagraphs.contains(paraId)) removedParagraphs.add(paraId);
+            }
+        }
+
+        public String getPageId() {
+            return newPage.getPageId();
+        }
+
+        public Data.Page getOldPage() {
+            return oldPage;
+        }
+
+        public Data.Page getNewPage() {
+            return newPage;
+        }
+
+        public boolean isNameChanged() {
+            return !oldPage.getPageName().equals(newPage.getPageName());
+        }
+
+        /**
+         * True if the page skeleton is unchanged, i.e. only name, type or metadata differ.
+         */
+        public boolean isOnlyMetadataChanged() {
+            return oldPage.getFingerprint() == newPage.getFingerprint();
+        }
+
+        public List<String> getAddedSections() {
+            return addedSections;
+        }
+
+        public List<String> getRemovedSections() {
+            return removedSections;
+        }
+
+        public List<String> getChangedSections() {
+            return changedSections;
+        }
+
+        public List<String> getAddedParagraphs() {
+            return addedParagraphs;
+        }
+
+        public List<String> getRemovedParagraphs() {
+            return removedParagraphs;
+        }
+    }
+
+    private static Map<String, Long> sectionFingerprints(Data.Page page) {
+        final Map<String, Long> result = new LinkedHashMap<>();
+        for (Data.SectionPath path : page.iterableSectionPaths()) {
+            final long fingerprint = path.getLastSection().getFingerprint();
+            // repeated headings within a page share a section path id
+            final Long previous = result.put(path.getSectionPathId(), fingerprint);
+            if (previous != null) result.put(path.getSectionPathId(), previous * 31 + fingerprint);
+        }
+        return result;
+    }
+
+    private static Set<String> paragraphIds(Data.Page page) {
+        final Set<String> result = new LinkedHashSet<>();
+        page.accept(new Data.PageVisitor() {
+            @Override
+            public boolean visitPara(Data.Para para, Data.SectionPath path) {
+                result.add(para.getParagraph().getParaId());
+                return false;
+            }
+
+            @Override
+            public boolean visitListItem(Data.ListItem listItem, Data.SectionPath path) {
+                result.add(listItem.getBodyParagraph().getParaId());
+                return false;
+            }
+        });
+        return result;
+    }
+
+    /**
+     * Merge-join two page files sorted by page id and report all differences to the listener.
+     * @throws IllegalStateException if an input is not sorted by page id
+     */
+    public static void diff(InputStream oldStream, InputStream newStream, Listener listener) throws IOException {
+        final SortedItems oldItems = new SortedItems(new RawItemReader(oldStream), "old");
+        final SortedItems newItems = new SortedItems(new RawItemReader(newStream), "new");
+        listener.releases(oldItems.releaseName(), newItems.releaseName());
+
+        while (oldItems.item != null || newItems.item != null) {
+            final int cmp = oldItems.item == null ? 1
+                    : newItems.item == null ? -1
+                    : oldItems.key.compareTo(newItems.key);
+            if (cmp < 0) {
+                listener.pageRemoved(DeserializeData.pageFromBytes(oldItems.item));
+                oldItems.advance();
+            } else if (cmp > 0) {
+                listener.pageAdded(DeserializeData.pageFromBytes(newItems.item));
+                newItems.advance();
+            } else {
+                if (!Arrays.equals(oldItems.item, newItems.item)) {
+                    final Data.Page oldPage = DeserializeData.pageFromBytes(oldItems.item);
+                    final Data.Page newPage = DeserializeData.pageFromBytes(newItems.item);
+                    listener.pageChanged(new PageDiff(oldPage, newPage));
+                }
+                oldItems.advance();
+                newItems.advance();
+            }
+        }
+    }
+
+    private static final class SortedItems {
+        private final RawItemReader reader;
+        private final String name;
+        byte[] item;
+        String key;
+
+        SortedItems(RawItemReader reader, String name) throws IOException {
+            this.reader = reader;
+            this.name = name;
+            final Header.TrecCarHeader header = reader.getHeader();
+            if (header != null && header.getFileType() == Header.FileType.ParagraphsFile) {
+                throw new CborFileTypeException("The " + name + " release is a paragraphs file, expected pages or outlines.");
+            }
+            advance();
+        }
+
+        String releaseName() {
+            final Header.TrecCarHeader header = reader.getHeader();
+            return header != null ? header.getProvenance().getDataReleaseName() : "";
+        }
+
+        void advance() throws IOException {
+            final String previousKey = key;
+            item = reader.next();
+            key = item != null ? CborBytes.pageIdOf(item) : null;
+            if (key != null && previousKey != null && previousKey.compareTo(key) > 0) {
+                throw new IllegalStateException("The " + name + " release is not sorted by page id at item "
+                        + reader.getItemCount() + ": " + previousKey + " > " + key + "; sort it with SortCarFile first.");
+            }
+        }
+    }
+
+    /**
+     * Writes one TSV line per change: page-added, page-removed, page-changed, metadata-changed, section-added,
+     * section-removed, section-changed, paragraph-added, paragraph-removed.
+     */
+    public static class TsvListener implements Listener {
+        private final Writer writer;
+        long added = 0;
+        long removed = 0;
+        long changed = 0;
+
+        public TsvListener(Writer writer) {
+            this.writer = writer;
+        }
+
+        @Override
+        public void releases(String oldRelease, String newRelease) throws IOException {
+            writer.write("# " + oldRelease + " -> " + newRelease + "\n");
+        }
+
+        @Override
+        public void pageAdded(Data.Page page) throws IOException {
+            added++;
+            line("page-added", page.getPageId(), null);
+        }
+
+        @Override
+        public void pageRemoved(Data.Page page) throws IOException {
+            removed++;
+            line("page-removed", page.getPageId(), null);
+        }
+
+        @Override
+        public void pageChanged(PageDiff diff) throws IOException {
+            changed++;
+            final String pageId = diff.getPageId();
+            line(diff.isOnlyMetadataChanged() ? "metadata-changed" : "page-changed", pageId, null);
+            for (String id : diff.getAddedSections()) line("section-added", pageId, id);
+            for (String id : diff.getRemovedSections()) line("section-removed", pageId, id);
+            for (String id : diff.getChangedSections()) line("section-changed", pageId, id);
+            for (String id : diff.getAddedParagraphs()) line("paragraph-added", pageId, id);
+            for (String id : diff.getRemovedParagraphs()) line("paragraph-removed", pageId, id);
+        }
+
+        private void line(String change, String pageId, String id) throws IOException {
+            writer.write(change);
+            writer.write('\t');
+            writer.write(pageId);
+            if (id != null) {
+                writer.write('\t');
+                writer.write(id);
+            }
+            writer.write('\n');
+        }
+    }
+}
@@ -0,0 +1,255 @@
+package edu.unh.cs.treccar_v2.tools;
+
+import edu.unh.cs.treccar_v2.Data;
+import edu.unh.cs.treccar_v2.Header;
+import edu.unh.cs.treccar_v2.read_data.CborBytes;
+import edu.unh.cs.treccar_v2.read_data.CborFileTypeException;
+import edu.unh.cs.treccar_v2.read_data.DeserializeData;
+import edu.unh.cs.treccar_v2.read_data.MultiFileSource;
+import edu.unh.cs.treccar_v2.read_data.RawItemReader;
+import edu.unh.cs.treccar_v2.write_data.CarFileWriter;
+import edu.unh.cs.treccar_v2.write_data.CborWriter;
+import edu.unh.cs.treccar_v2.write_data.SerializeData;
+
+import java.io.*;
+import java.util.*;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Route the items of one or more CAR files into N partitions by a hash of their key, so that pages, paragraphs
+ * and external tables partitioned by the same key and N are co-partitioned.
+ *
+ * The partition of a key is {@link #partitionOf(String, int)}, which depends only on the key and N. Items are
+ * copied as raw bytes; within a partition they keep their input order, so the output is deterministic.
+ * Partitions are written by worker threads, each owning a subset of the partitions. All inputs must be of the same
+ * file type and data release.
+ */
+public class RepartitionCarFiles {
+    public static final String TOOL_NAME = "trec-car-tools-java repartition";
+    private static final int QUEUE_CAPACITY = 1024;
+    /** output buffers of all partitions together, split evenly between them */
+    private static final int TOTAL_BUFFER_SIZE = 1 << 26;
+    private static final int MIN_BUFFER_SIZE = 1 << 13;
+    private static final int MAX_BUFFER_SIZE = 1 << 20;
+
+    public enum KeyMode {
+        /** pages by page id */
+        PAGE_ID,
+        /** paragraphs by paragraph id */
+        PARA_ID,
+        /** paragraphs by the page id of each distinct link target; paragraphs without links are dropped */
+        LINK_TARGET
+    }
+
+    public static void usage() {
+        System.out.println("Command line parameters: (PAGE_ID|PARA_ID|LINK_TARGET) NUM_PARTITIONS OUTPUT_DIRECTORY INPUT_FILE...");
+        System.exit(-1);
+    }
+
+    public static void main(String[] args) throws IOException, InterruptedException {
+        System.setProperty("file.encoding", "UTF-8");
+        if (args.length < 4)
+            usage();
+
+        final KeyMode mode = KeyMode.valueOf(args[0]);
+        final int numPartitions = Integer.parseInt(args[1]);
+        final List<File> inputs = new ArrayList<>();
+        for (int i = 3; i < args.length; i++) {
+            inputs.add(new File(args[i]));
+        }
+        final int numThreads = Math.min(numPartitions, Runtime.getRuntime().availableProcessors());
+        final long[] counts = repartition(inputs, new File(args[2]), numPartitions, mode, numThreads);
+        System.err.println("Partition sizes: " + Arrays.toString(counts));
+    }
+
+    /**
+     * Partition of a key, stable across runs, platforms and releases of this tool.
+     */
+    public static int partitionOf(String key, int numPartitions) {
+        return (int) Long.remainderUnsigned(Data.Fingerprint.ofString(key), numPartitions);
+    }
+
+    public static File partitionFile(File outputDirectory, int partition) {
+        return new File(outputDirectory, String.format("part-%05d.cbor", partition));
+    }
+
+    /**
+     * @return number of items written to each partition
+     */
+    public static long[] repartition(List<File> inputs, File outputDirectory, int numPartitions, KeyMode mode, int numThreads) throws IOException, InterruptedException {
+        if (numPartitions < 1 || numThreads < 1) {
+            throw new IllegalArgumentException("Number of partitions and threads must be positive.");
+        }
+        if (inputs.isEmpty()) {
+            throw new IllegalArgumentException("No input files.");
+        }
+        numThreads = Math.min(numThreads, numPartitions);
+
+        final List<Header.TrecCarHeader> headers = MultiFileSource.readHeaders(inputs);
+        for (int i = 0; i < inputs.size(); i++) {
+            if (headers.get(i) == null) {
+                throw new CborFileTypeException("Input " + inputs.get(i) + " has no header, cannot create valid partitions from it.");
+            }
+        }
+        final Header.TrecCarHeader header = headers.get(0);
+        final byte[] headerBytes;
+        try (RawItemReader reader = new RawItemReader(new FileInputStream(inputs.get(0)))) {
+            headerBytes = reader.getHeaderBytes();
+        }
+        checkMode(mode, header.getFileType());
+        if (!outputDirectory.isDirectory() && !outputDirectory.mkdirs()) {
+            throw new IOException("Cannot create directory " + outputDirectory);
+        }
+        final Header.TrecCarHeader outputHeader = SerializeData.appendTransform(header, TOOL_NAME, SerializeData.toolVersion());
+        final byte[] outputHeaderBytes = SerializeData.appendTransform(headerBytes, TOOL_NAME, SerializeData.toolVersion());
+
+        final int bufferSize = Math.max(MIN_BUFFER_SIZE, Math.min(MAX_BUFFER_SIZE, TOTAL_BUFFER_SIZE / numPartitions));
+        final CarFileWriter[] writers = new CarFileWriter[numPartitions];
+        final PartitionWriterThread[] threads = new PartitionWriterThread[numThreads];
+        try {
+            for (int p = 0; p < numPartitions; p++) {
+                writers[p] = new CarFileWriter(new CborWriter(new FileOutputStream(partitionFile(outputDirectory, p)), bufferSize), outputHeader, outputHeaderBytes);
+            }
+            for (int t = 0; t < numThreads; t++) {
+                threads[t] = new PartitionWriterThread(writers);
+                threads[t].start();
+            }
+
+            final Set<Integer> targets = new TreeSet<>();
+            for (File input : inputs) {
+                try (RawItemReader reader = new RawItemReader(new FileInputStream(input))) {
+                    byte[] item;
+                    while ((item = reader.next()) != null) {
+                        targets.clear();
+                        partitionsOf(item, mode, numPartitions, targets);
+                        for (int p : targets) {
+                            threads[p % numThreads].put(new RoutedItem(p, item));
+                        }
+                    }
+                }
+            }
+            for (PartitionWriterThread thread : threads) {
+                thread.finish();
+            }
+        } finally {
+            for (PartitionWriterThread thread : threads) {
+                if (thread != null) thread.abort();
+            }
+            for (CarFileWriter writer : writers) {
+                if (writer != null) writer.close();
+            }
+        }
+
+        final long[] counts = new long[numPartitions];
+        for (int p = 0; p < numPartitions; p++) {
+            counts[p] = writers[p].getItemCount();
+        }
+        return counts;
+    }
+
+    private static void checkMode(KeyMode mode, Header.FileType fileType) {
+        final boolean paragraphs = fileType == Header.FileType.ParagraphsFile;
+        if (paragraphs == (mode == KeyMode.PAGE_ID)) {
+            throw new IllegalArgumentException("Key mode " + mode + " does not apply to a " + fileType);
+        }
+    }
+
+    private static void partitionsOf(byte[] item, KeyMode mode, int numPartitions, Set<Integer> targets) {
+        switch (mode) {
+            case PAGE_ID:
+                targets.add(partitionOf(CborBytes.pageIdOf(item), numPartitions));
+                break;
+            case PARA_ID:
+                targets.add(partitionOf(CborBytes.paraIdOf(item), numPartitions));
+                break;
+            case LINK_TARGET:
+                for (Data.ParaBody body : DeserializeData.paragraphFromBytes(item).getBodies()) {
+                    if (body instanceof Data.ParaLink) {
+                        targets.add(partitionOf(((Data.ParaLink) body).getPageId(), numPartitions));
+                    }
+                }
+                break;
+        }
+    }
+
+    private static final class RoutedItem {
+        final int partition;
+        final byte[] item;
+
+        RoutedItem(int partition, byte[] item) {
+            this.partition = partition;
+            this.item = item;
+        }
+    }
+
+    /**
+     * Writes the items of the partitions routed to it; partitions are never shared between threads.
+     */
+    private static final class PartitionWriterThread extends Thread {
+        private static final RoutedItem END = new RoutedItem(-1, null);
+        private static final long POLL_MILLIS = 100;
+
+        private final BlockingQueue<RoutedItem> queue = new ArrayBlockingQueue<>(QUEUE_CAPACITY);
+        private final CarFileWriter[] writers;
+        private volatile Throwable failure = null;
+
+        PartitionWriterThread(CarFileWriter[] writers) {
+            this.writers = writers;
+            setDaemon(true);
+        }
+
+        /**
+         * Blocks while the queue is full, but fails as soon as the thread has failed, as nothing drains the queue
+         * after that.
+         */
+        void put(RoutedItem item) throws IOException, InterruptedException {
+            checkFailure();
+            while (!queue.offer(item, POLL_MILLIS, TimeUnit.MILLISECONDS)) {
+                checkFailure();
+            }
+        }
+
+        /**
+         * Wait until all queued items are written, and rethrow the failure of the thread, if any.
+         */
+        void finish() throws IOException, InterruptedException {
+            put(END);
+            join();
+            checkFailure();
+        }
+
+        /**
+         * Stop the thread without writing the rest of the queue; does nothing once it has finished.
+         */
+        void abort() throws InterruptedException {
+            interrupt();
+            join();
+        }
+
+        private void checkFailure() throws IOException {
+            final Throwable t = failure;
+            if (t == null) return;
+            if (t instanceof IOException) throw (IOException) t;
+            if (t instanceof RuntimeException) throw (RuntimeException) t;
+            if (t instanceof Error) throw (Error) t;
+            throw new IOException(t);
+        }
+
+        @Override
+        public void run() {
+            try {
+                RoutedItem routed;
+                while ((routed = queue.take()) != END) {
+                    writers[routed.partition].writeRawItem(routed.item, 0, routed.item.length);
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            } catch (Throwable e) {
+                failure = e;
+                queue.clear();
+            }
+        }
+    }
+}
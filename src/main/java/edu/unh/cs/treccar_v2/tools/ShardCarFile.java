@@ -0,0 +1,93 @@
+package edu.unh.cs.treccar_v2.tools;
+
+import edu.unh.cs.treccar_v2.Header;
+import edu.unh.cs.treccar_v2.read_data.CborBytes;
+import edu.unh.cs.treccar_v2.read_data.CborFileTypeException;
+import edu.unh.cs.treccar_v2.read_data.RawItemReader;
+import edu.unh.cs.treccar_v2.read_data.ShardManifest;
+import edu.unh.cs.treccar_v2.write_data.CarFileWriter;
+import edu.unh.cs.treccar_v2.write_data.SerializeData;
+
+import java.io.*;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.zip.CRC32;
+import java.util.zip.CheckedOutputStream;
+
+/**
+ * Split a pages or paragraphs CAR file into N shards of roughly equal byte size, and write a {@link ShardManifest}.
+ *
+ * Items are copied as raw bytes. Shard boundaries are placed where the input offset crosses a multiple of
+ * (input size / N), so shards differ in size by at most one item.
+ */
+public class ShardCarFile {
+    public static final String TOOL_NAME = "trec-car-tools-java shard";
+
+    public static void usage() {
+        System.out.println("Command line parameters: INPUT_FILE OUTPUT_DIRECTORY NUM_SHARDS");
+        System.exit(-1);
+    }
+
+    public static void main(String[] args) throws IOException {
+        System.setProperty("file.encoding", "UTF-8");
+        if (args.length < 3)
+            usage();
+
+        final File manifestFile = shard(new File(args[0]), new File(args[1]), Integer.parseInt(args[2]));
+        System.err.println("Wrote shard manifest " + manifestFile);
+    }
+
+    /**
+     * @return manifest file, written next to the shards as INPUT_NAME.shards.tsv
+     */
+    public static File shard(File input, File outputDirectory, int numShards) throws IOException {
+        if (numShards < 1) {
+            throw new IllegalArgumentException("Number of shards must be positive, was " + numShards);
+        }
+        if (!outputDirectory.isDirectory() && !outputDirectory.mkdirs()) {
+            throw new IOException("Cannot create directory " + outputDirectory);
+        }
+        final String baseName = input.getName().replaceAll("\\.cbor$", "");
+
+        try (RawItemReader reader = new RawItemReader(new FileInputStream(input))) {
+            final Header.TrecCarHeader header = reader.getHeader();
+            if (header == null) {
+                throw new CborFileTypeException("Input has no header, cannot create valid shards from it.");
+            }
+            final Header.TrecCarHeader shardHeader = SerializeData.appendTransform(header, TOOL_NAME, SerializeData.toolVersion());
+            final byte[] shardHeaderBytes = SerializeData.appendTransform(reader.getHeaderBytes(), TOOL_NAME, SerializeData.toolVersion());
+            final boolean paragraphs = header.getFileType() == Header.FileType.ParagraphsFile;
+            final long dataBytes = Math.max(input.length() - reader.getDataOffset(), 1);
+
+            final List<ShardManifest.Shard> shards = new ArrayList<>(numShards);
+            byte[] item = reader.next();
+            for (int shardIndex = 0; shardIndex < numShards; shardIndex++) {
+                final long shardEnd = reader.getDataOffset() + (dataBytes * (shardIndex + 1)) / numShards;
+                final String path = String.format("%s.shard-%05d.cbor", baseName, shardIndex);
+                final CRC32 crc = new CRC32();
+                final CheckedOutputStream out = new CheckedOutputStream(new FileOutputStream(new File(outputDirectory, path)), crc);
+
+                String firstKey = "";
+                String lastKey = "";
+                final CarFileWriter writer = new CarFileWriter(out, shardHeader, shardHeaderBytes);
+                try {
+                    // the last shard takes everything that is left
+                    while (item != null && (reader.getItemOffset() < shardEnd || shardIndex == numShards - 1)) {
+                        lastKey = CborBytes.keyOf(item, paragraphs);
+                        if (writer.getItemCount() == 0) firstKey = lastKey;
+                        writer.writeRawItem(item, 0, item.length);
+                        item = reader.next();
+                    }
+                } finally {
+                    writer.close();
+                }
+                final long byteSize = new File(outputDirectory, path).length();
+                shards.add(new ShardManifest.Shard(path, writer.getItemCount(), byteSize, firstKey, lastKey, crc.getValue()));
+            }
+
+            final File manifestFile = new File(outputDirectory, baseName + ".shards.tsv");
+            new ShardManifest(outputDirectory, header.getFileType(), shards).save(manifestFile);
+            return manifestFile;
+        }
+    }
+}
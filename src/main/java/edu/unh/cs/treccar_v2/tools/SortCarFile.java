@@ -0,0 +1,297 @@
+package edu.unh.cs.treccar_v2.tools;
+
+import edu.unh.cs.treccar_v2.Header;
+import edu.unh.cs.treccar_v2.read_data.CborBytes;
+import edu.unh.cs.treccar_v2.read_data.CborFileTypeException;
+import edu.unh.cs.treccar_v2.read_data.RawItemReader;
+import edu.unh.cs.treccar_v2.write_data.CarFileWriter;
+import edu.unh.cs.treccar_v2.write_data.SerializeData;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.util.*;
+import java.util.concurrent.*;
+
+/**
+ * Sort the items of a CAR file by page id (or paragraph id, for paragraph files) within a memory budget.
+ *
+ * Items are collected into batches of a fraction of the budget; full batches are sorted and written as runs to
+ * temporary files by a thread pool while the next batch is read. The runs are then k-way merged into the output.
+ * Keys are ordered by {@link String#compareTo(String)}; items with equal keys keep their input order, and with
+ * deduplication only the first of them is kept. Items are copied as raw bytes.
+ */
+public class SortCarFile {
+    public static final String TOOL_NAME = "trec-car-tools-java sort";
+    public static final long DEFAULT_MEMORY_BUDGET = 512L << 20;
+    private static final int MAX_FAN_IN = 128;
+    /** estimated heap use per item besides its bytes */
+    private static final int ITEM_OVERHEAD = 96;
+
+    public static void usage() {
+        System.out.println("Command line parameters: INPUT_FILE OUTPUT_FILE [MEMORY_BUDGET_MB] [dedup]");
+        System.exit(-1);
+    }
+
+    public static void main(String[] args) throws IOException, InterruptedException {
+        System.setProperty("file.encoding", "UTF-8");
+        if (args.length < 2)
+            usage();
+
+        final long memoryBudget = args.length > 2 ? Long.parseLong(args[2]) << 20 : DEFAULT_MEMORY_BUDGET;
+        final boolean dedup = args.length > 3 && "dedup".equals(args[3]);
+        final int numThreads = Runtime.getRuntime().availableProcessors();
+        try (InputStream inputStream = new BufferedInputStream(new FileInputStream(new File(args[0])), 1 << 16);
+             OutputStream outputStream = new BufferedOutputStream(new FileOutputStream(new File(args[1])), 1 << 20)) {
+            final long count = sort(inputStream, outputStream, memoryBudget, dedup, numThreads, null);
+            System.err.println("Wrote " + count + " sorted items.");
+        }
+    }
+
+    /**
+     * @param tempDirectory directory for sorted runs, or null for the system default
+     * @return number of items written
+     */
+    public static long sort(InputStream inputStream, OutputStream outputStream, long memoryBudget, boolean dedup,
+                            int numThreads, File tempDirectory) throws IOException, InterruptedException {
+        final RawItemReader reader = new RawItemReader(inputStream);
+        final Header.TrecCarHeader header = reader.getHeader();
+        if (header == null) {
+            throw new CborFileTypeException("Input has no header, cannot create a valid CAR file from it.");
+        }
+        final boolean paragraphs = header.getFileType() == Header.FileType.ParagraphsFile;
+        // up to numThreads batches are being sorted and written while one more is filled
+        final long batchBudget = Math.max(memoryBudget / (numThreads + 1), 1);
+
+        final ExecutorService executor = Executors.newFixedThreadPool(numThreads);
+        final List<File> runs = new ArrayList<>();
+        try (CarFileWriter writer = new CarFileWriter(outputStream, SerializeData.appendTransform(header, TOOL_NAME, SerializeData.toolVersion()),
+                SerializeData.appendTransform(reader.getHeaderBytes(), TOOL_NAME, SerializeData.toolVersion()))) {
+            final Deque<Future<File>> pending = new ArrayDeque<>();
+            List<KeyedItem> batch = new ArrayList<>();
+            long batchBytes = 0;
+            byte[] item;
+            while ((item = reader.next()) != null) {
+                batch.add(new KeyedItem(CborBytes.keyOf(item, paragraphs), item));
+                batchBytes += item.length + ITEM_OVERHEAD;
+                if (batchBytes >= batchBudget) {
+                    if (pending.size() == numThreads) {
+                        runs.add(await(pending.removeFirst()));
+                    }
+                    pending.addLast(executor.submit(new RunTask(batch, tempDirectory)));
+                    batch = new ArrayList<>();
+                    batchBytes = 0;
+                }
+            }
+
+            if (runs.isEmpty() && pending.isEmpty()) {
+                // everything fits into memory
+                Collections.sort(batch);
+                writeDistinct(batch.iterator(), writer, dedup);
+            } else {
+                if (!batch.isEmpty()) {
+                    pending.addLast(executor.submit(new RunTask(batch, tempDirectory)));
+                }
+                batch = null;
+                while (!pending.isEmpty()) {
+                    runs.add(await(pending.removeFirst()));
+                }
+                while (runs.size() > MAX_FAN_IN) {
+                    mergeRound(runs, tempDirectory);
+                }
+                writeDistinct(new MergeIterator(runs), writer, dedup);
+            }
+            return writer.getItemCount();
+        } finally {
+            executor.shutdownNow();
+            for (File run : runs) {
+                run.delete();
+            }
+        }
+    }
+
+    private static File await(Future<File> future) throws IOException, InterruptedException {
+        try {
+            return future.get();
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof IOException) throw (IOException) e.getCause();
+            throw new RuntimeException(e.getCause());
+        }
+    }
+
+    private static void writeDistinct(Iterator<KeyedItem> items, CarFileWriter writer, boolean dedup) throws IOException {
+        String lastKey = null;
+        while (items.hasNext()) {
+            final KeyedItem item = items.next();
+            if (dedup && item.key.equals(lastKey)) continue;
+            writer.writeRawItem(item.item, 0, item.item.length);
+            lastKey = item.key;
+        }
+    }
+
+    /**
+     * Replace each group of up to {@link #MAX_FAN_IN} consecutive runs by their merge, keeping the run order stable.
+     * Every item is rewritten once per round, and the number of runs shrinks by the fan-in.
+     */
+    private static void mergeRound(List<File> runs, File tempDirectory) throws IOException {
+        for (int i = 0; i < runs.size(); i++) {
+            final List<File> range = runs.subList(i, Math.min(i + MAX_FAN_IN, runs.size()));
+            if (range.size() > 1) {
+                final List<File> group = new ArrayList<>(range);
+                final File merged = File.createTempFile("car-sort-", ".run", tempDirectory);
+                range.clear();
+                runs.add(i, merged);
+                mergeRuns(group, merged);
+            }
+        }
+    }
+
+    private static void mergeRuns(List<File> group, File merged) throws IOException {
+        try (DataOutputStream out = openRun(merged)) {
+            final MergeIterator items = new MergeIterator(group);
+            while (items.hasNext()) {
+                items.next().writeTo(out);
+            }
+            out.writeInt(-1);
+        } finally {
+            for (File run : group) {
+                run.delete();
+            }
+        }
+    }
+
+    private static DataOutputStream openRun(File file) throws IOException {
+        return new DataOutputStream(new BufferedOutputStream(new FileOutputStream(file), 1 << 16));
+    }
+
+    private static final class KeyedItem implements Comparable<KeyedItem> {
+        final String key;
+        final byte[] item;
+
+        KeyedItem(String key, byte[] item) {
+            this.key = key;
+            this.item = item;
+        }
+
+        @Override
+        public int compareTo(KeyedItem o) {
+            return key.compareTo(o.key);
+        }
+
+        /**
+         * Run record: key length, key (UTF-8), item length, item. A run ends with a key length of -1.
+         */
+        void writeTo(DataOutputStream out) throws IOException {
+            final byte[] keyBytes = key.getBytes(StandardCharsets.UTF_8);
+            out.writeInt(keyBytes.length);
+            out.write(keyBytes);
+            out.writeInt(item.length);
+            out.write(item);
+        }
+
+        static KeyedItem readFrom(DataInputStream in) throws IOException {
+            final int keyLength = in.readInt();
+            if (keyLength < 0) return null;
+            final byte[] keyBytes = new byte[keyLength];
+            in.readFully(keyBytes);
+            final byte[] item = new byte[in.readInt()];
+            in.readFully(item);
+            return new KeyedItem(new String(keyBytes, StandardCharsets.UTF_8), item);
+        }
+    }
+
+    /**
+     * Sorts a batch (stable) and writes it to a temporary run file.
+     */
+    private static final class RunTask implements Callable<File> {
+        private final List<KeyedItem> batch;
+        private final File tempDirectory;
+
+        RunTask(List<KeyedItem> batch, File tempDirectory) {
+            this.batch = batch;
+            this.tempDirectory = tempDirectory;
+        }
+
+        @Override
+        public File call() throws IOException {
+            Collections.sort(batch);
+            final File run = File.createTempFile("car-sort-", ".run", tempDirectory);
+            try (DataOutputStream out = openRun(run)) {
+                for (KeyedItem item : batch) {
+                    item.writeTo(out);
+                }
+                out.writeInt(-1);
+            }
+            return run;
+        }
+    }
+
+    private static final class RunReader implements Closeable {
+        final int index;
+        private final DataInputStream in;
+        KeyedItem head;
+
+        RunReader(int index, File file) throws IOException {
+            this.index = index;
+            this.in = new DataInputStream(new BufferedInputStream(new FileInputStream(file), 1 << 16));
+            advance();
+        }
+
+        void advance() throws IOException {
+            head = KeyedItem.readFrom(in);
+        }
+
+        @Override
+        public void close() throws IOException {
+            in.close();
+        }
+    }
+
+    /**
+     * K-way merge of sorted runs; on equal keys, earlier runs come first.
+     */
+    private static final class MergeIterator implements Iterator<KeyedItem> {
+        private final PriorityQueue<RunReader> queue;
+
+        MergeIterator(List<File> runs) throws IOException {
+            queue = new PriorityQueue<>(Math.max(runs.size(), 1), new Comparator<RunReader>() {
+                @Override
+                public int compare(RunReader o1, RunReader o2) {
+                    final int cmp = o1.head.compareTo(o2.head);
+                    return cmp != 0 ? cmp : Integer.compare(o1.index, o2.index);
+                }
+            });
+            for (int i = 0; i < runs.size(); i++) {
+                final RunReader run = new RunReader(i, runs.get(i));
+                if (run.head != null) queue.add(run);
+                else run.close();
+            }
+        }
+
+        @Override
+        public boolean hasNext() {
+            return !queue.isEmpty();
+        }
+
+        @Override
+        public KeyedItem next() {
+            final RunReader run = queue.poll();
+            if (run == null) {
+                throw new NoSuchElementException();
+            }
+            final KeyedItem item = run.head;
+            try {
+                run.advance();
+                if (run.head != null) queue.add(run);
+                else run.close();
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+            return item;
+        }
+
+        @Override
+        public void remove() {
+            throw new UnsupportedOperationException("Read-only iterator.");
+        }
+    }
+}
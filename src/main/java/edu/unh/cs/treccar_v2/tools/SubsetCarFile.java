@@ -0,0 +1,100 @@
+package edu.unh.cs.treccar_v2.tools;
+
+import edu.unh.cs.treccar_v2.Header;
+import edu.unh.cs.treccar_v2.read_data.CborBytes;
+import edu.unh.cs.treccar_v2.read_data.CborFileTypeException;
+import edu.unh.cs.treccar_v2.read_data.RawItemReader;
+import edu.unh.cs.treccar_v2.write_data.CarFileWriter;
+import edu.unh.cs.treccar_v2.write_data.SerializeData;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.util.HashSet;
+import java.util.Set;
+
+/**
+ * Extract a subset of pages or paragraphs from a CAR file into a new CAR file.
+ *
+ * Selected items are copied as raw bytes, without decoding and re-encoding them; the header is copied with an
+ * additional transform.
+ */
+public class SubsetCarFile {
+    public static final String TOOL_NAME = "trec-car-tools-java subset";
+
+    public static void usage() {
+        System.out.println("Command line parameters: INPUT_FILE OUTPUT_FILE ID_FILE");
+        System.out.println("  ID_FILE contains one page id (for pages/outlines files) or paragraph id (for paragraph files) per line.");
+        System.exit(-1);
+    }
+
+    public static void main(String[] args) throws IOException {
+        System.setProperty("file.encoding", "UTF-8");
+        if (args.length < 3)
+            usage();
+
+        final Set<String> ids = readIds(new File(args[2]));
+        try (InputStream inputStream = new FileInputStream(new File(args[0]));
+             OutputStream outputStream = new FileOutputStream(new File(args[1]))) {
+            final long count = subset(inputStream, outputStream, ids);
+            System.err.println("Wrote " + count + " of " + ids.size() + " requested items.");
+        }
+    }
+
+    static Set<String> readIds(File file) throws IOException {
+        final Set<String> ids = new HashSet<>();
+        try (BufferedReader reader = new BufferedReader(new InputStreamReader(new FileInputStream(file), StandardCharsets.UTF_8))) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                line = line.trim();
+                if (!line.isEmpty()) ids.add(line);
+            }
+        }
+        return ids;
+    }
+
+    /**
+     * Copy all items whose page id (or paragraph id, for paragraph files) is contained in the set.
+     * @return number of items written
+     */
+    public static long subset(InputStream inputStream, OutputStream outputStream, final Set<String> ids) throws IOException {
+        return subset(inputStream, outputStream, new ItemFilter() {
+            @Override
+            public boolean accept(String key, byte[] item) {
+                return ids.contains(key);
+            }
+        });
+    }
+
+    public interface ItemFilter {
+        /**
+         * @param key page id, or paragraph id for paragraph files
+         * @param item raw item, see {@link CborBytes} to access further fields without decoding
+         * @return true to include the item
+         */
+        boolean accept(String key, byte[] item);
+    }
+
+    /**
+     * Copy all items accepted by the filter.
+     * @return number of items written
+     */
+    public static long subset(InputStream inputStream, OutputStream outputStream, ItemFilter filter) throws IOException {
+        final RawItemReader reader = new RawItemReader(inputStream);
+        final Header.TrecCarHeader header = reader.getHeader();
+        if (header == null) {
+            throw new CborFileTypeException("Input has no header, cannot create a valid CAR file from it.");
+        }
+        final boolean paragraphs = header.getFileType() == Header.FileType.ParagraphsFile;
+
+        try (CarFileWriter writer = new CarFileWriter(outputStream, SerializeData.appendTransform(header, TOOL_NAME, SerializeData.toolVersion()),
+                SerializeData.appendTransform(reader.getHeaderBytes(), TOOL_NAME, SerializeData.toolVersion()))) {
+            byte[] item;
+            while ((item = reader.next()) != null) {
+                if (filter.accept(CborBytes.keyOf(item, paragraphs), item)) {
+                    writer.writeRawItem(item, 0, item.length);
+                }
+            }
+            return writer.getItemCount();
+        }
+    }
+}
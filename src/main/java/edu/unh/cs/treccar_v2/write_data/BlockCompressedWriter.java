@@ -0,0 +1,206 @@
+package edu.unh.cs.treccar_v2.write_data;
+
+import edu.unh.cs.treccar_v2.Data;
+import edu.unh.cs.treccar_v2.Header;
+import edu.unh.cs.treccar_v2.read_data.BlockIndex;
+
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.concurrent.*;
+import java.util.zip.CRC32;
+import java.util.zip.Deflater;
+
+/**
+ * Streaming writer for block-compressed CAR files, see {@link edu.unh.cs.treccar_v2.read_data.BlockCompressedFile}.
+ *
+ * Items are collected into blocks of about {@code blockSize} uncompressed bytes, never splitting an item. Blocks are
+ * compressed on a thread pool and written in order; the block index is available from {@link #getIndex()} and
+ * should be saved next to the container (see {@link BlockIndex#indexFileOf}).
+ */
+public final class BlockCompressedWriter implements Closeable {
+    public static final int DEFAULT_BLOCK_SIZE = 1 << 16;
+
+    private final OutputStream outputStream;
+    private final Header.TrecCarHeader header;
+    private final int blockSize;
+    private final int compressionLevel;
+    private final ExecutorService executor;
+    private final int maxPending;
+    private final Deque<Future<byte[]>> pending = new ArrayDeque<>();
+    private final Deque<Integer> pendingCounts = new ArrayDeque<>();
+    private final BlockIndex index = new BlockIndex();
+    private long compressedOffset = 0;
+
+    private final ByteArrayOutputStream block;
+    private final CborWriter writer;
+    private int blockItems = 0;
+    private long itemCount = 0;
+    private boolean closed = false;
+
+    public BlockCompressedWriter(OutputStream outputStream, Header.TrecCarHeader header) throws IOException {
+        this(outputStream, header, DEFAULT_BLOCK_SIZE, Deflater.DEFAULT_COMPRESSION, Runtime.getRuntime().availableProcessors());
+    }
+
+    public BlockCompressedWriter(OutputStream outputStream, Header.TrecCarHeader header, int blockSize, int compressionLevel, int numThreads) throws IOException {
+        this(outputStream, header, null, blockSize, compressionLevel, numThreads);
+    }
+
+    /**
+     * @param headerBytes header as encoded in the input file (see {@link edu.unh.cs.treccar_v2.read_data.RawItemReader#getHeaderBytes()}),
+     *                    copied unchanged so that decompressing restores the input byte for byte; or null to encode
+     *                    {@code header}
+     */
+    public BlockCompressedWriter(OutputStream outputStream, Header.TrecCarHeader header, byte[] headerBytes, int blockSize, int compressionLevel, int numThreads) throws IOException {
+        this.outputStream = outputStream;
+        this.header = header;
+        this.blockSize = blockSize;
+        this.compressionLevel = compressionLevel;
+        this.executor = Executors.newFixedThreadPool(numThreads);
+        this.maxPending = 2 * numThreads;
+        this.block = new ByteArrayOutputStream(blockSize + (blockSize >> 2));
+        this.writer = new CborWriter(block, 1 << 12);
+
+        // the header gets a block of its own, so that the first data block starts at item 0
+        if (headerBytes != null) {
+            writer.writeRaw(headerBytes, 0, headerBytes.length);
+        } else {
+            SerializeData.headerToCbor(writer, header);
+        }
+        writer.writeIndefiniteArrayHeader();
+        sealBlock();
+    }
+
+    public Header.TrecCarHeader getHeader() {
+        return header;
+    }
+
+    public void writePage(Data.Page page) throws IOException {
+        SerializeData.pageToCbor(writer, page);
+        itemWritten();
+    }
+
+    public void writeParagraph(Data.Paragraph paragraph) throws IOException {
+        SerializeData.paragraphToCbor(writer, paragraph);
+        itemWritten();
+    }
+
+    /**
+     * Copy an item that is already CBOR encoded, e.g. read with {@link edu.unh.cs.treccar_v2.read_data.RawItemReader}.
+     */
+    public void writeRawItem(byte[] bytes, int offset, int length) throws IOException {
+        writer.writeRaw(bytes, offset, length);
+        itemWritten();
+    }
+
+    private void itemWritten() throws IOException {
+        blockItems++;
+        itemCount++;
+        writer.flush();
+        if (block.size() >= blockSize) {
+            sealBlock();
+        }
+    }
+
+    public long getItemCount() {
+        return itemCount;
+    }
+
+    /**
+     * Index of all blocks written so far; complete after {@link #close()}.
+     */
+    public BlockIndex getIndex() {
+        return index;
+    }
+
+    private void sealBlock() throws IOException {
+        writer.flush();
+        final byte[] data = block.toByteArray();
+        block.reset();
+        final int items = blockItems;
+        blockItems = 0;
+
+        if (pending.size() >= maxPending) {
+            writeCompleted();
+        }
+        pending.addLast(executor.submit(new Callable<byte[]>() {
+            @Override
+            public byte[] call() {
+                return compressBlock(data, items, compressionLevel);
+            }
+        }));
+        pendingCounts.addLast(items);
+    }
+
+    private void writeCompleted() throws IOException {
+        final byte[] member;
+        try {
+            member = pending.removeFirst().get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException(e);
+        } catch (ExecutionException e) {
+            throw new IOException(e.getCause());
+        }
+        outputStream.write(member);
+        index.add(compressedOffset, member.length, pendingCounts.removeFirst());
+        compressedOffset += member.length;
+    }
+
+    /**
+     * Compress data into a gzip member with a 'C','R' extra subfield holding member size and item count.
+     */
+    static byte[] compressBlock(byte[] data, int itemCount, int compressionLevel) {
+        final Deflater deflater = new Deflater(compressionLevel, true);
+        final ByteArrayOutputStream compressed = new ByteArrayOutputStream(data.length / 2 + 64);
+        try {
+            deflater.setInput(data);
+            deflater.finish();
+            final byte[] buffer = new byte[1 << 16];
+            while (!deflater.finished()) {
+                final int n = deflater.deflate(buffer);
+                compressed.write(buffer, 0, n);
+            }
+        } finally {
+            deflater.end();
+        }
+
+        final int memberSize = 12 + 12 + compressed.size() + 8;
+        final ByteBuffer member = ByteBuffer.allocate(memberSize).order(ByteOrder.LITTLE_ENDIAN);
+        member.put((byte) 0x1f).put((byte) 0x8b).put((byte) 8).put((byte) 4); // ID1 ID2 CM=deflate FLG=FEXTRA
+        member.putInt(0).put((byte) 0).put((byte) 0xff);                     // MTIME XFL OS=unknown
+        member.putShort((short) 12);                                          // XLEN
+        member.put((byte) 'C').put((byte) 'R').putShort((short) 8);
+        member.putInt(memberSize).putInt(itemCount);
+        member.put(compressed.toByteArray());
+        final CRC32 crc = new CRC32();
+        crc.update(data, 0, data.length);
+        member.putInt((int) crc.getValue()).putInt(data.length);
+        return member.array();
+    }
+
+    /**
+     * Write the last block including the end of the item array, and wait for all blocks to be written.
+     */
+    @Override
+    public void close() throws IOException {
+        if (closed) return;
+        closed = true;
+        try {
+            writer.writeBreak();
+            sealBlock();
+            while (!pending.isEmpty()) {
+                writeCompleted();
+            }
+            outputStream.flush();
+        } finally {
+            executor.shutdownNow();
+            outputStream.close();
+        }
+    }
+}
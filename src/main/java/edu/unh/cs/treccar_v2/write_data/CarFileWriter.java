@@ -0,0 +1,107 @@
+package edu.unh.cs.treccar_v2.write_data;
+
+import edu.unh.cs.treccar_v2.Data;
+import edu.unh.cs.treccar_v2.Header;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.OutputStream;
+
+/**
+ * Streaming writer for a complete TREC CAR file: header, followed by an indefinite array of pages or paragraphs.
+ *
+ * The array is terminated on {@link #close()}; a file that was not closed is truncated.
+ */
+public final class CarFileWriter implements Closeable {
+    private final CborWriter writer;
+    private final Header.TrecCarHeader header;
+    private long itemCount = 0;
+    private boolean closed = false;
+
+    /**
+     * @param header header for the new file, see {@link SerializeData#appendTransform} to document how it was derived.
+     */
+    public CarFileWriter(OutputStream outputStream, Header.TrecCarHeader header) throws IOException {
+        this(new CborWriter(outputStream), header, null);
+    }
+
+    /**
+     * @param headerBytes header as encoded in the input file (see {@link edu.unh.cs.treccar_v2.read_data.RawItemReader#getHeaderBytes()}),
+     *                    copied unchanged; or null to encode {@code header}
+     */
+    public CarFileWriter(OutputStream outputStream, Header.TrecCarHeader header, byte[] headerBytes) throws IOException {
+        this(new CborWriter(outputStream), header, headerBytes);
+    }
+
+    public CarFileWriter(CborWriter writer, Header.TrecCarHeader header) throws IOException {
+        this(writer, header, null);
+    }
+
+    public CarFileWriter(CborWriter writer, Header.TrecCarHeader header, byte[] headerBytes) throws IOException {
+        this.writer = writer;
+        this.header = header;
+        if (headerBytes != null) {
+            writer.writeRaw(headerBytes, 0, headerBytes.length);
+        } else {
+            SerializeData.headerToCbor(writer, header);
+        }
+        writer.writeIndefiniteArrayHeader();
+    }
+
+    public Header.TrecCarHeader getHeader() {
+        return header;
+    }
+
+    public void writePage(Data.Page page) throws IOException {
+        checkFileType(false);
+        SerializeData.pageToCbor(writer, page);
+        itemCount++;
+    }
+
+    public void writeParagraph(Data.Paragraph paragraph) throws IOException {
+        checkFileType(true);
+        SerializeData.paragraphToCbor(writer, paragraph);
+        itemCount++;
+    }
+
+    /**
+     * Copy an item that is already CBOR encoded, e.g. read from another file of the same type.
+     */
+    public void writeRawItem(byte[] bytes, int offset, int length) throws IOException {
+        writer.writeRaw(bytes, offset, length);
+        itemCount++;
+    }
+
+    public long getItemCount() {
+        return itemCount;
+    }
+
+    /**
+     * Number of bytes written so far (without the final array terminator).
+     */
+    public long getBytesWritten() {
+        return writer.getBytesWritten();
+    }
+
+    private void checkFileType(boolean paragraphs) {
+        final Header.FileType fileType = header.getFileType();
+        if (fileType != null && (fileType == Header.FileType.ParagraphsFile) != paragraphs) {
+            throw new IllegalStateException("Cannot write " + (paragraphs ? "paragraphs" : "pages") + " into " + fileType);
+        }
+    }
+
+    public void flush() throws IOException {
+        writer.flush();
+    }
+
+    @Override
+    public void close() throws IOException {
+        if (closed) return;
+        closed = true;
+        try {
+            writer.writeBreak();
+        } finally {
+            writer.close();
+        }
+    }
+}
@@ -0,0 +1,211 @@
+package edu.unh.cs.treccar_v2.write_data;
+
+import java.io.Closeable;
+import java.io.Flushable;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Low-level streaming CBOR encoder writing directly into a reusable byte buffer.
+ *
+ * Only the subset of CBOR used by TREC CAR files is supported: unsigned integers, text and byte strings,
+ * definite and indefinite arrays.
+ */
+public final class CborWriter implements Closeable, Flushable {
+    public static final int DEFAULT_BUFFER_SIZE = 1 << 16;
+
+    private static final int MAJOR_UNSIGNED = 0;
+    private static final int MAJOR_BYTE_STRING = 2;
+    private static final int MAJOR_TEXT_STRING = 3;
+    private static final int MAJOR_ARRAY = 4;
+    private static final int INDEFINITE_ARRAY = 0x9f;
+    private static final int BREAK = 0xff;
+
+    private final OutputStream out;
+    private final byte[] buffer;
+    private int position = 0;
+    private long flushedBytes = 0;
+
+    public CborWriter(OutputStream out) {
+        this(out, DEFAULT_BUFFER_SIZE);
+    }
+
+    public CborWriter(OutputStream out, int bufferSize) {
+        this.out = out;
+        this.buffer = new byte[Math.max(bufferSize, 16)];
+    }
+
+    /**
+     * Number of bytes written so far, including bytes still held in the buffer.
+     */
+    public long getBytesWritten() {
+        return flushedBytes + position;
+    }
+
+    public void writeUnsignedInteger(long value) throws IOException {
+        writeHead(MAJOR_UNSIGNED, value);
+    }
+
+    public void writeArrayHeader(long length) throws IOException {
+        writeHead(MAJOR_ARRAY, length);
+    }
+
+    /**
+     * Start an array of unknown length; terminate it with {@link #writeBreak()}.
+     */
+    public void writeIndefiniteArrayHeader() throws IOException {
+        ensure(1);
+        buffer[position++] = (byte) INDEFINITE_ARRAY;
+    }
+
+    public void writeBreak() throws IOException {
+        ensure(1);
+        buffer[position++] = (byte) BREAK;
+    }
+
+    public void writeTextString(String s) throws IOException {
+        writeUtf8(MAJOR_TEXT_STRING, s);
+    }
+
+    /**
+     * Write the UTF-8 encoding of the string as CBOR byte string (as used for page ids and paragraph ids).
+     */
+    public void writeByteString(String s) throws IOException {
+        writeUtf8(MAJOR_BYTE_STRING, s);
+    }
+
+    public void writeByteString(byte[] bytes, int offset, int length) throws IOException {
+        writeHead(MAJOR_BYTE_STRING, length);
+        writeRaw(bytes, offset, length);
+    }
+
+    /**
+     * Write bytes that already are valid CBOR, e.g. an item copied from another file.
+     */
+    public void writeRaw(byte[] bytes, int offset, int length) throws IOException {
+        if (length > buffer.length - position) {
+            flushBuffer();
+            if (length > buffer.length) {
+                out.write(bytes, offset, length);
+                flushedBytes += length;
+                return;
+            }
+        }
+        System.arraycopy(bytes, offset, buffer, position, length);
+        position += length;
+    }
+
+    private void writeHead(int majorType, long value) throws IOException {
+        ensure(9);
+        final int major = majorType << 5;
+        if (value < 24) {
+            buffer[position++] = (byte) (major | (int) value);
+        } else if (value <= 0xffL) {
+            buffer[position++] = (byte) (major | 24);
+            buffer[position++] = (byte) value;
+        } else if (value <= 0xffffL) {
+            buffer[position++] = (byte) (major | 25);
+            buffer[position++] = (byte) (value >>> 8);
+            buffer[position++] = (byte) value;
+        } else if (value <= 0xffffffffL) {
+            buffer[position++] = (byte) (major | 26);
+            buffer[position++] = (byte) (value >>> 24);
+            buffer[position++] = (byte) (value >>> 16);
+            buffer[position++] = (byte) (value >>> 8);
+            buffer[position++] = (byte) value;
+        } else {
+            buffer[position++] = (byte) (major | 27);
+            for (int shift = 56; shift >= 0; shift -= 8) {
+                buffer[position++] = (byte) (value >>> shift);
+            }
+        }
+    }
+
+    /**
+     * Encodes the string as UTF-8 straight into the buffer. Unpaired surrogates become '?', like {@link String#getBytes}.
+     */
+    private void writeUtf8(int majorType, String s) throws IOException {
+        final int length = utf8Length(s);
+        writeHead(majorType, length);
+        if (length > buffer.length) {
+            final byte[] bytes = s.getBytes(StandardCharsets.UTF_8);
+            writeRaw(bytes, 0, bytes.length);
+            return;
+        }
+        ensure(length);
+        final byte[] buf = buffer;
+        int pos = position;
+        final int n = s.length();
+        for (int i = 0; i < n; i++) {
+            final char c = s.charAt(i);
+            if (c < 0x80) {
+                buf[pos++] = (byte) c;
+            } else if (c < 0x800) {
+                buf[pos++] = (byte) (0xc0 | (c >> 6));
+                buf[pos++] = (byte) (0x80 | (c & 0x3f));
+            } else if (Character.isHighSurrogate(c) && i + 1 < n && Character.isLowSurrogate(s.charAt(i + 1))) {
+                final int cp = Character.toCodePoint(c, s.charAt(++i));
+                buf[pos++] = (byte) (0xf0 | (cp >> 18));
+                buf[pos++] = (byte) (0x80 | ((cp >> 12) & 0x3f));
+                buf[pos++] = (byte) (0x80 | ((cp >> 6) & 0x3f));
+                buf[pos++] = (byte) (0x80 | (cp & 0x3f));
+            } else if (Character.isSurrogate(c)) {
+                buf[pos++] = (byte) '?';
+            } else {
+                buf[pos++] = (byte) (0xe0 | (c >> 12));
+                buf[pos++] = (byte) (0x80 | ((c >> 6) & 0x3f));
+                buf[pos++] = (byte) (0x80 | (c & 0x3f));
+            }
+        }
+        position = pos;
+    }
+
+    private static int utf8Length(String s) {
+        final int n = s.length();
+        int length = n;
+        for (int i = 0; i < n; i++) {
+            final char c = s.charAt(i);
+            if (c >= 0x80) {
+                if (c < 0x800) {
+                    length += 1;
+                } else if (Character.isHighSurrogate(c) && i + 1 < n && Character.isLowSurrogate(s.charAt(i + 1))) {
+                    length += 2;  // four bytes for two chars
+                    i++;
+                } else if (!Character.isSurrogate(c)) {
+                    length += 2;
+                }
+            }
+        }
+        return length;
+    }
+
+    private void ensure(int bytes) throws IOException {
+        if (buffer.length - position < bytes) {
+            flushBuffer();
+        }
+    }
+
+    private void flushBuffer() throws IOException {
+        if (position > 0) {
+            out.write(buffer, 0, position);
+            flushedBytes += position;
+            position = 0;
+        }
+    }
+
+    @Override
+    public void flush() throws IOException {
+        flushBuffer();
+        out.flush();
+    }
+
+    @Override
+    public void close() throws IOException {
+        try {
+            flushBuffer();
+        } finally {
+            out.close();
+        }
+    }
+}
@@ -0,0 +1,111 @@
+package edu.unh.cs.treccar_v2.write_data;
+
+import edu.unh.cs.treccar_v2.Data;
+import edu.unh.cs.treccar_v2.Header;
+import edu.unh.cs.treccar_v2.read_data.DeltaFileReader;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.OutputStream;
+
+/**
+ * Streaming writer for delta files, see {@link DeltaFileReader} for the format.
+ *
+ * Entries must be written in strictly ascending key order ({@link String#compareTo(String)}).
+ */
+public final class DeltaFileWriter implements Closeable {
+    private final CborWriter writer;
+    private final Header.TrecCarHeader header;
+    private String lastKey = null;
+    private long entryCount = 0;
+    private boolean closed = false;
+
+    /**
+     * @param header header of the new file
+     * @param base base file the delta is created from, see {@link DeltaFileReader.Base#of}
+     */
+    public DeltaFileWriter(OutputStream outputStream, Header.TrecCarHeader header, DeltaFileReader.Base base) throws IOException {
+        this(outputStream, header, null, base);
+    }
+
+    /**
+     * @param header header of the new file
+     * @param headerBytes header as encoded in the new file (see {@link edu.unh.cs.treccar_v2.read_data.RawItemReader#getHeaderBytes()}),
+     *                    stored unchanged apart from the magic word, so that applying the delta reproduces it byte for
+     *                    byte; or null to encode {@code header}
+     * @param base base file the delta is created from, see {@link DeltaFileReader.Base#of}
+     */
+    public DeltaFileWriter(OutputStream outputStream, Header.TrecCarHeader header, byte[] headerBytes, DeltaFileReader.Base base) throws IOException {
+        if (base == null || base.getDataReleaseName() == null) {
+            throw new IllegalArgumentException("A delta must record its base.");
+        }
+        this.writer = new CborWriter(outputStream);
+        this.header = header;
+        final byte[] deltaHeader = DeltaFileReader.replaceMagicWord(headerBytes, "CAR", DeltaFileReader.MAGIC_WORD);
+        if (deltaHeader != null && deltaHeader[0] == (byte) 0x83) {
+            // same header with one more element
+            writer.writeArrayHeader(4);
+            writer.writeRaw(deltaHeader, 1, deltaHeader.length - 1);
+        } else {
+            SerializeData.headerToCbor(writer, DeltaFileReader.MAGIC_WORD, header, 1);
+        }
+        writer.writeArrayHeader(4);
+        writer.writeUnsignedInteger(0);
+        writer.writeTextString(base.getDataReleaseName());
+        writer.writeUnsignedInteger(base.getItemCount());
+        writer.writeUnsignedInteger(base.getChecksum());
+        writer.writeIndefiniteArrayHeader();
+    }
+
+    public Header.TrecCarHeader getHeader() {
+        return header;
+    }
+
+    public void writeRemove(String key) throws IOException {
+        entryHead(DeltaFileReader.Op.REMOVE, key);
+    }
+
+    /**
+     * @param bytes raw item, e.g. read with {@link edu.unh.cs.treccar_v2.read_data.RawItemReader}
+     */
+    public void writeUpsert(String key, byte[] bytes, int offset, int length) throws IOException {
+        entryHead(DeltaFileReader.Op.UPSERT, key);
+        writer.writeRaw(bytes, offset, length);
+    }
+
+    public void writeUpsert(Data.Page page) throws IOException {
+        entryHead(DeltaFileReader.Op.UPSERT, page.getPageId());
+        SerializeData.pageToCbor(writer, page);
+    }
+
+    public void writeUpsert(Data.Paragraph paragraph) throws IOException {
+        entryHead(DeltaFileReader.Op.UPSERT, paragraph.getParaId());
+        SerializeData.paragraphToCbor(writer, paragraph);
+    }
+
+    private void entryHead(DeltaFileReader.Op op, String key) throws IOException {
+        if (lastKey != null && lastKey.compareTo(key) >= 0) {
+            throw new IllegalStateException("Delta entries must be sorted by key, but " + key + " follows " + lastKey);
+        }
+        lastKey = key;
+        writer.writeArrayHeader(op == DeltaFileReader.Op.UPSERT ? 3 : 2);
+        writer.writeUnsignedInteger(op.ordinal());
+        writer.writeTextString(key);
+        entryCount++;
+    }
+
+    public long getEntryCount() {
+        return entryCount;
+    }
+
+    @Override
+    public void close() throws IOException {
+        if (closed) return;
+        closed = true;
+        try {
+            writer.writeBreak();
+        } finally {
+            writer.close();
+        }
+    }
+}
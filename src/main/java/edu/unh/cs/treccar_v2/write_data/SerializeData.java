@@ -0,0 +1,320 @@
+package edu.unh.cs.treccar_v2.write_data;
+
+import edu.unh.cs.treccar_v2.Data;
+import edu.unh.cs.treccar_v2.Header;
+import edu.unh.cs.treccar_v2.read_data.CborBytes;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.List;
+
+/**
+ * Encoders for TREC CAR data, producing the same wire format that {@link edu.unh.cs.treccar_v2.read_data.DeserializeData}
+ * reads. Items are written straight into a {@link CborWriter}, without building an intermediate CBOR tree.
+ *
+ * To write complete files use {@link CarFileWriter}.
+ */
+public class SerializeData {
+
+    /**
+     * Version of this library (from the jar manifest), to be recorded as tool commit of appended transforms.
+     */
+    public static String toolVersion() {
+        final Package pkg = SerializeData.class.getPackage();
+        final String version = pkg != null ? pkg.getImplementationVersion() : null;
+        return version != null ? version : "unknown";
+    }
+
+    /**
+     * Copy of the header with a transform appended to its provenance, to document that a tool derived a new file.
+     */
+    public static Header.TrecCarHeader appendTransform(Header.TrecCarHeader header, String toolName, String toolCommit) {
+        final Header.Provenance old = header.getProvenance();
+        final Header.Provenance provenance = new Header.Provenance(old.getDataReleaseName());
+        provenance.getSiteProvenance().addAll(old.getSiteProvenance());
+        provenance.getComments().addAll(old.getComments());
+        provenance.getTransforms().addAll(old.getTransforms());
+        provenance.getTransforms().add(new Header.Transform(toolName, toolCommit));
+        return new Header.TrecCarHeader(header.getFileType(), provenance);
+    }
+
+    /**
+     * Like {@link #appendTransform(Header.TrecCarHeader, String, String)}, but on a header as encoded in the input file
+     * (see {@link edu.unh.cs.treccar_v2.read_data.RawItemReader#getHeaderBytes()}). All existing bytes are kept
+     * unchanged, in particular the tool info of earlier transforms, which {@link Header.Transform} does not retain.
+     * @return encoded header with the transform appended, or null if headerBytes is null or not a CAR header
+     */
+    public static byte[] appendTransform(byte[] headerBytes, String toolName, String toolCommit) throws IOException {
+        if (headerBytes == null || headerBytes.length == 0 || CborBytes.majorType(headerBytes, 0) != 4
+                || CborBytes.headArgument(headerBytes, 0) != 3) {
+            return null;
+        }
+        final int provenance = CborBytes.arrayElement(headerBytes, 0, 2);
+        if (CborBytes.majorType(headerBytes, provenance) != 4) {
+            return null;
+        }
+        final int transforms = CborBytes.arrayElement(headerBytes, provenance, 4);
+        if (CborBytes.majorType(headerBytes, transforms) != 4) {
+            return null;
+        }
+        final int firstTransform = CborBytes.arrayElement(headerBytes, transforms, 0);
+        final boolean indefinite = (headerBytes[transforms] & 0x1f) == 31;
+        final int transformsEnd = CborBytes.skipItem(headerBytes, transforms);
+        // new transform goes before the break of an indefinite list, or after the last element of a definite one
+        final int insertAt = indefinite ? transformsEnd - 1 : transformsEnd;
+
+        final ByteArrayOutputStream out = new ByteArrayOutputStream(headerBytes.length + 64);
+        final CborWriter writer = new CborWriter(out);
+        if (indefinite) {
+            writer.writeRaw(headerBytes, 0, insertAt);
+        } else {
+            writer.writeRaw(headerBytes, 0, transforms);
+            writer.writeArrayHeader(CborBytes.headArgument(headerBytes, transforms) + 1);
+            writer.writeRaw(headerBytes, firstTransform, insertAt - firstTransform);
+        }
+        transformToCbor(writer, new Header.Transform(toolName, toolCommit));
+        writer.writeRaw(headerBytes, insertAt, headerBytes.length - insertAt);
+        writer.flush();
+        return out.toByteArray();
+    }
+
+    // =========== Header ===================
+
+    public static void headerToCbor(CborWriter writer, Header.TrecCarHeader header) throws IOException {
+        headerToCbor(writer, "CAR", header);
+    }
+
+    static void headerToCbor(CborWriter writer, String magicWord, Header.TrecCarHeader header) throws IOException {
+        headerToCbor(writer, magicWord, header, 0);
+    }
+
+    /**
+     * @param extraElements number of elements the caller writes after the provenance (see {@link DeltaFileWriter})
+     */
+    static void headerToCbor(CborWriter writer, String magicWord, Header.TrecCarHeader header, int extraElements) throws IOException {
+        writer.writeArrayHeader(3 + extraElements);
+        writer.writeTextString(magicWord);
+        writer.writeArrayHeader(1);
+        writer.writeUnsignedInteger(header.getFileType().ordinal());
+        provenanceToCbor(writer, header.getProvenance());
+    }
+
+    private static void provenanceToCbor(CborWriter writer, Header.Provenance provenance) throws IOException {
+        writer.writeArrayHeader(5);
+        writer.writeUnsignedInteger(0);
+        writer.writeIndefiniteArrayHeader();
+        for (Header.SiteProvenance siteProvenance : provenance.getSiteProvenance()) {
+            siteProvenanceToCbor(writer, siteProvenance);
+        }
+        writer.writeBreak();
+        writer.writeTextString(provenance.getDataReleaseName());
+        textListToCbor(writer, provenance.getComments());
+        writer.writeIndefiniteArrayHeader();
+        for (Header.Transform transform : provenance.getTransforms()) {
+            transformToCbor(writer, transform);
+        }
+        writer.writeBreak();
+    }
+
+    private static void siteProvenanceToCbor(CborWriter writer, Header.SiteProvenance siteProvenance) throws IOException {
+        writer.writeArrayHeader(5);
+        writer.writeUnsignedInteger(0);
+        writer.writeTextString(siteProvenance.getProvSiteId());
+        writer.writeTextString(siteProvenance.getLanguage());
+        writer.writeTextString(siteProvenance.getSourceName());
+        textListToCbor(writer, siteProvenance.getSiteComments());
+    }
+
+    private static void transformToCbor(CborWriter writer, Header.Transform transform) throws IOException {
+        writer.writeArrayHeader(4);
+        writer.writeUnsignedInteger(0);
+        writer.writeTextString(transform.getToolName());
+        writer.writeTextString(transform.getToolCommit());
+        writer.writeTextString(transform.getToolInfo());
+    }
+
+    // =========== Pages ===================
+
+    /**
+     * Encode a page.
+     *
+     * Note that {@link Data.Page} does not retain the link target of redirect pages, therefore redirects are written
+     * without it. Pages are always written in the 6-element form with page type and metadata, like the pages of a
+     * release, so that all items of a file share the initial byte that {@link edu.unh.cs.treccar_v2.read_data.ItemBoundaries}
+     * relies on; pages without metadata get an empty metadata list.
+     */
+    public static void pageToCbor(CborWriter writer, Data.Page page) throws IOException {
+        final Data.PageMetadata pageMetadata = page.getPageMetadata();
+        writer.writeArrayHeader(6);
+        writer.writeUnsignedInteger(0);
+        writer.writeTextString(page.getPageName());
+        writer.writeByteString(page.getPageId());
+        pageSkeletonsToCbor(writer, page.getSkeleton());
+        writer.writeArrayHeader(1);
+        writer.writeUnsignedInteger(page.getPageType().ordinal());
+        pageMetadataToCbor(writer, pageMetadata != null ? pageMetadata : new Data.PageMetadata());
+    }
+
+    // page metadata is a flat list: [tag], payload, [tag], payload, ...
+    private static void pageMetadataToCbor(CborWriter writer, Data.PageMetadata pageMetadata) throws IOException {
+        writer.writeIndefiniteArrayHeader();
+        if (!pageMetadata.getRedirectNames().isEmpty()) {
+            metadataTag(writer, 0);
+            textListToCbor(writer, pageMetadata.getRedirectNames());
+        }
+        if (!pageMetadata.getDisambiguationNames().isEmpty()) {
+            metadataTag(writer, 1);
+            textListToCbor(writer, pageMetadata.getDisambiguationNames());
+        }
+        if (!pageMetadata.getDisambiguationIds().isEmpty()) {
+            metadataTag(writer, 2);
+            byteListToCbor(writer, pageMetadata.getDisambiguationIds());
+        }
+        if (!pageMetadata.getCategoryNames().isEmpty()) {
+            metadataTag(writer, 3);
+            textListToCbor(writer, pageMetadata.getCategoryNames());
+        }
+        if (!pageMetadata.getCategoryIds().isEmpty()) {
+            metadataTag(writer, 4);
+            byteListToCbor(writer, pageMetadata.getCategoryIds());
+        }
+        if (!pageMetadata.getInlinkIds().isEmpty()) {
+            metadataTag(writer, 5);
+            byteListToCbor(writer, pageMetadata.getInlinkIds());
+        }
+        if (!pageMetadata.getInlinkAnchors().isEmpty()) {
+            metadataTag(writer, 7);
+            // anchor frequencies are a definite-length array of [anchor, frequency] pairs
+            writer.writeArrayHeader(pageMetadata.getInlinkAnchors().size());
+            for (Data.ItemWithFrequency<String> anchor : pageMetadata.getInlinkAnchors()) {
+                writer.writeArrayHeader(2);
+                writer.writeTextString(anchor.getItem());
+                writer.writeUnsignedInteger(anchor.getFrequency());
+            }
+        }
+        for (String qid : pageMetadata.getWikiDataQid()) {
+            metadataTag(writer, 8);
+            writer.writeTextString(qid);
+        }
+        for (String siteId : pageMetadata.getSiteId()) {
+            metadataTag(writer, 9);
+            writer.writeTextString(siteId);
+        }
+        if (!pageMetadata.getPageTags().isEmpty()) {
+            metadataTag(writer, 10);
+            textListToCbor(writer, pageMetadata.getPageTags());
+        }
+        writer.writeBreak();
+    }
+
+    private static void metadataTag(CborWriter writer, int tag) throws IOException {
+        writer.writeArrayHeader(1);
+        writer.writeUnsignedInteger(tag);
+    }
+
+    private static void pageSkeletonsToCbor(CborWriter writer, List<Data.PageSkeleton> skeletons) throws IOException {
+        writer.writeIndefiniteArrayHeader();
+        for (Data.PageSkeleton skel : skeletons) {
+            pageSkeletonToCbor(writer, skel);
+        }
+        writer.writeBreak();
+    }
+
+    private static void pageSkeletonToCbor(CborWriter writer, Data.PageSkeleton skel) throws IOException {
+        if (skel instanceof Data.Section) {
+            final Data.Section section = (Data.Section) skel;
+            writer.writeArrayHeader(4);
+            writer.writeUnsignedInteger(0);
+            writer.writeTextString(section.getHeading());
+            writer.writeByteString(section.getHeadingId());
+            pageSkeletonsToCbor(writer, section.getChildren());
+        } else if (skel instanceof Data.Para) {
+            writer.writeArrayHeader(2);
+            writer.writeUnsignedInteger(1);
+            paragraphToCbor(writer, ((Data.Para) skel).getParagraph());
+        } else if (skel instanceof Data.Image) {
+            final Data.Image image = (Data.Image) skel;
+            writer.writeArrayHeader(3);
+            writer.writeUnsignedInteger(2);
+            writer.writeTextString(image.getImageUrl());
+            pageSkeletonsToCbor(writer, image.getCaptionSkel());
+        } else if (skel instanceof Data.ListItem) {
+            final Data.ListItem listItem = (Data.ListItem) skel;
+            writer.writeArrayHeader(3);
+            writer.writeUnsignedInteger(3);
+            writer.writeUnsignedInteger(listItem.getNestingLevel());
+            paragraphToCbor(writer, listItem.getBodyParagraph());
+        } else if (skel instanceof Data.InfoBox) {
+            final Data.InfoBox infoBox = (Data.InfoBox) skel;
+            writer.writeArrayHeader(3);
+            writer.writeUnsignedInteger(4);
+            writer.writeTextString(infoBox.getInfoboxType());
+            writer.writeIndefiniteArrayHeader();
+            for (Data.Entry<String, List<Data.PageSkeleton>> entry : infoBox.getEntries()) {
+                writer.writeArrayHeader(2);
+                writer.writeTextString(entry.getKey());
+                pageSkeletonsToCbor(writer, entry.getValue());
+            }
+            writer.writeBreak();
+        } else {
+            throw new UnsupportedOperationException("pageSkeletonToCbor found an unhandled case: " + skel);
+        }
+    }
+
+    // =========== Paragraphs ===================
+
+    public static void paragraphToCbor(CborWriter writer, Data.Paragraph paragraph) throws IOException {
+        writer.writeArrayHeader(3);
+        writer.writeUnsignedInteger(0);
+        writer.writeByteString(paragraph.getParaId());
+        writer.writeIndefiniteArrayHeader();
+        for (Data.ParaBody body : paragraph.getBodies()) {
+            paraBodyToCbor(writer, body);
+        }
+        writer.writeBreak();
+    }
+
+    private static void paraBodyToCbor(CborWriter writer, Data.ParaBody body) throws IOException {
+        if (body instanceof Data.ParaText) {
+            writer.writeArrayHeader(2);
+            writer.writeUnsignedInteger(0);
+            writer.writeTextString(((Data.ParaText) body).getText());
+        } else if (body instanceof Data.ParaLink) {
+            final Data.ParaLink link = (Data.ParaLink) body;
+            writer.writeArrayHeader(2);
+            writer.writeUnsignedInteger(1);
+            writer.writeArrayHeader(5);
+            writer.writeUnsignedInteger(0);
+            writer.writeTextString(link.getPage());
+            // link section is a list of zero or one elements
+            if (link.hasLinkSection()) {
+                writer.writeArrayHeader(1);
+                writer.writeTextString(link.getLinkSection());
+            } else {
+                writer.writeArrayHeader(0);
+            }
+            writer.writeByteString(link.getPageId());
+            writer.writeTextString(link.getAnchorText());
+        } else {
+            throw new UnsupportedOperationException("paraBodyToCbor found an unhandled case: " + body);
+        }
+    }
+
+    // ============ Helpers ==================
+
+    private static void textListToCbor(CborWriter writer, List<String> items) throws IOException {
+        writer.writeIndefiniteArrayHeader();
+        for (String item : items) {
+            writer.writeTextString(item);
+        }
+        writer.writeBreak();
+    }
+
+    private static void byteListToCbor(CborWriter writer, List<String> items) throws IOException {
+        writer.writeIndefiniteArrayHeader();
+        for (String item : items) {
+            writer.writeByteString(item);
+        }
+        writer.writeBreak();
+    }
+}
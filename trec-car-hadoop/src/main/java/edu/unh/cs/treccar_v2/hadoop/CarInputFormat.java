@@ -0,0 +1,51 @@
+package edu.unh.cs.treccar_v2.hadoop;
+
+import edu.unh.cs.treccar_v2.Data;
+import org.apache.hadoop.fs.Path;
+import org.apache.hadoop.io.LongWritable;
+import org.apache.hadoop.io.compress.CompressionCodecFactory;
+import org.apache.hadoop.mapreduce.InputSplit;
+import org.apache.hadoop.mapreduce.JobContext;
+import org.apache.hadoop.mapreduce.RecordReader;
+import org.apache.hadoop.mapreduce.TaskAttemptContext;
+import org.apache.hadoop.mapreduce.lib.input.FileInputFormat;
+
+/**
+ * Splittable input format for TREC CAR files. Records are keyed by the byte offset of the item in the file.
+ *
+ * Files are split at arbitrary byte ranges; each {@link CarRecordReader} reads the items that start within its
+ * split. Uncompressed files are splittable, compressed files are read by a single task. For example, in Spark:
+ *
+ * <pre>
+ * JavaPairRDD&lt;LongWritable, Data.Paragraph&gt; paragraphs = sc.newAPIHadoopFile(path,
+ *         CarInputFormat.Paragraphs.class, LongWritable.class, Data.Paragraph.class, new Configuration());
+ * </pre>
+ *
+ * Records are not Writable or Serializable; map them to the fields needed before shuffling or collecting.
+ */
+public abstract class CarInputFormat<T> extends FileInputFormat<LongWritable, T> {
+    @Override
+    protected boolean isSplitable(JobContext context, Path file) {
+        return new CompressionCodecFactory(context.getConfiguration()).getCodec(file) == null;
+    }
+
+    /**
+     * Pages of pages or outlines files.
+     */
+    public static class Pages extends CarInputFormat<Data.Page> {
+        @Override
+        public RecordReader<LongWritable, Data.Page> createRecordReader(InputSplit split, TaskAttemptContext context) {
+            return new CarRecordReader.Pages();
+        }
+    }
+
+    /**
+     * Paragraphs of paragraph files.
+     */
+    public static class Paragraphs extends CarInputFormat<Data.Paragraph> {
+        @Override
+        public RecordReader<LongWritable, Data.Paragraph> createRecordReader(InputSplit split, TaskAttemptContext context) {
+            return new CarRecordReader.Paragraphs();
+        }
+    }
+}
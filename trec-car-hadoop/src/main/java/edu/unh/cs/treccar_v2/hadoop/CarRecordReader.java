@@ -0,0 +1,161 @@
+package edu.unh.cs.treccar_v2.hadoop;
+
+import edu.unh.cs.treccar_v2.Data;
+import edu.unh.cs.treccar_v2.Header;
+import edu.unh.cs.treccar_v2.read_data.CborFileTypeException;
+import edu.unh.cs.treccar_v2.read_data.DeserializeData;
+import edu.unh.cs.treccar_v2.read_data.ItemBoundaries;
+import edu.unh.cs.treccar_v2.read_data.RawItemReader;
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.fs.FSDataInputStream;
+import org.apache.hadoop.fs.FileSystem;
+import org.apache.hadoop.fs.Path;
+import org.apache.hadoop.io.LongWritable;
+import org.apache.hadoop.io.compress.CompressionCodec;
+import org.apache.hadoop.io.compress.CompressionCodecFactory;
+import org.apache.hadoop.mapreduce.InputSplit;
+import org.apache.hadoop.mapreduce.RecordReader;
+import org.apache.hadoop.mapreduce.TaskAttemptContext;
+import org.apache.hadoop.mapreduce.lib.input.FileSplit;
+
+import java.io.IOException;
+
+/**
+ * Reads the items of a CAR file that start within a split.
+ *
+ * The first item of a split is looked up in the offset index next to the file (FILE.offsets, see
+ * {@link edu.unh.cs.treccar_v2.read_data.CarOffsetIndex}) when there is an up-to-date one, and otherwise found by
+ * resynchronizing on the next item boundary (see {@link ItemBoundaries}). The header is always read from the
+ * beginning of the file.
+ */
+public abstract class CarRecordReader<T> extends RecordReader<LongWritable, T> {
+    private final boolean paragraphs;
+    private FSDataInputStream fileIn;
+    private RawItemReader reader;
+    private long start;
+    private long end;
+    private long progressEnd;
+    private final LongWritable key = new LongWritable();
+    private T value;
+
+    CarRecordReader(boolean paragraphs) {
+        this.paragraphs = paragraphs;
+    }
+
+    protected abstract T decode(byte[] item);
+
+    @Override
+    public void initialize(InputSplit genericSplit, TaskAttemptContext context) throws IOException {
+        final FileSplit split = (FileSplit) genericSplit;
+        final Configuration conf = context.getConfiguration();
+        final Path file = split.getPath();
+        final FileSystem fs = file.getFileSystem(conf);
+        final long fileLength = fs.getFileStatus(file).getLen();
+        start = split.getStart();
+        end = start + split.getLength();
+        progressEnd = end;
+        fileIn = fs.open(file);
+
+        final CompressionCodec codec = new CompressionCodecFactory(conf).getCodec(file);
+        if (codec != null) {
+            // not splittable: one split covers the whole file, offsets are positions in the decompressed stream
+            reader = new RawItemReader(codec.createInputStream(fileIn));
+            checkFileType(reader.getHeader(), file);
+            end = Long.MAX_VALUE;
+            progressEnd = fileLength;
+            return;
+        }
+
+        // the header reader reads ahead, so the stream is repositioned below
+        final RawItemReader headerReader = new RawItemReader(fileIn);
+        final Header.TrecCarHeader header = headerReader.getHeader();
+        checkFileType(header, file);
+        final long dataOffset = headerReader.getDataOffset();
+        // resynchronization only accepts items that start like the first one, which sections never do
+        final int itemHead = start <= dataOffset ? -1 : ItemBoundaries.itemHeadOf(headerReader.next(), header != null);
+
+        long first;
+        if (start <= dataOffset) {
+            first = dataOffset;
+        } else {
+            first = OffsetIndexLookup.firstOffsetAtOrAfter(fs, file, fileLength, start);
+            if (first < 0) {
+                fileIn.seek(start);
+                first = ItemBoundaries.findNext(fileIn, start, fileLength, paragraphs, itemHead);
+            }
+        }
+        fileIn.seek(first);
+        reader = new RawItemReader(fileIn, header, first);
+    }
+
+    private void checkFileType(Header.TrecCarHeader header, Path file) {
+        if (header != null && (header.getFileType() == Header.FileType.ParagraphsFile) != paragraphs) {
+            throw new CborFileTypeException("Expected " + (paragraphs ? "a paragraphs file" : "a pages or outlines file") + ", but " + file + " is of file type " + header.getFileType());
+        }
+    }
+
+    @Override
+    public boolean nextKeyValue() throws IOException {
+        if (reader == null) {
+            return false;
+        }
+        final byte[] item = reader.next();
+        if (item == null || reader.getItemOffset() >= end) {
+            value = null;
+            reader = null;
+            return false;
+        }
+        key.set(reader.getItemOffset());
+        value = decode(item);
+        return true;
+    }
+
+    @Override
+    public LongWritable getCurrentKey() {
+        return key;
+    }
+
+    @Override
+    public T getCurrentValue() {
+        return value;
+    }
+
+    @Override
+    public float getProgress() throws IOException {
+        if (reader == null || progressEnd <= start) {
+            return reader == null ? 1.0f : 0.0f;
+        }
+        return Math.min(1.0f, (fileIn.getPos() - start) / (float) (progressEnd - start));
+    }
+
+    @Override
+    public void close() throws IOException {
+        if (fileIn != null) {
+            fileIn.close();
+            fileIn = null;
+        }
+        reader = null;
+    }
+
+    public static class Pages extends CarRecordReader<Data.Page> {
+        public Pages() {
+            super(false);
+        }
+
+        @Override
+        protected Data.Page decode(byte[] item) {
+            return DeserializeData.pageFromBytes(item);
+        }
+    }
+
+    public static class Paragraphs extends CarRecordReader<Data.Paragraph> {
+        public Paragraphs() {
+            super(true);
+        }
+
+        @Override
+        protected Data.Paragraph decode(byte[] item) {
+            return DeserializeData.paragraphFromBytes(item);
+        }
+    }
+}
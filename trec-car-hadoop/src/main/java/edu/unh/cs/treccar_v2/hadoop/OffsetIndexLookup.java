@@ -0,0 +1,99 @@
+package edu.unh.cs.treccar_v2.hadoop;
+
+import edu.unh.cs.treccar_v2.read_data.ArtifactCache;
+import edu.unh.cs.treccar_v2.read_data.CarOffsetIndex;
+import edu.unh.cs.treccar_v2.read_data.FileFingerprint;
+import org.apache.hadoop.fs.FSDataInputStream;
+import org.apache.hadoop.fs.FileStatus;
+import org.apache.hadoop.fs.FileSystem;
+import org.apache.hadoop.fs.Path;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+
+/**
+ * Looks up item offsets in a stored {@link CarOffsetIndex} with positional reads, so that a task reads a few
+ * hundred bytes of the index instead of loading all of it.
+ *
+ * The index is only used if its key FILE.offsets.key matches the {@link FileFingerprint} of the file, as for
+ * {@link ArtifactCache}; a file rewritten with the same size would otherwise send splits to wrong offsets.
+ */
+final class OffsetIndexLookup {
+    private OffsetIndexLookup() {}
+
+    /**
+     * @return offset of the first item at or after the position (or the end of the item array), or -1 if there is
+     * no up-to-date index for the file
+     */
+    static long firstOffsetAtOrAfter(FileSystem fs, Path file, long fileLength, long position) throws IOException {
+        final Path indexFile = new Path(file.getParent(), file.getName() + "." + CarOffsetIndex.ARTIFACT_NAME);
+        final Path keyFile = new Path(file.getParent(), indexFile.getName() + ArtifactCache.KEY_SUFFIX);
+        if (!fs.exists(indexFile) || !fs.exists(keyFile)) {
+            return -1;
+        }
+        final boolean valid;
+        try (InputStream keyIn = fs.open(keyFile)) {
+            valid = ArtifactCache.matchesKey(keyIn, fingerprintOf(fs, file));
+        }
+        if (!valid) {
+            return -1;
+        }
+        try (FSDataInputStream in = fs.open(indexFile)) {
+            if (in.readInt() != CarOffsetIndex.MAGIC || in.readInt() != CarOffsetIndex.VERSION) {
+                throw new IOException("Not an offset index: " + indexFile);
+            }
+            final long fileSize = in.readLong();
+            final long endOffset = in.readLong();
+            final int count = in.readInt();
+            if (fileSize != fileLength) {
+                return -1;
+            }
+
+            final byte[] buffer = new byte[8];
+            int low = 0;
+            int high = count;
+            while (low < high) {
+                final int mid = (low + high) >>> 1;
+                in.readFully(CarOffsetIndex.HEADER_SIZE + 8L * mid, buffer);
+                if (ByteBuffer.wrap(buffer).getLong() < position) {
+                    low = mid + 1;
+                } else {
+                    high = mid;
+                }
+            }
+            if (low == count) {
+                return endOffset;
+            }
+            in.readFully(CarOffsetIndex.HEADER_SIZE + 8L * low, buffer);
+            return ByteBuffer.wrap(buffer).getLong();
+        }
+    }
+
+    private static FileFingerprint fingerprintOf(final FileSystem fs, final Path file) throws IOException {
+        final FileStatus status = fs.getFileStatus(file);
+        try (final FSDataInputStream in = fs.open(file)) {
+            return FileFingerprint.of(new FileFingerprint.Input() {
+                @Override
+                public long length() {
+                    return status.getLen();
+                }
+
+                @Override
+                public long lastModified() {
+                    return status.getModificationTime();
+                }
+
+                @Override
+                public InputStream open() throws IOException {
+                    return fs.open(file);
+                }
+
+                @Override
+                public int read(long position, byte[] buffer, int offset, int length) throws IOException {
+                    return in.read(position, buffer, offset, length);
+                }
+            });
+        }
+    }
+}